@@ -24,6 +24,33 @@ package ch.maybites.tools;
 
 public class Calc {
 
+	/**
+	 * the approximations used by the trigonometric functions, null to use Math
+	 */
+	private static volatile FastMath fastMath = null;
+
+	/**
+	 * Switches the trigonometric functions and invSqrt of this class to the 
+	 * approximations of FastMath. The rotation methods of the math.la package use 
+	 * these functions.
+	 * 
+	 * Careful: this is a global setting and affects all the threads. 
+	 * 
+	 * @param maxError the largest error allowed, see FastMath. 0 to use java.lang.Math
+	 */
+	public static void setFastMath(float maxError) {
+		fastMath = (maxError > 0) ? new FastMath(maxError) : null;
+	}
+
+	/**
+	 * Returns the approximations in use
+	 * 
+	 * @return null if java.lang.Math is used
+	 */
+	public static FastMath getFastMath() {
+		return fastMath;
+	}
+
 	public static float trim(float min, float value, float max) {
 		if (value >= min) {
 			if (value <= max) {
@@ -87,4 +114,57 @@ public class Calc {
 		return (float) Math.sqrt(a);
 	}
 
+	static public final float invSqrt(float a) {
+		FastMath f = fastMath;
+		return (f != null) ? f.invSqrt(a) : 1.0f / (float) Math.sqrt(a);
+	}
+
+	static public final float sin(float angle) {
+		FastMath f = fastMath;
+		return (f != null) ? f.sin(angle) : (float) Math.sin(angle);
+	}
+
+	static public final float cos(float angle) {
+		FastMath f = fastMath;
+		return (f != null) ? f.cos(angle) : (float) Math.cos(angle);
+	}
+
+	static public final float tan(float angle) {
+		FastMath f = fastMath;
+		return (f != null) ? f.tan(angle) : (float) Math.tan(angle);
+	}
+
+	static public final float asin(float value) {
+		FastMath f = fastMath;
+		return (f != null) ? f.asin(value) : (float) Math.asin(value);
+	}
+
+	static public final float atan(float value) {
+		FastMath f = fastMath;
+		return (f != null) ? f.atan(value) : (float) Math.atan(value);
+	}
+
+	static public final float atan2(float y, float x) {
+		FastMath f = fastMath;
+		return (f != null) ? f.atan2(y, x) : (float) Math.atan2(y, x);
+	}
+
+	/**
+	 * double precision unless fast math is set, then it is computed in float
+	 */
+	static public final double tan(double angle) {
+		FastMath f = fastMath;
+		return (f != null) ? f.tan((float) angle) : Math.tan(angle);
+	}
+
+	static public final double atan(double value) {
+		FastMath f = fastMath;
+		return (f != null) ? f.atan((float) value) : Math.atan(value);
+	}
+
+	static public final double atan2(double y, double x) {
+		FastMath f = fastMath;
+		return (f != null) ? f.atan2((float) y, (float) x) : Math.atan2(y, x);
+	}
+
 }
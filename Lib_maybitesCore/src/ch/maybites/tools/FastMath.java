@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2013 maybites.ch
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal 
+ *  in the Software without restriction, including without limitation the rights 
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ *  copies of the Software, and to permit persons to whom the Software is furnished
+ *  to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ *  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ch.maybites.tools;
+
+/**
+ * Float approximations of the trigonometric functions and the inverse square root, 
+ * for code that rotates millions of vectors per second and can live with a known error. 
+ * 
+ * sin and cos read a lookup table with linear interpolation, its size is chosen to 
+ * keep the error within the bound. tan divides them, so its error grows with 1 / cos^2 
+ * (see tan()). atan2 and asin use a polynomial, invSqrt the bit trick followed by 
+ * newton iterations. A function that can not meet the bound falls 
+ * back to java.lang.Math.
+ * 
+ * Use it through Calc.setFastMath(), which makes the rotation methods of the 
+ * math.la package use it.
+ * 
+ * @author maybites
+ *
+ */
+public final class FastMath {
+
+	/**
+	 * the largest table for sin and cos, 2^16 entries
+	 */
+	private static final int MAX_TABLE_BITS = 16;
+	
+	/**
+	 * the error added by rounding the table values and the interpolation to float. 
+	 * only the rest of the error bound is left for the interpolation, if nothing is 
+	 * left sin and cos use Math.
+	 */
+	private static final float TABLE_ROUNDING_ERROR = 0.00000012f;
+
+	/**
+	 * max error of the two atan polynomials in radians, measured over [-1, 1]
+	 */
+	private static final float ATAN_COARSE_ERROR = 0.0016f;
+	private static final float ATAN_FINE_ERROR = 0.000002f;
+	
+	/**
+	 * max relative error of invSqrt after 1, 2 and 3 newton iterations
+	 */
+	private static final float[] INV_SQRT_ERROR = {0.00176f, 0.0000048f, 0.0000002f};
+
+	private static final float PI = (float)Const.PI;
+	private static final float HALF_PI = (float)Const.HALF_PI;
+
+	private final float maxError;
+	
+	/**
+	 * null if sin and cos use Math
+	 */
+	private final float[] table;
+	private final int mask;
+	private final int quarter;
+	private final double scale;
+	
+	/**
+	 * 0 if atan2 uses Math, 1 for the coarse and 2 for the fine polynomial
+	 */
+	private final int atanMode;
+	
+	/**
+	 * the number of newton iterations of invSqrt, 0 if it uses Math
+	 */
+	private final int newtonSteps;
+	
+	/**
+	 * Creates the tables for the specified error bound
+	 * 
+	 * @param _maxError the largest absolute error of sin, cos and atan2 (in radians) and 
+	 * 		the largest relative error of invSqrt.
+	 */
+	public FastMath(float _maxError){
+		if(!(_maxError > 0))
+			throw new IllegalArgumentException("the error bound must be positive: " + _maxError);
+		maxError = _maxError;
+		
+		// the error of the linear interpolation is below step^2 / 8
+		int size = 0;
+		double interpolationError = (double)_maxError - TABLE_ROUNDING_ERROR;
+		if(interpolationError > 0){
+			double step = Math.sqrt(8.0 * interpolationError);
+			for(int bits = 2; bits <= MAX_TABLE_BITS; bits++){
+				if(Const.TWO_PI / (1 << bits) <= step){
+					size = 1 << bits;
+					break;
+				}
+			}
+		}
+		if(size > 0){
+			table = new float[size + 1];
+			for(int i = 0; i <= size; i++)
+				table[i] = (float)Math.sin(i * Const.TWO_PI / size);
+		} else {
+			table = null;
+		}
+		mask = size - 1;
+		quarter = size / 4;
+		scale = size / Const.TWO_PI;
+		
+		if(_maxError >= ATAN_COARSE_ERROR)
+			atanMode = 1;
+		else if(_maxError >= ATAN_FINE_ERROR)
+			atanMode = 2;
+		else
+			atanMode = 0;
+		
+		int steps = 0;
+		for(int i = INV_SQRT_ERROR.length - 1; i >= 0; i--){
+			if(_maxError >= INV_SQRT_ERROR[i])
+				steps = i + 1;
+		}
+		newtonSteps = steps;
+	}
+	
+	/**
+	 * Returns the error bound this instance was created with
+	 * @return
+	 */
+	public float getMaxError(){
+		return maxError;
+	}
+	
+	/**
+	 * Returns the number of entries of the sin table
+	 * @return 0 if sin and cos use Math
+	 */
+	public int getTableSize(){
+		return (table != null)? mask + 1: 0;
+	}
+	
+	/**
+	 * Careful: the error bound only holds for angles within about a million turns, 
+	 * angles beyond that use Math.sin().
+	 * 
+	 * @param angle in radians
+	 * @return
+	 */
+	public float sin(float angle){
+		if(table == null)
+			return (float)Math.sin(angle);
+		return lookup(angle * scale, 0);
+	}
+	
+	/**
+	 * See sin()
+	 * 
+	 * @param angle in radians
+	 * @return
+	 */
+	public float cos(float angle){
+		if(table == null)
+			return (float)Math.cos(angle);
+		return lookup(angle * scale, quarter);
+	}
+	
+	/**
+	 * sin / cos. The error is below maxError / cos^2, the error of an angle that is off 
+	 * by maxError. Close to +/- PI/2, where cos^2 drops below maxError, Math.tan() 
+	 * is used instead.
+	 * 
+	 * @param angle in radians
+	 * @return
+	 */
+	public float tan(float angle){
+		if(table == null)
+			return (float)Math.tan(angle);
+		double t = angle * scale;
+		float cos = lookup(t, quarter);
+		if(cos * cos < maxError)
+			return (float)Math.tan(angle);
+		return lookup(t, 0) / cos;
+	}
+	
+	/**
+	 * the index into the table is computed in double, so the fraction keeps its 
+	 * precision for larger angles
+	 */
+	private float lookup(double t, int offset){
+		if(t > 1073741824.0 || t < -1073741824.0)
+			return (float)Math.sin((t + offset) / scale);
+		int i = (int)t;
+		if(t < i)
+			i--;
+		float f = (float)(t - i);
+		i = (i + offset) & mask;
+		return table[i] + f * (table[i + 1] - table[i]);
+	}
+	
+	/**
+	 * @param y
+	 * @param x
+	 * @return the angle in radians between -PI and PI
+	 */
+	public float atan2(float y, float x){
+		if(atanMode == 0)
+			return (float)Math.atan2(y, x);
+		float ax = Math.abs(x), ay = Math.abs(y);
+		if(ax == 0.0f && ay == 0.0f)
+			return (float)Math.atan2(y, x);
+		float a = (ax >= ay)? atan(ay / ax): HALF_PI - atan(ax / ay);
+		if(x < 0)
+			a = PI - a;
+		return (y < 0 || (y == 0.0f && 1.0f / y < 0))? -a: a;
+	}
+	
+	/**
+	 * @param z
+	 * @return the angle in radians between -PI/2 and PI/2
+	 */
+	public float atan(float z){
+		if(atanMode == 0)
+			return (float)Math.atan(z);
+		if(z > 1.0f || z < -1.0f)
+			return ((z > 0)? HALF_PI: -HALF_PI) - atanUnit(1.0f / z);
+		return atanUnit(z);
+	}
+	
+	/**
+	 * the polynomial for z within [-1, 1]
+	 */
+	private float atanUnit(float z){
+		float az = Math.abs(z);
+		if(atanMode == 1)
+			return 0.7853982f * z - z * (az - 1.0f) * (0.2447f + 0.0663f * az);
+		float z2 = z * z;
+		return z * (0.99997726f + z2 * (-0.33262347f + z2 * (0.19354346f + 
+				z2 * (-0.11643287f + z2 * (0.05265332f + z2 * -0.01172120f)))));
+	}
+	
+	/**
+	 * @param value between -1 and 1
+	 * @return the angle in radians between -PI/2 and PI/2
+	 */
+	public float asin(float value){
+		if(atanMode == 0)
+			return (float)Math.asin(value);
+		return atan2(value, (float)Math.sqrt((1.0f - value) * (1.0f + value)));
+	}
+	
+	/**
+	 * 1 / sqrt(value)
+	 * 
+	 * @param value a positive value
+	 * @return
+	 */
+	public float invSqrt(float value){
+		if(newtonSteps == 0)
+			return 1.0f / (float)Math.sqrt(value);
+		float half = 0.5f * value;
+		float y = Float.intBitsToFloat(0x5f375a86 - (Float.floatToRawIntBits(value) >> 1));
+		for(int i = 0; i < newtonSteps; i++)
+			y = y * (1.5f - half * y * y);
+		return y;
+	}
+}
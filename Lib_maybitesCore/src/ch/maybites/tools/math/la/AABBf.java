@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2013 maybites.ch
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal 
+ *  in the Software without restriction, including without limitation the rights 
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ *  copies of the Software, and to permit persons to whom the Software is furnished
+ *  to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ *  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package ch.maybites.tools.math.la;
+
+/**
+ * Axis aligned bounding box, defined by its minimum and maximum corner.
+ * 
+ * @author maybites
+ *
+ */
+public class AABBf {
+
+	private Vector3f min;
+	
+	private Vector3f max;
+
+	/**
+	 * Creates an empty box. Its minimum is larger than its maximum, so the first 
+	 * point it is extended with becomes both.
+	 */
+	public AABBf() {
+		min = new Vector3f(Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY);
+		max = new Vector3f(Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY);
+	}
+
+	/**
+	 * Creates a box with the specified corners
+	 * 
+	 * @param	theMin	the minimum corner
+	 * @param	theMax	the maximum corner
+	 */
+	public AABBf(Vector3f theMin, Vector3f theMax) {
+		min = new Vector3f(theMin);
+		max = new Vector3f(theMax);
+	}
+
+	/**
+	 * Creates a copy of a box
+	 * 
+	 * @param	theOther	the box to be copied
+	 */
+	public AABBf(AABBf theOther) {
+		this(theOther.min, theOther.max);
+	}
+
+	/**
+	 * sets the corners of this box
+	 * 
+	 * @param	theMin	the minimum corner
+	 * @param	theMax	the maximum corner
+	 */
+	public void set(Vector3f theMin, Vector3f theMax) {
+		min.set(theMin);
+		max.set(theMax);
+	}
+
+	/**
+	 * sets this box to the bounds of the points
+	 * 
+	 * @param	points	the points [x0,y0,z0,x1,y1,z1,...]
+	 */
+	public void set(float[] points) {
+		float x0 = Float.POSITIVE_INFINITY, y0 = Float.POSITIVE_INFINITY, z0 = Float.POSITIVE_INFINITY;
+		float x1 = Float.NEGATIVE_INFINITY, y1 = Float.NEGATIVE_INFINITY, z1 = Float.NEGATIVE_INFINITY;
+		for (int i = 0; i < points.length - 2; i += 3) {
+			x0 = Math.min(x0, points[i]);
+			y0 = Math.min(y0, points[i + 1]);
+			z0 = Math.min(z0, points[i + 2]);
+			x1 = Math.max(x1, points[i]);
+			y1 = Math.max(y1, points[i + 1]);
+			z1 = Math.max(z1, points[i + 2]);
+		}
+		min.set(x0, y0, z0);
+		max.set(x1, y1, z1);
+	}
+
+	/**
+	 * returns the minimum corner
+	 * 
+	 * @return	the internal vector
+	 */
+	public Vector3f getMin() {
+		return min;
+	}
+
+	/**
+	 * returns the maximum corner
+	 * 
+	 * @return	the internal vector
+	 */
+	public Vector3f getMax() {
+		return max;
+	}
+
+	/**
+	 * stores the center of this box in dest
+	 * 
+	 * @param	dest
+	 * @return	dest
+	 */
+	public Vector3f getCenter(Vector3f dest) {
+		dest.set((min.x() + max.x()) * 0.5f, (min.y() + max.y()) * 0.5f, (min.z() + max.z()) * 0.5f);
+		return dest;
+	}
+
+	/**
+	 * stores the half size of this box along each axis in dest
+	 * 
+	 * @param	dest
+	 * @return	dest
+	 */
+	public Vector3f getExtents(Vector3f dest) {
+		dest.set((max.x() - min.x()) * 0.5f, (max.y() - min.y()) * 0.5f, (max.z() - min.z()) * 0.5f);
+		return dest;
+	}
+
+	/**
+	 * checks if this box contains no point at all
+	 * 
+	 * @return	true if empty
+	 */
+	public boolean isEmpty() {
+		return (min.x() > max.x() || min.y() > max.y() || min.z() > max.z())? true: false;
+	}
+
+	/**
+	 * extends this box so it contains the point
+	 * 
+	 * @param	point
+	 * @return	this instance
+	 */
+	public AABBf extend(Vector3f point) {
+		min.set(Math.min(min.x(), point.x()), Math.min(min.y(), point.y()), Math.min(min.z(), point.z()));
+		max.set(Math.max(max.x(), point.x()), Math.max(max.y(), point.y()), Math.max(max.z(), point.z()));
+		return this;
+	}
+
+	/**
+	 * extends this box so it contains the other box
+	 * 
+	 * @param	box
+	 * @return	this instance
+	 */
+	public AABBf extend(AABBf box) {
+		min.set(Math.min(min.x(), box.min.x()), Math.min(min.y(), box.min.y()), Math.min(min.z(), box.min.z()));
+		max.set(Math.max(max.x(), box.max.x()), Math.max(max.y(), box.max.y()), Math.max(max.z(), box.max.z()));
+		return this;
+	}
+
+	/**
+	 * checks if the point lies inside this box or on its surface
+	 * 
+	 * @param	point
+	 * @return	true if it is contained
+	 */
+	public boolean contains(Vector3f point) {
+		return (point.x() >= min.x() && point.x() <= max.x() &&
+				point.y() >= min.y() && point.y() <= max.y() &&
+				point.z() >= min.z() && point.z() <= max.z())? true: false;
+	}
+
+	/**
+	 * checks if the specified box overlaps this box
+	 * 
+	 * @param	box
+	 * @return	true if they overlap
+	 */
+	public boolean intersects(AABBf box) {
+		return (box.min.x() <= max.x() && box.max.x() >= min.x() &&
+				box.min.y() <= max.y() && box.max.y() >= min.y() &&
+				box.min.z() <= max.z() && box.max.z() >= min.z())? true: false;
+	}
+
+	/**
+	 * Stores the bounds of this box transformed by the matrix in dest. The result 
+	 * contains the transformed box, but is usually larger.
+	 * 
+	 * This method will only give correct results if the matrix is a
+	 * classical transformation matrix (ie. scale, rotate, translate or
+	 * a combination of the three)
+	 * 
+	 * @param	matrix
+	 * @param	dest	may be this instance
+	 * @return	dest
+	 */
+	public AABBf transform(Matrix4x4f matrix, AABBf dest) {
+		float cx = (min.x() + max.x()) * 0.5f, cy = (min.y() + max.y()) * 0.5f, cz = (min.z() + max.z()) * 0.5f;
+		float ex = (max.x() - min.x()) * 0.5f, ey = (max.y() - min.y()) * 0.5f, ez = (max.z() - min.z()) * 0.5f;
+		float m00 = matrix.getElement(0, 0), m01 = matrix.getElement(0, 1), m02 = matrix.getElement(0, 2);
+		float m10 = matrix.getElement(1, 0), m11 = matrix.getElement(1, 1), m12 = matrix.getElement(1, 2);
+		float m20 = matrix.getElement(2, 0), m21 = matrix.getElement(2, 1), m22 = matrix.getElement(2, 2);
+		// the center is transformed, the extents are projected onto the new axes
+		float x = cx * m00 + cy * m10 + cz * m20 + matrix.getElement(3, 0);
+		float y = cx * m01 + cy * m11 + cz * m21 + matrix.getElement(3, 1);
+		float z = cx * m02 + cy * m12 + cz * m22 + matrix.getElement(3, 2);
+		float rx = ex * Math.abs(m00) + ey * Math.abs(m10) + ez * Math.abs(m20);
+		float ry = ex * Math.abs(m01) + ey * Math.abs(m11) + ez * Math.abs(m21);
+		float rz = ex * Math.abs(m02) + ey * Math.abs(m12) + ez * Math.abs(m22);
+		dest.min.set(x - rx, y - ry, z - rz);
+		dest.max.set(x + rx, y + ry, z + rz);
+		return dest;
+	}
+
+	public String toString() {
+		return "AABBf: min " + min + " / max " + max;
+	}
+
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2013 maybites.ch
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal 
+ *  in the Software without restriction, including without limitation the rights 
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ *  copies of the Software, and to permit persons to whom the Software is furnished
+ *  to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ *  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ch.maybites.tools.math.la;
+
+/**
+ * Stores many axis aligned boxes in separate arrays for the x, y and z coordinates 
+ * of the centers and for the half sizes along each axis (structure of arrays). 
+ * 
+ * Suited for frustum culling of thousands of nodes per frame, see SpherefArray.
+ * 
+ * The culling can be spread over all the cores, see setParallelThreshold().
+ * 
+ * @author maybites
+ *
+ */
+public class AABBfArray {
+
+	private float[] x_;
+	private float[] y_;
+	private float[] z_;
+	private float[] ex_;
+	private float[] ey_;
+	private float[] ez_;
+	
+	/**
+	 * the plane that rejected each box the last time
+	 */
+	private byte[] plane_;
+	
+	private int size;
+	
+	/**
+	 * the number of boxes from which on the culling runs in parallel, 
+	 * 0 if it always runs on the calling thread
+	 */
+	private int parallelThreshold = 0;
+	
+	/**
+	 * Create an array of boxes in the origin with size 0
+	 * 
+	 * @param _size number of boxes
+	 */
+	public AABBfArray(int _size){
+		size = _size;
+		x_ = new float[_size];
+		y_ = new float[_size];
+		z_ = new float[_size];
+		ex_ = new float[_size];
+		ey_ = new float[_size];
+		ez_ = new float[_size];
+		plane_ = new byte[_size];
+	}
+	
+	/**
+	 * Returns the number of boxes
+	 * @return
+	 */
+	public int size(){
+		return size;
+	}
+	
+	/**
+	 * Returns the x coordinates of the centers. 
+	 * 
+	 * VERY Careful: this is the internal array, the same goes for getY(), getZ() and 
+	 * getExtentX/Y/Z().
+	 * 
+	 * @return
+	 */
+	public float[] getX(){
+		return x_;
+	}
+	
+	public float[] getY(){
+		return y_;
+	}
+	
+	public float[] getZ(){
+		return z_;
+	}
+	
+	/**
+	 * Returns the half sizes along the x axis. 
+	 * 
+	 * VERY Careful: this is the internal array.
+	 * 
+	 * @return
+	 */
+	public float[] getExtentX(){
+		return ex_;
+	}
+	
+	public float[] getExtentY(){
+		return ey_;
+	}
+	
+	public float[] getExtentZ(){
+		return ez_;
+	}
+	
+	/**
+	 * Copies the box at the specified index into the destination
+	 * 
+	 * @param index index of the box
+	 * @param dest the box to store the values in
+	 * @return dest
+	 */
+	public AABBf get(int index, AABBf dest){
+		dest.getMin().set(x_[index] - ex_[index], y_[index] - ey_[index], z_[index] - ez_[index]);
+		dest.getMax().set(x_[index] + ex_[index], y_[index] + ey_[index], z_[index] + ez_[index]);
+		return dest;
+	}
+	
+	/**
+	 * Sets the box at the specified index
+	 * 
+	 * @param index index of the box
+	 * @param box the box to copy
+	 */
+	public void set(int index, AABBf box){
+		Vector3f min = box.getMin(), max = box.getMax();
+		set(index, (min.x() + max.x()) * 0.5f, (min.y() + max.y()) * 0.5f, (min.z() + max.z()) * 0.5f, 
+				(max.x() - min.x()) * 0.5f, (max.y() - min.y()) * 0.5f, (max.z() - min.z()) * 0.5f);
+	}
+	
+	/**
+	 * Sets the box at the specified index
+	 * 
+	 * @param index index of the box
+	 * @param x x coordinate of the center
+	 * @param y y coordinate of the center
+	 * @param z z coordinate of the center
+	 * @param ex half size along the x axis
+	 * @param ey half size along the y axis
+	 * @param ez half size along the z axis
+	 */
+	public void set(int index, float x, float y, float z, float ex, float ey, float ez){
+		x_[index] = x;
+		y_[index] = y;
+		z_[index] = z;
+		ex_[index] = ex;
+		ey_[index] = ey;
+		ez_[index] = ez;
+	}
+	
+	/**
+	 * Sets the number of boxes from which on the culling is spread over all 
+	 * the cores. Ranges below it are processed by the calling thread.
+	 * 
+	 * Careful: the operands of the culling must not be modified until it returns.
+	 * 
+	 * @param threshold number of boxes, 0 to always process on the calling thread
+	 */
+	public void setParallelThreshold(int threshold){
+		parallelThreshold = (threshold > 0)? threshold: 0;
+	}
+	
+	/**
+	 * Returns the number of boxes from which on the culling runs in parallel.
+	 * @return 0 if it always runs on the calling thread
+	 */
+	public int getParallelThreshold(){
+		return parallelThreshold;
+	}
+	
+	/**
+	 * Tests each box of the range against the frustum. See FrustumPlanes.test(AABBf)
+	 * 
+	 * @param frustum the planes to test against
+	 * @param dest the result for the box from + k at index k: FrustumPlanes.OUTSIDE, 
+	 * 		INTERSECTING or INSIDE. At least count elements.
+	 * @param from index of the first box
+	 * @param count number of boxes
+	 */
+	public void cull(FrustumPlanes frustum, final byte[] dest, final int from, int count){
+		final float[] planes = frustum.p_;
+		run(from, count, new Parallel.Range(){
+			public void run(int first, int end) {
+				for(int i = first; i < end; i++)
+					dest[i - from] = FrustumPlanes.testBox(planes, x_[i], y_[i], z_[i], ex_[i], ey_[i], ez_[i], plane_, i);
+			}
+		});
+	}
+	
+	/**
+	 * Tests each box of the range against the frustum and collects the visible ones. 
+	 * It always runs on the calling thread.
+	 * 
+	 * @param frustum the planes to test against
+	 * @param visible the indices of the boxes that are not outside, at least count elements
+	 * @param from index of the first box
+	 * @param count number of boxes
+	 * @return the number of visible boxes
+	 */
+	public int cull(FrustumPlanes frustum, int[] visible, int from, int count){
+		Parallel.checkRange(from, count, size);
+		float[] planes = frustum.p_;
+		int n = 0;
+		for(int i = from; i < from + count; i++){
+			if(FrustumPlanes.testBox(planes, x_[i], y_[i], z_[i], ex_[i], ey_[i], ez_[i], plane_, i) != FrustumPlanes.OUTSIDE)
+				visible[n++] = i;
+		}
+		return n;
+	}
+	
+	/**
+	 * Runs the range of boxes on the calling thread or in parallel
+	 */
+	private void run(int from, int count, Parallel.Range range){
+		Parallel.run(from, count, size, parallelThreshold, 64, range);
+	}
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2013 maybites.ch
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal 
+ *  in the Software without restriction, including without limitation the rights 
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ *  copies of the Software, and to permit persons to whom the Software is furnished
+ *  to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ *  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package ch.maybites.tools.math.la;
+
+/**
+ * The six planes that bound the visible volume of a camera, in world space. They 
+ * are extracted from the matrix that transforms world coordinates into clip 
+ * coordinates, the normals point inwards.
+ * 
+ * Used to skip the drawing and transforming of nodes that can not be seen: 
+ * test() checks single bounds, SpherefArray and AABBfArray cull thousands of them.
+ * 
+ * @author maybites
+ *
+ */
+public class FrustumPlanes {
+
+	public static final int LEFT = 0;
+	public static final int RIGHT = 1;
+	public static final int BOTTOM = 2;
+	public static final int TOP = 3;
+	public static final int NEAR = 4;
+	public static final int FAR = 5;
+	
+	/**
+	 * the results of the tests
+	 */
+	public static final byte OUTSIDE = 0;
+	public static final byte INTERSECTING = 1;
+	public static final byte INSIDE = 2;
+	
+	/**
+	 * the planes like in PlanefArray: nx, ny, nz, p
+	 */
+	final float[] p_ = new float[24];
+	
+	/**
+	 * Creates the planes of the unit cube from -1 to 1, which is the visible 
+	 * volume of the identity matrix
+	 */
+	public FrustumPlanes(){
+		set(new Matrix4x4f());
+	}
+	
+	/**
+	 * Creates the planes of the specified matrix. See set()
+	 * 
+	 * @param viewProjection
+	 */
+	public FrustumPlanes(Matrix4x4f viewProjection){
+		set(viewProjection);
+	}
+	
+	/**
+	 * Extracts the planes of the matrix that transforms world coordinates into clip 
+	 * coordinates. With this library's row vectors that is 
+	 * viewMatrix.multiplyMake(projectionMatrix). 
+	 * 
+	 * With the projection matrix alone, the planes are in camera space.
+	 * 
+	 * @param viewProjection
+	 */
+	public void set(Matrix4x4f viewProjection){
+		float[] m = viewProjection.get(new float[16]);
+		// a point is inside if -w <= x, y, z <= w, with clip = point * matrix
+		for (int i = 0; i < 3; i++) {
+			setPlane(2 * i, m[3] + m[i], m[7] + m[4 + i], m[11] + m[8 + i], m[15] + m[12 + i]);
+			setPlane(2 * i + 1, m[3] - m[i], m[7] - m[4 + i], m[11] - m[8 + i], m[15] - m[12 + i]);
+		}
+	}
+	
+	private void setPlane(int index, float a, float b, float c, float d){
+		float s = 1.0f / (float)Math.sqrt(a * a + b * b + c * c);
+		p_[index * 4]     = a * s;
+		p_[index * 4 + 1] = b * s;
+		p_[index * 4 + 2] = c * s;
+		p_[index * 4 + 3] = -d * s;
+	}
+	
+	/**
+	 * Stores the plane in dest
+	 * 
+	 * @param index LEFT, RIGHT, BOTTOM, TOP, NEAR or FAR
+	 * @param dest
+	 * @return dest
+	 */
+	public Planef getPlane(int index, Planef dest){
+		int i = index * 4;
+		dest.set(p_[i], p_[i + 1], p_[i + 2], -p_[i + 3]);
+		return dest;
+	}
+	
+	/**
+	 * Returns copies of the six planes
+	 * 
+	 * @return new instances in the order LEFT, RIGHT, BOTTOM, TOP, NEAR, FAR
+	 */
+	public Planef[] getPlanes(){
+		Planef[] planes = new Planef[6];
+		for (int i = 0; i < 6; i++)
+			planes[i] = getPlane(i, new Planef());
+		return planes;
+	}
+	
+	/**
+	 * checks if the point lies inside the frustum
+	 * 
+	 * @param point
+	 * @return true if it is visible
+	 */
+	public boolean contains(Vector3f point){
+		return testSphere(p_, point.x(), point.y(), point.z(), 0.0f, null, 0) != OUTSIDE;
+	}
+	
+	/**
+	 * Tests the sphere against the frustum
+	 * 
+	 * @param sphere
+	 * @return OUTSIDE, INTERSECTING or INSIDE
+	 */
+	public byte test(Spheref sphere){
+		Vector3f c = sphere.getCenter();
+		return testSphere(p_, c.x(), c.y(), c.z(), sphere.getRadius(), null, 0);
+	}
+	
+	/**
+	 * Tests the box against the frustum. 
+	 * 
+	 * Careful: a box that is near a corner of the frustum may be reported INTERSECTING
+	 * even though it is outside. It is never reported OUTSIDE while it is visible.
+	 * 
+	 * @param box
+	 * @return OUTSIDE, INTERSECTING or INSIDE
+	 */
+	public byte test(AABBf box){
+		Vector3f min = box.getMin(), max = box.getMax();
+		return testBox(p_, (min.x() + max.x()) * 0.5f, (min.y() + max.y()) * 0.5f, (min.z() + max.z()) * 0.5f, 
+				(max.x() - min.x()) * 0.5f, (max.y() - min.y()) * 0.5f, (max.z() - min.z()) * 0.5f, null, 0);
+	}
+	
+	/**
+	 * Tests a sphere against the planes. The test starts with the plane stored in the 
+	 * cache, which is the one that rejected the sphere the last time: a sphere that 
+	 * stays outside is usually rejected by the first test.
+	 * 
+	 * @param planes six planes like p_
+	 * @param cache the index of the plane to start with is at cache[ci], updated when 
+	 * 		the sphere is rejected. Null to start with the first plane.
+	 */
+	static byte testSphere(float[] planes, float x, float y, float z, float r, byte[] cache, int ci){
+		int start = (cache != null)? cache[ci]: 0;
+		byte result = INSIDE;
+		for (int k = 0; k < 6; k++) {
+			int pl = start + k;
+			if (pl >= 6)
+				pl -= 6;
+			int i = pl * 4;
+			float d = planes[i] * x + planes[i + 1] * y + planes[i + 2] * z - planes[i + 3];
+			if (d < -r) {
+				if (cache != null)
+					cache[ci] = (byte)pl;
+				return OUTSIDE;
+			}
+			if (d < r)
+				result = INTERSECTING;
+		}
+		return result;
+	}
+	
+	/**
+	 * Tests a box with center (x, y, z) and half size (ex, ey, ez) against the 
+	 * planes, see testSphere(). The box is projected on the normal of each plane.
+	 */
+	static byte testBox(float[] planes, float x, float y, float z, float ex, float ey, float ez, byte[] cache, int ci){
+		int start = (cache != null)? cache[ci]: 0;
+		byte result = INSIDE;
+		for (int k = 0; k < 6; k++) {
+			int pl = start + k;
+			if (pl >= 6)
+				pl -= 6;
+			int i = pl * 4;
+			float nx = planes[i], ny = planes[i + 1], nz = planes[i + 2];
+			float d = nx * x + ny * y + nz * z - planes[i + 3];
+			float r = ex * Math.abs(nx) + ey * Math.abs(ny) + ez * Math.abs(nz);
+			if (d < -r) {
+				if (cache != null)
+					cache[ci] = (byte)pl;
+				return OUTSIDE;
+			}
+			if (d < r)
+				result = INTERSECTING;
+		}
+		return result;
+	}
+}
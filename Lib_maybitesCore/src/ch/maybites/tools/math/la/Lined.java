@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2013 maybites.ch
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal 
+ *  in the Software without restriction, including without limitation the rights 
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ *  copies of the Software, and to permit persons to whom the Software is furnished
+ *  to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ *  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ch.maybites.tools.math.la;
+
+public class Lined{
+
+	public Vector3d theOrigin;
+
+	public Vector3d direction;
+
+	public Lined() {
+		theOrigin = new Vector3d();
+		direction = new Vector3d();
+	}
+
+	/**
+	 * Creates a line in theOrigin with its direction
+	 * 
+	 * @param	_theOrigin	the reference point of that line
+	 * @param	_theDirection	the direction vector of that line
+	 */
+	public Lined(Vector3d _theOrigin, Vector3d _theDirection) {
+		theOrigin = new Vector3d(_theOrigin);
+		direction = new Vector3d(_theDirection);
+	}
+
+	/**
+	 * Creates a line defined by a double array with 6 values. The first three
+	 * values define x1,y1,z1 of the first point, the second three values define
+	 * x2,y2,z2 of the second point.
+	 * 
+	 * @param twoPoints - 6 indices double array [x1,y1,z1,x2,y2,z2]
+	 */
+	public Lined(double[] twoPoints) {
+		set(twoPoints);
+	}
+
+	/**
+	 * Creates a copy of a line
+	 * 
+	 * @param	theOther	the line to be copied
+	 */
+	public Lined(Lined theOther) {
+		theOrigin = new Vector3d(theOther.theOrigin);
+		direction = new Vector3d(theOther.direction);
+	}
+	
+	/**
+	 * sets the line defined by two point: theOrigin and another point
+	 * 
+	 * @param	_theOrigin		the reference point in that line
+	 * @param	_theOtherPoint	the other point of that line
+	 */
+	public void set(Vector3d _theOrigin, Vector3d _theOtherPoint) {
+		theOrigin = new Vector3d(_theOrigin);
+		direction = _theOtherPoint.subMake(_theOrigin);
+	}
+
+	/**
+	 * Sets the line defined by a double array with 6 values. The first three
+	 * values define x1,y1,z1 of the first point, the second three values define
+	 * x2,y2,z2 of the second point.
+	 * 
+	 * @param twoPoints - 6 indices double array
+	 */
+	public void set(double[] twoPoints){
+		set(new Vector3d(twoPoints[0], twoPoints[1], twoPoints[2]), new Vector3d(twoPoints[3], twoPoints[4], twoPoints[5]));
+	}
+	
+	/**
+	 * Gets the line in a double array: The first three
+	 * values define x1,y1,z1 of the first point, the second three values define
+	 * x2,y2,z2 of the second point.
+	 * 
+	 * @return twoPoints - 6 indices double array
+	 */
+	public double[] getTwoPoints(){
+		double[] ret = new double[6];
+		Vector3d theOther = theOtherPoint();
+		ret[0] = theOrigin.x();
+		ret[1] = theOrigin.y();
+		ret[2] = theOrigin.z();
+		ret[3] = theOther.x();
+		ret[4] = theOther.y();
+		ret[5] = theOther.z();
+		return ret;
+	}
+
+	/**
+	 * returns another point on this line
+	 * it is the result of a vector addition of theOrigin and the direction
+	 * 
+	 * @return	theOtherPoint	the other point on that line
+	 */
+	protected Vector3d theOtherPoint(){
+		return theOrigin.addMake(direction);
+	}
+
+	
+	/**
+	 * This method sets theOrigin closest to the space origin.
+	 */
+	public void originize(){
+		Vector3d unity = theOrigin.crossMake(direction);
+		Vector3d center = unity.crossMake(direction);
+		center.normalize();
+		center.scale(center.angle(theOrigin)*theOrigin.magnitude());
+		theOrigin = center;
+	}
+	
+	/**
+	 * returns the shortest distance between to lines
+	 * 
+	 * @param	line	the other line
+	 * @return	distance vector
+	 */
+	public Vector3d getDistanceVector(Lined line){
+		Vector3d dirVW = line.direction.crossMake(direction);
+		Vector3d r0s = line.theOrigin.subMake(theOrigin);
+		if(dirVW.magnitude() != 0.0){
+			dirVW.normalize();
+			dirVW.scale(Math.abs(dirVW.dot(r0s)));
+			return dirVW;
+		}
+		// if they are parallel
+		Lined lineA = new Lined(this);
+		Lined lineB = new Lined(line);
+		lineA.originize();
+		lineB.originize();
+		Vector3d diff = lineB.theOrigin.subMake(lineA.theOrigin);
+		return diff;
+	}
+	
+	/**
+	 * checks if the specified line is parallel to this line
+	 * 
+	 * @param	otherLine	the other line
+	 * @return	true if parallel
+	 */
+	public boolean isParallel(Lined otherLine){
+		Vector3d dirVW = direction.crossMake(otherLine.direction);
+		return (dirVW.magnitude() == 0.0)? true: false;
+	}
+	
+	/**
+	 * returns the shortest distance between to lines
+	 * 
+	 * @param	otherLine	the other line
+	 * @return	distance
+	 */
+	public double getDistance(Lined otherLine){
+		return getDistanceVector(otherLine).magnitude();
+	}
+
+	/**
+	 * returns the shortest distance vector between this line and the specified point
+	 * 
+	 * @param	point
+	 * @return	distance vector
+	 */
+	public Vector3d getDistanceVector(Vector3d point){
+		Vector3d ret = point.subMake(theOrigin);
+		Vector3d dir = new Vector3d(direction);
+		double scale = dir.dot(ret) / (dir.magnitude() * dir.magnitude());
+		dir.scale(scale);
+		ret.sub(dir);
+		return ret;
+	}
+
+	/**
+	 * returns the shortest distance between this line and the specified point
+	 * 
+	 * @param	point
+	 * @return	distance
+	 */
+	public double getDistance(Vector3d point){
+		Vector3d temp = point.subMake(theOrigin).cross(direction);
+		return temp.magnitude() / direction.magnitude();
+	}
+
+	/**
+	 * checks if this line and the specified line intersect
+	 * 
+	 * @param	otherLine
+	 * @return	true if they intersect
+	 */
+	public boolean intersect(Vector3d otherLine){
+		return (getDistance(otherLine) == 0.0)? true: false;
+	}
+
+	/**
+	 * Applies the transformation matrix to this linef-instance and returns it
+	 * @param mat
+	 * @return the transformed instance
+	 */
+	public Lined transform(Matrix4x4d mat){
+		mat.multiply(theOrigin);
+		direction = mat.multiply(theOtherPoint()).subMake(theOrigin);
+		return this;
+	}
+
+	public String toString() {
+		return "origin + " + theOrigin + " / " + " direction " + direction;
+	}
+
+}
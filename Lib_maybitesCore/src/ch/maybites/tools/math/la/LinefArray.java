@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2013 maybites.ch
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal 
+ *  in the Software without restriction, including without limitation the rights 
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ *  copies of the Software, and to permit persons to whom the Software is furnished
+ *  to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ *  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ch.maybites.tools.math.la;
+
+/**
+ * Stores many lines in one contiguous float array, each one as its origin and its 
+ * direction (ox, oy, oz, dx, dy, dz), like Linef.
+ * 
+ * Suited for projection mapping and picking with many rays: a range of lines is 
+ * intersected with one plane or measured against one line, and the results are 
+ * written into arrays provided by the caller. The loops only touch primitive arrays, 
+ * so the JIT can unroll and vectorize them.
+ * 
+ * The batch operations can be spread over all the cores, see setParallelThreshold().
+ * 
+ * @author maybites
+ *
+ */
+public class LinefArray {
+
+	private float[] l_;
+	private int size;
+	
+	/**
+	 * the number of lines from which on the batch operations run in parallel, 
+	 * 0 if they always run on the calling thread
+	 */
+	private int parallelThreshold = 0;
+	
+	/**
+	 * Create an array of lines with their origin and direction set to zero
+	 * 
+	 * @param _size number of lines
+	 */
+	public LinefArray(int _size){
+		size = _size;
+		l_ = new float[_size * 6];
+	}
+	
+	/**
+	 * Create an array on top of the specified values. The values are NOT copied.
+	 * 
+	 * @param _values the lines one after the other, the length must be a multiple of 6
+	 */
+	public LinefArray(float[] _values){
+		if(_values.length % 6 != 0)
+			throw new IllegalArgumentException("the length of the values must be a multiple of 6: " + _values.length);
+		size = _values.length / 6;
+		l_ = _values;
+	}
+	
+	/**
+	 * Returns the number of lines
+	 * @return
+	 */
+	public int size(){
+		return size;
+	}
+	
+	/**
+	 * Returns the values of all the lines. 
+	 * 
+	 * VERY Careful: this is the internal array, the line i starts at index i * 6.
+	 * 
+	 * @return
+	 */
+	public float[] get(){
+		return l_;
+	}
+	
+	/**
+	 * Copies the line at the specified index into the destination
+	 * 
+	 * @param index index of the line
+	 * @param dest the line to store the values in
+	 * @return dest
+	 */
+	public Linef get(int index, Linef dest){
+		int i = index * 6;
+		dest.theOrigin.set(l_[i], l_[i + 1], l_[i + 2]);
+		dest.direction.set(l_[i + 3], l_[i + 4], l_[i + 5]);
+		return dest;
+	}
+	
+	/**
+	 * Sets the line at the specified index
+	 * 
+	 * @param index index of the line
+	 * @param line the line to copy
+	 */
+	public void set(int index, Linef line){
+		int i = index * 6;
+		l_[i] = line.theOrigin.x();
+		l_[i + 1] = line.theOrigin.y();
+		l_[i + 2] = line.theOrigin.z();
+		l_[i + 3] = line.direction.x();
+		l_[i + 4] = line.direction.y();
+		l_[i + 5] = line.direction.z();
+	}
+	
+	/**
+	 * Sets the number of lines from which on the batch operations are spread over all 
+	 * the cores. Ranges below it are processed by the calling thread.
+	 * 
+	 * Careful: the operands of a batch operation must not be modified until it returns.
+	 * 
+	 * @param threshold number of lines, 0 to always process on the calling thread
+	 */
+	public void setParallelThreshold(int threshold){
+		parallelThreshold = (threshold > 0)? threshold: 0;
+	}
+	
+	/**
+	 * Returns the number of lines from which on the batch operations run in parallel.
+	 * @return 0 if they always run on the calling thread
+	 */
+	public int getParallelThreshold(){
+		return parallelThreshold;
+	}
+	
+	/**
+	 * Intersects each line of the range with the plane and stores the position on the 
+	 * line: the intersection point is origin + t * direction. 
+	 * 
+	 * @param plane the plane
+	 * @param dest the parameter t for the line from + k at index k, NaN if the line 
+	 * 		is parallel to the plane. At least count elements.
+	 * @param from index of the first line
+	 * @param count number of lines
+	 */
+	public void getIntersectionParameters(Planef plane, final float[] dest, final int from, int count){
+		Vector3f normal = plane.getNormal();
+		final float nx = normal.x(), ny = normal.y(), nz = normal.z(), np = plane.getP();
+		run(from, count, new Parallel.Range(){
+			public void run(int first, int end) {
+				for(int i = first; i < end; i++){
+					int l = i * 6;
+					float nd = nx * l_[l + 3] + ny * l_[l + 4] + nz * l_[l + 5];
+					float no = nx * l_[l] + ny * l_[l + 1] + nz * l_[l + 2];
+					dest[i - from] = (nd != 0.0f)? (np - no) / nd: Float.NaN;
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Intersects each line of the range with the plane and stores the intersection 
+	 * points. See Planef.getIntersection(Linef)
+	 * 
+	 * @param plane the plane
+	 * @param dest the point [x,y,z] for the line from + k at index k * 3, NaN if the 
+	 * 		line is parallel to the plane. At least count * 3 elements.
+	 * @param from index of the first line
+	 * @param count number of lines
+	 */
+	public void getIntersections(Planef plane, final float[] dest, final int from, int count){
+		Vector3f normal = plane.getNormal();
+		final float nx = normal.x(), ny = normal.y(), nz = normal.z(), np = plane.getP();
+		run(from, count, new Parallel.Range(){
+			public void run(int first, int end) {
+				for(int i = first; i < end; i++){
+					int l = i * 6;
+					int d = (i - from) * 3;
+					float ox = l_[l], oy = l_[l + 1], oz = l_[l + 2];
+					float dx = l_[l + 3], dy = l_[l + 4], dz = l_[l + 5];
+					float nd = nx * dx + ny * dy + nz * dz;
+					float t = (nd != 0.0f)? (np - (nx * ox + ny * oy + nz * oz)) / nd: Float.NaN;
+					dest[d]     = ox + t * dx;
+					dest[d + 1] = oy + t * dy;
+					dest[d + 2] = oz + t * dz;
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Stores the shortest distance between each line of the range and the specified 
+	 * line. See Linef.getDistance(Linef)
+	 * 
+	 * @param line the other line
+	 * @param dest the distance for the line from + k at index k, at least count elements
+	 * @param from index of the first line
+	 * @param count number of lines
+	 */
+	public void getDistances(Linef line, final float[] dest, final int from, int count){
+		final float ox = line.theOrigin.x(), oy = line.theOrigin.y(), oz = line.theOrigin.z();
+		final float dx = line.direction.x(), dy = line.direction.y(), dz = line.direction.z();
+		run(from, count, new Parallel.Range(){
+			public void run(int first, int end) {
+				for(int i = first; i < end; i++){
+					int l = i * 6;
+					float rx = ox - l_[l], ry = oy - l_[l + 1], rz = oz - l_[l + 2];
+					float ex = l_[l + 3], ey = l_[l + 4], ez = l_[l + 5];
+					// the common normal of both directions
+					float cx = dy * ez - dz * ey;
+					float cy = dz * ex - dx * ez;
+					float cz = dx * ey - dy * ex;
+					float c2 = cx * cx + cy * cy + cz * cz;
+					if(c2 != 0.0f){
+						dest[i - from] = Math.abs(cx * rx + cy * ry + cz * rz) / (float)Math.sqrt(c2);
+					} else {
+						// parallel: the distance of the other origin to this line
+						float px = ry * ez - rz * ey;
+						float py = rz * ex - rx * ez;
+						float pz = rx * ey - ry * ex;
+						dest[i - from] = (float)Math.sqrt((px * px + py * py + pz * pz) / 
+								(ex * ex + ey * ey + ez * ez));
+					}
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Stores the shortest distance between each line of the range and the point. 
+	 * See Linef.getDistance(Vector3f)
+	 * 
+	 * @param point the point
+	 * @param dest the distance for the line from + k at index k, at least count elements
+	 * @param from index of the first line
+	 * @param count number of lines
+	 */
+	public void getDistances(Vector3f point, final float[] dest, final int from, int count){
+		final float x = point.x(), y = point.y(), z = point.z();
+		run(from, count, new Parallel.Range(){
+			public void run(int first, int end) {
+				for(int i = first; i < end; i++){
+					int l = i * 6;
+					float rx = x - l_[l], ry = y - l_[l + 1], rz = z - l_[l + 2];
+					float ex = l_[l + 3], ey = l_[l + 4], ez = l_[l + 5];
+					float px = ry * ez - rz * ey;
+					float py = rz * ex - rx * ez;
+					float pz = rx * ey - ry * ex;
+					dest[i - from] = (float)Math.sqrt((px * px + py * py + pz * pz) / 
+							(ex * ex + ey * ey + ez * ez));
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Runs the range of lines on the calling thread or in parallel
+	 */
+	private void run(int from, int count, Parallel.Range range){
+		Parallel.run(from, count, size, parallelThreshold, 16, range);
+	}
+}
@@ -29,6 +29,18 @@ public class Matrix4x4d
 {
   private double[]  m_;  // of 16
 
+  /**
+   * The default number of points below which transformPointsParallel()
+   * stays on the calling thread.
+   */
+  public static final int PARALLEL_THRESHOLD = 1 << 15;
+
+  /**
+   * transformPointsParallel() splits the points at multiples of 8 points,
+   * the size of three cache lines of interleaved xyz doubles.
+   */
+  private static final int PARALLEL_ALIGN = 8;
+
 
   
   /**
@@ -135,6 +147,20 @@ public class Matrix4x4d
     for (int i=0; i<16; i++)
       m_[i] = matrix.m_[i];
   }
+
+
+
+  /**
+   * Set the value of this 4x4 matrix according to the specified
+   * float matrix.
+   *
+   * @param matrix  Matrix to copy.
+   */
+  public void set (Matrix4x4f matrix)
+  {
+    for (int i=0; i<16; i++)
+      m_[i] = matrix.getElement (i / 4, i % 4);
+  }
   
 
   
@@ -350,6 +376,40 @@ public class Matrix4x4d
   
 
 
+  /**
+   * Transform the specified point with this 4x4 matrix, including the
+   * division by w. The result is stored in the point.
+   * 
+   * @param point  Point to transform.
+   * @return       point
+   */
+  public Vector3d multiply (Vector3d point)
+  {
+    double x = point.x(), y = point.y(), z = point.z();
+    double d = 1.0 / (x * m_[3] + y * m_[7] + z * m_[11] + m_[15]);
+
+    point.set ((x * m_[0] + y * m_[4] + z * m_[8]  + m_[12]) * d,
+               (x * m_[1] + y * m_[5] + z * m_[9]  + m_[13]) * d,
+               (x * m_[2] + y * m_[6] + z * m_[10] + m_[14]) * d);
+    return point;
+  }
+
+
+
+  /**
+   * Transform a copy of the specified point with this 4x4 matrix.
+   * The point is NOT modified.
+   * 
+   * @param point  Point to transform.
+   * @return       New transformed point.
+   */
+  public Vector3d multiplyMake (Vector3d point)
+  {
+    return multiply (point.clone());
+  }
+
+
+
   /**
    * Transform one coordinate using this 4x4 matrix.
    * 
@@ -385,23 +445,77 @@ public class Matrix4x4d
    */
   public void transformPoints (double[] points)
   {
-    for (int i = 0; i < points.length; i += 3) {
-      double x = points[i + 0] * m_[0]  +
-                 points[i + 1] * m_[4]  +
-                 points[i + 2] * m_[8]  + m_[12];
+    transformPoints (points, 0, points.length / 3);
+  }
 
-      double y = points[i + 0] * m_[1]  +
-                 points[i + 1] * m_[5]  +
-                 points[i + 2] * m_[9]  + m_[13];
 
-      double z = points[i + 0] * m_[2]   +
-                 points[i + 1] * m_[6]   +
-                 points[i + 2] * m_[10]  + m_[14];
 
-      points[i + 0] = x;
-      points[i + 1] = y;
-      points[i + 2] = z;            
+  /**
+   * Transform a range of 3D coordinates using this 4x4 matrix.
+   * The result of the operation is put back in the original array.
+   * 
+   * @param points  Points to transform [x0,y0,z0,x1,y1,z1,...]
+   * @param first   Index of the first point to transform.
+   * @param count   Number of points to transform.
+   */
+  public void transformPoints (double[] points, int first, int count)
+  {
+    double m0  = m_[0],  m1  = m_[1],  m2  = m_[2];
+    double m4  = m_[4],  m5  = m_[5],  m6  = m_[6];
+    double m8  = m_[8],  m9  = m_[9],  m10 = m_[10];
+    double m12 = m_[12], m13 = m_[13], m14 = m_[14];
+    int end = (first + count) * 3;
+    for (int i = first * 3; i < end; i += 3) {
+      double x = points[i + 0], y = points[i + 1], z = points[i + 2];
+
+      points[i + 0] = x * m0 + y * m4 + z * m8  + m12;
+      points[i + 1] = x * m1 + y * m5 + z * m9  + m13;
+      points[i + 2] = x * m2 + y * m6 + z * m10 + m14;
+    }
+  }
+
+
+
+  /**
+   * Transform a set of 3D coordinates using this 4x4 matrix on all
+   * the cores. The result of the operation is put back in the original
+   * array. Arrays with less than PARALLEL_THRESHOLD points are
+   * transformed by the calling thread.
+   * 
+   * Careful: this matrix must not be modified until this method returns.
+   * 
+   * @param points  Points to transform [x0,y0,z0,x1,y1,z1,...]
+   */
+  public void transformPointsParallel (double[] points)
+  {
+    transformPointsParallel (points, PARALLEL_THRESHOLD);
+  }
+
+
+
+  /**
+   * Transform a set of 3D coordinates using this 4x4 matrix on all
+   * the cores. The result of the operation is put back in the original
+   * array.
+   * 
+   * Careful: this matrix must not be modified until this method returns.
+   * 
+   * @param points     Points to transform [x0,y0,z0,x1,y1,z1,...]
+   * @param threshold  Number of points below which the calling thread
+   *                   does all the work.
+   */
+  public void transformPointsParallel (final double[] points, int threshold)
+  {
+    int count = points.length / 3;
+    if (count < threshold) {
+      transformPoints (points, 0, count);
+      return;
     }
+    Parallel.forRange (0, count, PARALLEL_ALIGN, new Parallel.Range() {
+      public void run (int from, int to) {
+        transformPoints (points, from, to - from);
+      }
+    });
   }
 
 
@@ -580,6 +694,36 @@ public class Matrix4x4d
 
 
       
+  /**
+   * Apply rotation with a quaternion.
+   *
+   * @param quat  Normalized quaternion.
+   */
+  public void rotate (Quaterniond quat)
+  {
+    double x = quat.x(), y = quat.y(), z = quat.z(), w = quat.w();
+    double sqw = w * w, sqx = x * x, sqy = y * y, sqz = z * z;
+
+    double r00 =  sqx - sqy - sqz + sqw;
+    double r11 = -sqx + sqy - sqz + sqw;
+    double r22 = -sqx - sqy + sqz + sqw;
+    double r01 = 2.0 * (x * y + z * w);
+    double r10 = 2.0 * (x * y - z * w);
+    double r02 = 2.0 * (x * z - y * w);
+    double r20 = 2.0 * (x * z + y * w);
+    double r12 = 2.0 * (y * z + x * w);
+    double r21 = 2.0 * (y * z - x * w);
+
+    for (int i = 0; i < 16; i += 4) {
+      double a0 = m_[i], a1 = m_[i + 1], a2 = m_[i + 2];
+      m_[i]     = a0 * r00 + a1 * r10 + a2 * r20;
+      m_[i + 1] = a0 * r01 + a1 * r11 + a2 * r21;
+      m_[i + 2] = a0 * r02 + a1 * r12 + a2 * r22;
+    }
+  }
+
+
+
   /**
    * Apply rotation around an arbitrary axis.
    *
@@ -741,10 +885,16 @@ public class Matrix4x4d
 
 
   /**
-   * Invert this 4x4 matrix.
+   * Invert this 4x4 matrix. Affine matrices (see isAffine()) are
+   * inverted with invertAffine().
    */
   public void invert()
   {
+    if (isAffine()) {
+      invertAffine();
+      return;
+    }
+
     double[] tmp = new double[12];
     double[] src = new double[16];
     double[] dst = new double[16];  
@@ -831,6 +981,82 @@ public class Matrix4x4d
   }
 
 
+
+  /**
+   * Return true if the last column of this matrix is (0, 0, 0, 1),
+   * which is the case for any combination of scale, rotate and translate.
+   * 
+   * @return  True if the matrix is affine.
+   */
+  public boolean isAffine()
+  {
+    return m_[3] == 0.0 && m_[7] == 0.0 && m_[11] == 0.0 && m_[15] == 1.0;
+  }
+
+
+
+  /**
+   * Invert this 4x4 matrix, assuming it is affine (see isAffine()).
+   * The upper left 3x3 is inverted with its cofactors and the
+   * translation is rotated back with it.
+   */
+  public void invertAffine()
+  {
+    double a00 = m_[0], a01 = m_[1], a02 = m_[2];
+    double a10 = m_[4], a11 = m_[5], a12 = m_[6];
+    double a20 = m_[8], a21 = m_[9], a22 = m_[10];
+    double tx = m_[12], ty = m_[13], tz = m_[14];
+
+    // Cofactors of the first column
+    double c00 = a11 * a22 - a12 * a21;
+    double c10 = a02 * a21 - a01 * a22;
+    double c20 = a01 * a12 - a02 * a11;
+
+    double det = 1.0 / (a00 * c00 + a10 * c10 + a20 * c20);
+
+    double i00 = c00 * det;
+    double i01 = c10 * det;
+    double i02 = c20 * det;
+    double i10 = (a12 * a20 - a10 * a22) * det;
+    double i11 = (a00 * a22 - a02 * a20) * det;
+    double i12 = (a02 * a10 - a00 * a12) * det;
+    double i20 = (a10 * a21 - a11 * a20) * det;
+    double i21 = (a01 * a20 - a00 * a21) * det;
+    double i22 = (a00 * a11 - a01 * a10) * det;
+
+    m_[0]  = i00;  m_[1]  = i01;  m_[2]  = i02;
+    m_[4]  = i10;  m_[5]  = i11;  m_[6]  = i12;
+    m_[8]  = i20;  m_[9]  = i21;  m_[10] = i22;
+    m_[12] = -(tx * i00 + ty * i10 + tz * i20);
+    m_[13] = -(tx * i01 + ty * i11 + tz * i21);
+    m_[14] = -(tx * i02 + ty * i12 + tz * i22);
+  }
+
+
+
+  /**
+   * Invert this 4x4 matrix, assuming it is rigid (a combination of
+   * rotate and translate). The inverse of the rotation is its transpose.
+   */
+  public void invertRigid()
+  {
+    double tmp;
+    for (int i = 0; i < 3; i++) {
+      for (int j = i + 1; j < 3; j++) {
+        tmp = m_[i*4 + j];
+        m_[i*4 + j] = m_[j*4 + i];
+        m_[j*4 + i] = tmp;
+      }
+    }
+
+    // the rows of the transposed rotation are its former columns
+    double tx = m_[12], ty = m_[13], tz = m_[14];
+    m_[12] = -(tx * m_[0] + ty * m_[4] + tz * m_[8]);
+    m_[13] = -(tx * m_[1] + ty * m_[5] + tz * m_[9]);
+    m_[14] = -(tx * m_[2] + ty * m_[6] + tz * m_[10]);
+  }
+
+
   
   /**
    * Return the inverse of the specified matrix.
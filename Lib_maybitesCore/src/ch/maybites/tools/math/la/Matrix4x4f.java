@@ -21,6 +21,10 @@
 
 package ch.maybites.tools.math.la;
 
+import java.nio.FloatBuffer;
+
+import ch.maybites.tools.Calc;
+
 import ch.maybites.tools.threedee.Frustum;
 
 /**
@@ -54,6 +58,55 @@ public class Matrix4x4f
 {
 	private float[]  m_;  // of 16
 
+	/**
+	 * the kind of this matrix as a combination of the bits below. A cleared bit 
+	 * guarantees the matrix does not contain that kind of transformation, a set bit 
+	 * only means it might. It is kept up to date by the methods modifying the matrix 
+	 * and lets multiply(), invert() and the point transforms take the cheapest path.
+	 */
+	private int kind = UNKNOWN;
+
+	/**
+	 * true once get() handed out the internal array. Since it might be written at any 
+	 * time, the kind is derived from the values again before it is used.
+	 */
+	private boolean escaped = false;
+
+	/**
+	 * no bits set
+	 */
+	private static final int IDENTITY = 0;
+	/**
+	 * the translation row is not (0, 0, 0)
+	 */
+	private static final int TRANSLATION = 1;
+	/**
+	 * the upper left 3x3 is diagonal
+	 */
+	private static final int SCALE = 2;
+	/**
+	 * the upper left 3x3 is a rotation
+	 */
+	private static final int ROTATION = 4;
+	/**
+	 * the upper left 3x3 is anything
+	 */
+	private static final int AFFINE = 8;
+	/**
+	 * the last column is not (0, 0, 0, 1)
+	 */
+	private static final int PROJECTIVE = 16;
+	/**
+	 * all bits set, no assumptions about the matrix
+	 */
+	private static final int UNKNOWN = TRANSLATION | SCALE | ROTATION | AFFINE | PROJECTIVE;
+
+	/**
+	 * the largest deviation of the squared length of a rotation from 1 that is still 
+	 * tagged ROTATION and inverted by transposing it, see unitKind()
+	 */
+	private static final float UNIT_EPSILON = 0.00001f;
+
 	private static final int X = 0;
 	private static final int Y = 1;
 	private static final int Z = 2;
@@ -61,6 +114,26 @@ public class Matrix4x4f
 
 	private final double SQRTHALF = 0.7071067811865475244;
 
+	/**
+	 * the largest squared cosine between two rows of a matrix without shear
+	 */
+	private static final float SHEAR_EPSILON = 1e-10f;
+
+	/**
+	 * the default number of points below which the parallel bulk transforms 
+	 * stay on the calling thread
+	 */
+	public static final int PARALLEL_THRESHOLD = 1 << 15;
+
+	/**
+	 * the parallel bulk transforms split the points at multiples of 16 points, 
+	 * the size of three cache lines (3 * 64 bytes) of interleaved xyz floats
+	 */
+	private static final int PARALLEL_ALIGN = 16;
+
+	private static final char[] NXT = new char[]{Y,Z,X};
+	private static final int[] LO2HI = new int[]{1, 2, 0};
+
 	/**
 	 * Construct a 4x4 identity matrix.
 	 */
@@ -211,6 +284,7 @@ public class Matrix4x4f
 		for (int i=0; i<4; i++)
 			for (int j=0; j<4; j++)
 				m_[i*4 + j] = i == j ? 1.0f : 0.0f;
+		kind = IDENTITY;
 	}
 
 
@@ -225,6 +299,20 @@ public class Matrix4x4f
 	{
 		for (int i=0; i<16; i++)
 			m_[i] = matrix.m_[i];
+		kind = matrix.kind();
+	}
+
+	/**
+	 * Set the value of this 4x4matrix according to the specified double
+	 * matrix
+	 *
+	 * @param matrix  Matrix to copy.
+	 */
+	public void set(Matrix4x4d matrix)
+	{
+		for (int i=0; i<16; i++)
+			m_[i] = (float)matrix.getElement(i / 4, i % 4);
+		classify();
 	}
 
 	/**
@@ -234,9 +322,19 @@ public class Matrix4x4f
 	 * @throws   ArrayOutOfBoundsException
 	 */
 	public void set(float[] m)
+	{
+		set(m, 0);
+	}
+
+	/**
+	 * Set the values of this 4x4 matrix from the 16 ROW-oriented elements stored at 
+	 * the offset of the array.
+	 */
+	void set(float[] m, int offset)
 	{
 		for (int i=0; i<16; i++)
-			m_[i] = m[i];
+			m_[i] = m[offset + i];
+		classify();
 	}
 
 	/**
@@ -250,6 +348,7 @@ public class Matrix4x4f
 		for (int i=0; i<16; i++){
 			m_[i/4 + i%4*4] = m[i];
 		}
+		classify();
 	}
 
 	/**
@@ -298,6 +397,7 @@ public class Matrix4x4f
 		m_[13] = m31;
 		m_[14] = m32;
 		m_[15] = m33;  
+		classify();
 	}
 
 
@@ -318,7 +418,8 @@ public class Matrix4x4f
 		float B = (top+bottom)/(top-bottom);
 		float C = -(zFar+zNear)/(zFar-zNear);
 		float D = -2.0f*zFar*zNear/(zFar-zNear);
-		initialize();
+		for (int i=0; i<16; i++)
+			m_[i] = 0.0f;
 		setElement(0, 0, 2.0f*zNear/(right-left));
 		setElement(1, 1, 2.0f*zNear/(top-bottom));
 		setElement(2, 0, A);
@@ -326,7 +427,7 @@ public class Matrix4x4f
 		setElement(2, 2, C);
 		setElement(2, 3, -1.0f);
 		setElement(3, 2, D);
-}
+	}
 
 	/**
 	 * Sets this matrix as a orthografic projection matrix
@@ -344,13 +445,15 @@ public class Matrix4x4f
 		float tx = -(right+left)/(right-left);
 		float ty = -(top+bottom)/(top-bottom);
 		float tz = -(zFar+zNear)/(zFar-zNear);
-		initialize();
+		for (int i=0; i<16; i++)
+			m_[i] = 0.0f;
 		setElement(0, 0, 2.0f/(right-left));
 		setElement(1, 1, 2.0f/(top-bottom));
 		setElement(2, 2, -2.0f/(zFar-zNear));
 		setElement(3, 0, tx);
 		setElement(3, 1, ty);
 		setElement(3, 2, tz);
+		classify();
 	}
 
 	/**
@@ -397,58 +500,243 @@ public class Matrix4x4f
 	 * @param quat  normalized Quaternion4f.
 	 */
 	public void set(Quaternionf quat){
-		//quat.normalize();
-		float sqw = quat.w()*quat.w();
-		float sqx = quat.x()*quat.x();
-		float sqy = quat.y()*quat.y();
-		float sqz = quat.z()*quat.z();
+		setIdentity();
+		rotate(quat);
+	}
 
+	/**
+	 * Overwrites the upper left 3x3 elements with the rotation of the normalized 
+	 * quaternion, without changing the rest of the matrix. Like setTranslation(), 
+	 * no intermediate matrix is built.
+	 * 
+	 * @param quat  normalized Quaternion
+	 */
+	public void setRotation(Quaternionf quat){
+		set3x3(quat, 1.0f, 1.0f, 1.0f);
+		kind = (kind() & (TRANSLATION | PROJECTIVE)) | rotationKind(quat, 1.0f, 1.0f, 1.0f);
+	}
 
-		float m00 = ( sqx - sqy - sqz + sqw); // since sqw + sqx + sqy + sqz =1/invs*invs
-		float m11 = (-sqx + sqy - sqz + sqw);
-		float m22 = (-sqx - sqy + sqz + sqw);
+	/**
+	 * Sets this matrix to scale, then rotate, then translate. The result is the same as 
+	 * setIdentity(), scale(scale), rotate(rotation) and translate(translation), but all 
+	 * the elements are written in one pass.
+	 * 
+	 * @param translation
+	 * @param rotation  normalized Quaternion
+	 * @param scale  scale factors for each axis
+	 */
+	public void set(Vector3f translation, Quaternionf rotation, Vector3f scale){
+		set3x3(rotation, scale.x(), scale.y(), scale.z());
+		m_[3] = 0.0f;
+		m_[7] = 0.0f;
+		m_[11] = 0.0f;
+		m_[12] = translation.x();
+		m_[13] = translation.y();
+		m_[14] = translation.z();
+		m_[15] = 1.0f;
+		kind = rotationKind(rotation, scale.x(), scale.y(), scale.z());
+		if (m_[12] != 0.0f || m_[13] != 0.0f || m_[14] != 0.0f)
+			kind |= TRANSLATION;
+	}
 
-		float tmp1 = quat.x()*quat.y();
-		float tmp2 = quat.z()*quat.w();
-		float m01 = 2.0f * (tmp1 + tmp2);
-		float m10 = 2.0f * (tmp1 - tmp2);
-		tmp1 = quat.x()*quat.z();
-		tmp2 = quat.y()*quat.w();
-		float m02 = 2.0f * (tmp1 - tmp2);
-		float m20 = 2.0f * (tmp1 + tmp2);
-		tmp1 = quat.y()*quat.z();
-		tmp2 = quat.x()*quat.w();
-		float m12 = 2.0f * (tmp1 + tmp2);
-		float m21 = 2.0f * (tmp1 - tmp2);      
+	/**
+	 * Writes the rotation of the quaternion into the upper left 3x3 elements, 
+	 * the rows scaled by the factors.
+	 */
+	private void set3x3(Quaternionf quat, float sx, float sy, float sz){
+		float x = quat.x(), y = quat.y(), z = quat.z(), w = quat.w();
+		if (x == 0.0f && y == 0.0f && z == 0.0f && w * w == 1.0f) {
+			m_[0] = sx;   m_[1] = 0.0f; m_[2] = 0.0f;
+			m_[4] = 0.0f; m_[5] = sy;   m_[6] = 0.0f;
+			m_[8] = 0.0f; m_[9] = 0.0f; m_[10] = sz;
+			return;
+		}
+		float sqw = w * w, sqx = x * x, sqy = y * y, sqz = z * z;
+		float xy = x * y, zw = z * w, xz = x * z, yw = y * w, yz = y * z, xw = x * w;
+		m_[0]  = sx * ( sqx - sqy - sqz + sqw);
+		m_[1]  = sx * 2.0f * (xy + zw);
+		m_[2]  = sx * 2.0f * (xz - yw);
+		m_[4]  = sy * 2.0f * (xy - zw);
+		m_[5]  = sy * (-sqx + sqy - sqz + sqw);
+		m_[6]  = sy * 2.0f * (yz + xw);
+		m_[8]  = sz * 2.0f * (xz + yw);
+		m_[9]  = sz * 2.0f * (yz - xw);
+		m_[10] = sz * (-sqx - sqy + sqz + sqw);
+	}
 
-		set (m00, m01, m02, 0,
-				m10, m11, m12, 0,
-				m20, m21, m22, 0,
-				0, 0, 0, 1);
+	/**
+	 * Returns the kind of the upper left 3x3 elements written by set3x3()
+	 */
+	private static int rotationKind(Quaternionf quat, float sx, float sy, float sz){
+		int k = IDENTITY;
+		float x = quat.x(), y = quat.y(), z = quat.z(), w = quat.w();
+		if (x != 0.0f || y != 0.0f || z != 0.0f || w * w != 1.0f)
+			k |= unitKind(x * x + y * y + z * z + w * w);
+		if (sx != 1.0f || sy != 1.0f || sz != 1.0f)
+			k |= SCALE;
+		return k;
 	}
 
 
 	/**
 	 * Return the values of this 4x4 matrix.
 	 * 
+	 * VERY Careful: this is the internal array. Since it might be modified at any 
+	 * time, from now on this matrix derives its kind from the values before every 
+	 * multiply(), invert() and point transform, which costs a few comparisons each time. 
+	 * Use get(float[]) to read the values without this penalty.
+	 * 
 	 * @return  Array ov values: m00, m01, etc.
 	 */
 	public float[] get()
 	{
+		escaped = true;
 		return m_;
 	}
 
+	/**
+	 * Returns the kind, derived from the values again if the internal array escaped
+	 */
+	private int kind()
+	{
+		if (escaped)
+			classify();
+		return kind;
+	}
+
+	/**
+	 * Sets the kind from the values. ROTATION is never derived from the values, since 
+	 * it only holds within a tolerance, such matrices are AFFINE.
+	 */
+	private void classify()
+	{
+		int k = IDENTITY;
+		if (!isAffine())
+			k |= PROJECTIVE;
+		if (m_[12] != 0.0f || m_[13] != 0.0f || m_[14] != 0.0f)
+			k |= TRANSLATION;
+		if (m_[1] != 0.0f || m_[2] != 0.0f || m_[4] != 0.0f || 
+				m_[6] != 0.0f || m_[8] != 0.0f || m_[9] != 0.0f)
+			k |= AFFINE;
+		else if (m_[0] != 1.0f || m_[5] != 1.0f || m_[10] != 1.0f)
+			k |= SCALE;
+		kind = k;
+	}
+
+	/**
+	 * Returns true if the last column of this matrix is (0, 0, 0, 1), which is the 
+	 * case for any combination of scale, rotate and translate.
+	 * @return
+	 */
+	public boolean isAffine()
+	{
+		return m_[3] == 0.0f && m_[7] == 0.0f && m_[11] == 0.0f && m_[15] == 1.0f;
+	}
+
 	/**
 	 * Return the values of this 4x4 matrix in COLUMN-oriented fashion.
 	 * 
 	 */
 	public float[] getCol()
 	{
-		float[] ret = new float[16];
+		return getCol(new float[16]);
+	}
+
+	/**
+	 * Copies the values of this 4x4 matrix into the provided array.
+	 * 
+	 * @param dest  Array of at least 16 elements, filled ROW-oriented: m00, m01, etc.
+	 * @return      dest
+	 */
+	public float[] get(float[] dest)
+	{
+		System.arraycopy(m_, 0, dest, 0, 16);
+		return dest;
+	}
+
+	/**
+	 * Copies the values of this 4x4 matrix ROW-oriented into the array at the offset.
+	 */
+	void get(float[] dest, int offset)
+	{
+		System.arraycopy(m_, 0, dest, offset, 16);
+	}
+
+	/**
+	 * Copies the values of this 4x4 matrix into the provided array in COLUMN-oriented fashion.
+	 * 
+	 * @param dest  Array of at least 16 elements, filled COLUMN-oriented: m00, m10, etc.
+	 * @return      dest
+	 */
+	public float[] getCol(float[] dest)
+	{
 		for (int i=0; i<16; i++){
-			ret[i] = m_[i/4 + i%4*4];
+			dest[i] = m_[i/4 + i%4*4];
 		}
-		return ret;
+		return dest;
+	}
+
+	/**
+	 * Writes the values of this 4x4 matrix ROW-oriented into the buffer, starting at 
+	 * the specified index. The position of the buffer is not changed.
+	 * 
+	 * The buffer may be a direct buffer (see ByteBuffer.allocateDirect()), so the matrix 
+	 * can be handed to OpenGL or JNI without an intermediate array. Many matrices can be 
+	 * stored in one buffer at multiples of 16.
+	 * 
+	 * @param buffer  Buffer with at least 16 elements left after index
+	 * @param index   Index of the first element to write
+	 * @return        buffer
+	 */
+	public FloatBuffer store(FloatBuffer buffer, int index)
+	{
+		for (int i = 0; i < 16; i++)
+			buffer.put(index + i, m_[i]);
+		return buffer;
+	}
+
+	/**
+	 * Writes the values of this 4x4 matrix COLUMN-oriented into the buffer, starting at 
+	 * the specified index. This is the layout OpenGL expects. The position of the buffer 
+	 * is not changed.
+	 * 
+	 * @param buffer  Buffer with at least 16 elements left after index
+	 * @param index   Index of the first element to write
+	 * @return        buffer
+	 */
+	public FloatBuffer storeCol(FloatBuffer buffer, int index)
+	{
+		for (int i = 0; i < 16; i++)
+			buffer.put(index + i, m_[i/4 + i%4*4]);
+		return buffer;
+	}
+
+	/**
+	 * Reads the values of this 4x4 matrix ROW-oriented from the buffer, starting at 
+	 * the specified index. The position of the buffer is not changed.
+	 * 
+	 * @param buffer  Buffer with at least 16 elements left after index
+	 * @param index   Index of the first element to read
+	 */
+	public void load(FloatBuffer buffer, int index)
+	{
+		for (int i = 0; i < 16; i++)
+			m_[i] = buffer.get(index + i);
+		classify();
+	}
+
+	/**
+	 * Reads the values of this 4x4 matrix COLUMN-oriented from the buffer, starting at 
+	 * the specified index. The position of the buffer is not changed.
+	 * 
+	 * @param buffer  Buffer with at least 16 elements left after index
+	 * @param index   Index of the first element to read
+	 */
+	public void loadCol(FloatBuffer buffer, int index)
+	{
+		for (int i = 0; i < 16; i++)
+			m_[i/4 + i%4*4] = buffer.get(index + i);
+		classify();
 	}
 
 	/**
@@ -465,6 +753,17 @@ public class Matrix4x4f
 	 * 
 	 */
 	public Quaternionf getQuaternion(){
+		return getQuaternion(new Quaternionf());
+	}
+
+	/**
+	 * Stores this 4x4 matrix as a quaternion in the provided instance. 
+	 * See getQuaternion().
+	 * 
+	 * @param dest  the quaternion to store the result in
+	 * @return      dest
+	 */
+	public Quaternionf getQuaternion(Quaternionf dest){
 		float tr = m_[0] + m_[5] + m_[10];
 		float qw, qx, qy, qz;
 
@@ -494,8 +793,8 @@ public class Matrix4x4f
 			qz = 0.25f * S;
 		}
 
-		Quaternionf ret = new Quaternionf(qx, qy, qz, qw);
-		return ret;
+		dest.set(qx, qy, qz, qw);
+		return dest;
 	}
 
 	/**
@@ -503,7 +802,17 @@ public class Matrix4x4f
 	 * @return
 	 */
 	public Vector3f getTranslation(){
-		return new Vector3f(getElement (3, 0),getElement (3, 1),getElement (3, 2));  
+		return getTranslation(new Vector3f());  
+	}
+
+	/**
+	 * Stores the Translation part of this Matrix in the provided vector
+	 * @param dest  the vector to store the result in
+	 * @return      dest
+	 */
+	public Vector3f getTranslation(Vector3f dest){
+		dest.set(m_[12], m_[13], m_[14]);
+		return dest;
 	}
 
 	/**
@@ -527,8 +836,15 @@ public class Matrix4x4f
 	 * @return this instance
 	 */
 	public Matrix4x4f transpose(){
-		Matrix4x4f trans = new Matrix4x4f(getCol());
-		set(trans);
+		float tmp;
+		for (int i=0; i<4; i++){
+			for (int j=i+1; j<4; j++){
+				tmp = m_[i*4 + j];
+				m_[i*4 + j] = m_[j*4 + i];
+				m_[j*4 + i] = tmp;
+			}
+		}
+		classify();
 		return this;
 	}
 
@@ -554,7 +870,20 @@ public class Matrix4x4f
 	 * @throws   ArrayOutOfBoundsException
 	 */
 	public Vector3f getRowAsVector(int row){
-		return new Vector3f(getElement(row, 0), getElement(row, 1), getElement(row, 1));
+		return getRowAsVector(row, new Vector3f());
+	}
+
+	/**
+	 * Stores a Row in the provided vector.
+	 * 
+	 * @param row   Row to get (first row is 0).
+	 * @param dest  the vector to store the result in
+	 * @return      dest
+	 * @throws   ArrayOutOfBoundsException
+	 */
+	public Vector3f getRowAsVector(int row, Vector3f dest){
+		dest.set(m_[row*4], m_[row*4 + 1], m_[row*4 + 2]);
+		return dest;
 	}
 
 	/**
@@ -568,6 +897,7 @@ public class Matrix4x4f
 	public void setElement (int i, int j, float value)
 	{
 		m_[i*4 + j] = value;
+		classify();
 	}
 
 
@@ -582,6 +912,7 @@ public class Matrix4x4f
 		for (int i=0; i<4; i++)
 			for (int j=0; j<4; j++)
 				m_[i*4 + j] += matrix.m_[i*4 + j];
+		classify();
 		return this;
 	}
 
@@ -621,18 +952,7 @@ public class Matrix4x4f
 	 * @return Product of this instance * matrix.
 	 */
 	public Matrix4x4f multiply(Matrix4x4f matrix){
-		Matrix4x4f product = new Matrix4x4f();
-
-		for (int i = 0; i < 16; i += 4) { //step through rows
-			for (int j = 0; j < 4; j++) { //step through columns
-				product.m_[i + j] = 0.0f; //set value of marixvector = 0
-				for (int k = 0; k < 4; k++) // step though each Row (k) and each Column(k*4)
-					product.m_[i + j] += m_[i + k] * matrix.m_[k*4 + j]; // and add the multiplied result
-			}
-		}
-
-		set(product);
-		return this;
+		return multiply(this, matrix, this);
 	}
 
 	/**
@@ -643,7 +963,92 @@ public class Matrix4x4f
 	 * @return Product of this instance * matrix.
 	 */
 	public Matrix4x4f multiplyMake (Matrix4x4f matrix){
-		return clone().multiply(matrix);
+		return multiply(this, matrix, new Matrix4x4f());
+	}
+
+	/**
+	 * Multiply two matrices and store the result in the destination matrix. 
+	 * The destination may be the same instance as one of the operands.
+	 * 
+	 * Identity, translation and scale operands are applied without a full product,
+	 * affine operands skip the last column.
+	 * 
+	 * @param a     left matrix.
+	 * @param b     right matrix.
+	 * @param dest  Matrix to store the product a * b in.
+	 * @return      dest
+	 */
+	public static Matrix4x4f multiply(Matrix4x4f a, Matrix4x4f b, Matrix4x4f dest){
+		int ak = a.kind(), bk = b.kind();
+		if (bk == IDENTITY) {
+			if (dest != a)
+				dest.set(a);
+			return dest;
+		}
+		if (ak == IDENTITY) {
+			if (dest != b)
+				dest.set(b);
+			return dest;
+		}
+		if (bk == TRANSLATION) {
+			float tx = b.m_[12], ty = b.m_[13], tz = b.m_[14];
+			if (dest != a)
+				dest.set(a);
+			return dest.translate(tx, ty, tz);
+		}
+		if (bk == SCALE) {
+			float sx = b.m_[0], sy = b.m_[5], sz = b.m_[10];
+			if (dest != a)
+				dest.set(a);
+			return dest.scale(sx, sy, sz);
+		}
+		if (((ak | bk) & PROJECTIVE) == 0)
+			multiplyAffine(a.m_, b.m_, dest.m_);
+		else
+			multiply(a.m_, 0, b.m_, 0, dest.m_, 0);
+		dest.kind = ak | bk;
+		return dest;
+	}
+
+	/**
+	 * Multiplies two affine matrices, d = a * b. The last column is not calculated. 
+	 * The destination may be the same as one of the operands.
+	 */
+	private static void multiplyAffine(float[] am, float[] bm, float[] dm){
+		float b00 = bm[0],  b01 = bm[1],  b02 = bm[2];
+		float b10 = bm[4],  b11 = bm[5],  b12 = bm[6];
+		float b20 = bm[8],  b21 = bm[9],  b22 = bm[10];
+		float b30 = bm[12], b31 = bm[13], b32 = bm[14];
+		for (int i = 0; i < 16; i += 4) {
+			float a0 = am[i], a1 = am[i + 1], a2 = am[i + 2];
+			dm[i]     = a0 * b00 + a1 * b10 + a2 * b20;
+			dm[i + 1] = a0 * b01 + a1 * b11 + a2 * b21;
+			dm[i + 2] = a0 * b02 + a1 * b12 + a2 * b22;
+			dm[i + 3] = 0.0f;
+		}
+		dm[12] += b30;
+		dm[13] += b31;
+		dm[14] += b32;
+		dm[15] = 1.0f;
+	}
+
+	/**
+	 * Multiplies the matrices stored at the offsets of the arrays, d = a * b. 
+	 * The destination may be the same as one of the operands.
+	 */
+	static void multiply(float[] am, int a, float[] bm, int b, float[] dm, int d){
+		float b00 = bm[b],      b01 = bm[b + 1],  b02 = bm[b + 2],  b03 = bm[b + 3];
+		float b10 = bm[b + 4],  b11 = bm[b + 5],  b12 = bm[b + 6],  b13 = bm[b + 7];
+		float b20 = bm[b + 8],  b21 = bm[b + 9],  b22 = bm[b + 10], b23 = bm[b + 11];
+		float b30 = bm[b + 12], b31 = bm[b + 13], b32 = bm[b + 14], b33 = bm[b + 15];
+		// each row of a is read completely before the same row of dest is written
+		for (int i = 0; i < 16; i += 4) {
+			float a0 = am[a + i], a1 = am[a + i + 1], a2 = am[a + i + 2], a3 = am[a + i + 3];
+			dm[d + i]     = a0 * b00 + a1 * b10 + a2 * b20 + a3 * b30;
+			dm[d + i + 1] = a0 * b01 + a1 * b11 + a2 * b21 + a3 * b31;
+			dm[d + i + 2] = a0 * b02 + a1 * b12 + a2 * b22 + a3 * b32;
+			dm[d + i + 3] = a0 * b03 + a1 * b13 + a2 * b23 + a3 * b33;
+		}
 	}
 
 
@@ -746,21 +1151,38 @@ public class Matrix4x4f
 	 */
 	public float[] transformPoint (float[] point)
 	{
-		float[]  result = new float[3];
+		return transformPoint(point, new float[3]);
+	}
+
+	/**
+	 * Transform one coordinate using this 4x4 matrix and store the result in 
+	 * the provided array, which may be the same as the point. 
+	 * 
+	 * This method will only give correct results if the matrix is a 
+	 * classical transformation matrix (ie. scale, rotate, translate or
+	 * a combination of the three)
+	 * 
+	 * @param point  [x0,y0,z0]
+	 * @param dest   array of at least 3 elements for the result [x0',y0',z0']
+	 * @return       dest
+	 */
+	public float[] transformPoint (float[] point, float[] dest)
+	{
+		float x = point[0], y = point[1], z = point[2];
 
-		result[0] = point[0] * m_[0]  +
-				point[1] * m_[4]  +
-				point[2] * m_[8]  + m_[12];
+		dest[0] = x * m_[0]  +
+				y * m_[4]  +
+				z * m_[8]  + m_[12];
 
-		result[1] = point[0] * m_[1]  +
-				point[1] * m_[5]  +
-				point[2] * m_[9]  + m_[13];
+		dest[1] = x * m_[1]  +
+				y * m_[5]  +
+				z * m_[9]  + m_[13];
 
-		result[2] = point[0] * m_[2]   +
-				point[1] * m_[6]   +
-				point[2] * m_[10]  + m_[14];
+		dest[2] = x * m_[2]   +
+				y * m_[6]   +
+				z * m_[10]  + m_[14];
 
-		return result;
+		return dest;
 	}
 
 
@@ -777,22 +1199,246 @@ public class Matrix4x4f
 	 */
 	public void transformPoints (float[] points)
 	{
-		for (int i = 0; i < points.length; i += 3) {
-			float x = points[i + 0] * m_[0]  +
-					points[i + 1] * m_[4]  +
-					points[i + 2] * m_[8]  + m_[12];
+		transformPoints(points, 0, 3, points.length / 3);
+	}
 
-			float y = points[i + 0] * m_[1]  +
-					points[i + 1] * m_[5]  +
-					points[i + 2] * m_[9]  + m_[13];
+	/**
+	 * Transform a set of 3D coordinates using this 4x4 matrix on all the cores.
+	 * The result of the operation is put back in the original array.
+	 * 
+	 * Arrays with less than PARALLEL_THRESHOLD points are transformed by the 
+	 * calling thread.
+	 * 
+	 * Careful: this matrix must not be modified until this method returns.
+	 * 
+	 * @param points  Points to transform [x0,y0,z0,x1,y1,z1,...]
+	 */
+	public void transformPointsParallel (float[] points)
+	{
+		transformPointsParallel(points, PARALLEL_THRESHOLD);
+	}
 
-			float z = points[i + 0] * m_[2]   +
-					points[i + 1] * m_[6]   +
-					points[i + 2] * m_[10]  + m_[14];
+	/**
+	 * Transform a set of 3D coordinates using this 4x4 matrix on all the cores.
+	 * The result of the operation is put back in the original array.
+	 * 
+	 * Careful: this matrix must not be modified until this method returns.
+	 * 
+	 * @param points     Points to transform [x0,y0,z0,x1,y1,z1,...]
+	 * @param threshold  number of points below which the calling thread does all the work
+	 */
+	public void transformPointsParallel (final float[] points, int threshold)
+	{
+		int count = points.length / 3;
+		if (count < threshold) {
+			transformPoints(points, 0, 3, count);
+			return;
+		}
+		Parallel.forRange(0, count, PARALLEL_ALIGN, new Parallel.Range(){
+			public void run(int from, int to) {
+				transformPoints(points, from * 3, 3, to - from);
+			}
+		});
+	}
 
-			points[i + 0] = x;
-			points[i + 1] = y;
-			points[i + 2] = z;            
+	/**
+	 * Transform a set of 3D coordinates that are stored as structure of arrays on all 
+	 * the cores. The result of the operation is put back in the original arrays.
+	 * 
+	 * Careful: this matrix must not be modified until this method returns.
+	 * 
+	 * @param x          x coordinates
+	 * @param y          y coordinates
+	 * @param z          z coordinates of the same length
+	 * @param threshold  number of points below which the calling thread does all the work
+	 */
+	public void transformPointsParallel (final float[] x, final float[] y, final float[] z, int threshold)
+	{
+		if (x.length < threshold) {
+			transformPoints(x, y, z, 0, x.length);
+			return;
+		}
+		Parallel.forRange(0, x.length, PARALLEL_ALIGN, new Parallel.Range(){
+			public void run(int from, int to) {
+				transformPoints(x, y, z, from, to - from);
+			}
+		});
+	}
+
+	/**
+	 * Transform a set of 3D coordinates with the full 4x4 matrix and divide them by 
+	 * the resulting w on all the cores. See projectPoints().
+	 * 
+	 * Careful: this matrix must not be modified until this method returns.
+	 * 
+	 * @param points     Points to transform [x0,y0,z0,x1,y1,z1,...]
+	 * @param threshold  number of points below which the calling thread does all the work
+	 */
+	public void projectPointsParallel (final float[] points, int threshold)
+	{
+		int count = points.length / 3;
+		if (count < threshold) {
+			projectPoints(points, 0, 3, count);
+			return;
+		}
+		Parallel.forRange(0, count, PARALLEL_ALIGN, new Parallel.Range(){
+			public void run(int from, int to) {
+				projectPoints(points, from * 3, 3, to - from);
+			}
+		});
+	}
+
+	/**
+	 * Transform a set of 3D coordinates that are stored with a stride, i.e. interleaved 
+	 * with other vertex attributes. The result of the operation is put back in the 
+	 * original array.
+	 * 
+	 * This method will only give correct results if the matrix is a 
+	 * classical transformation matrix (ie. scale, rotate, translate or
+	 * a combination of the three)
+	 * 
+	 * @param points  Points to transform [.., x0,y0,z0, .., x1,y1,z1, ..]
+	 * @param offset  index of the first x coordinate
+	 * @param stride  distance between two x coordinates, at least 3
+	 * @param count   number of points to transform
+	 */
+	public void transformPoints (float[] points, int offset, int stride, int count)
+	{
+		int k = kind();
+		if (k == IDENTITY)
+			return;
+		if (k == TRANSLATION) {
+			float tx = m_[12], ty = m_[13], tz = m_[14];
+			int end = offset + count * stride;
+			for (int i = offset; i < end; i += stride) {
+				points[i]     += tx;
+				points[i + 1] += ty;
+				points[i + 2] += tz;
+			}
+			return;
+		}
+		float m0 = m_[0], m1 = m_[1], m2  = m_[2];
+		float m4 = m_[4], m5 = m_[5], m6  = m_[6];
+		float m8 = m_[8], m9 = m_[9], m10 = m_[10];
+		float m12 = m_[12], m13 = m_[13], m14 = m_[14];
+		int end = offset + count * stride;
+		for (int i = offset; i < end; i += stride) {
+			float px = points[i], py = points[i + 1], pz = points[i + 2];
+			points[i]     = px * m0 + py * m4 + pz * m8  + m12;
+			points[i + 1] = px * m1 + py * m5 + pz * m9  + m13;
+			points[i + 2] = px * m2 + py * m6 + pz * m10 + m14;
+		}
+	}
+
+	/**
+	 * Transform a set of 3D coordinates that are stored as structure of arrays, one array
+	 * for each coordinate. The result of the operation is put back in the original arrays.
+	 * 
+	 * This layout is the fastest for large sets of points, since the loop can be 
+	 * vectorized by the VM.
+	 * 
+	 * This method will only give correct results if the matrix is a 
+	 * classical transformation matrix (ie. scale, rotate, translate or
+	 * a combination of the three)
+	 * 
+	 * @param x       x coordinates
+	 * @param y       y coordinates
+	 * @param z       z coordinates
+	 * @param offset  index of the first point
+	 * @param count   number of points to transform
+	 */
+	public void transformPoints (float[] x, float[] y, float[] z, int offset, int count)
+	{
+		int k = kind();
+		if (k == IDENTITY)
+			return;
+		if (k == TRANSLATION) {
+			float tx = m_[12], ty = m_[13], tz = m_[14];
+			int end = offset + count;
+			for (int i = offset; i < end; i++) {
+				x[i] += tx;
+				y[i] += ty;
+				z[i] += tz;
+			}
+			return;
+		}
+		float m0 = m_[0], m1 = m_[1], m2  = m_[2];
+		float m4 = m_[4], m5 = m_[5], m6  = m_[6];
+		float m8 = m_[8], m9 = m_[9], m10 = m_[10];
+		float m12 = m_[12], m13 = m_[13], m14 = m_[14];
+		int end = offset + count;
+		for (int i = offset; i < end; i++) {
+			float px = x[i], py = y[i], pz = z[i];
+			x[i] = px * m0 + py * m4 + pz * m8  + m12;
+			y[i] = px * m1 + py * m5 + pz * m9  + m13;
+			z[i] = px * m2 + py * m6 + pz * m10 + m14;
+		}
+	}
+
+	/**
+	 * Transform a set of 3D coordinates that are stored as structure of arrays. 
+	 * See transformPoints(float[], float[], float[], int, int)
+	 * 
+	 * @param x  x coordinates
+	 * @param y  y coordinates
+	 * @param z  z coordinates of the same length
+	 */
+	public void transformPoints (float[] x, float[] y, float[] z)
+	{
+		transformPoints(x, y, z, 0, x.length);
+	}
+
+	/**
+	 * Transform a set of 3D coordinates with the full 4x4 matrix and divide them by 
+	 * the resulting w, like multiply(Vector3f) does for a single point. Use this method 
+	 * with projection matrices. The result of the operation is put back in the original 
+	 * array.
+	 * 
+	 * @param points  Points to transform [.., x0,y0,z0, .., x1,y1,z1, ..]
+	 * @param offset  index of the first x coordinate
+	 * @param stride  distance between two x coordinates, at least 3
+	 * @param count   number of points to transform
+	 */
+	public void projectPoints (float[] points, int offset, int stride, int count)
+	{
+		float m0 = m_[0], m1 = m_[1], m2  = m_[2],  m3  = m_[3];
+		float m4 = m_[4], m5 = m_[5], m6  = m_[6],  m7  = m_[7];
+		float m8 = m_[8], m9 = m_[9], m10 = m_[10], m11 = m_[11];
+		float m12 = m_[12], m13 = m_[13], m14 = m_[14], m15 = m_[15];
+		int end = offset + count * stride;
+		for (int i = offset; i < end; i += stride) {
+			float px = points[i], py = points[i + 1], pz = points[i + 2];
+			float d = 1.0f / (px * m3 + py * m7 + pz * m11 + m15);
+			points[i]     = (px * m0 + py * m4 + pz * m8  + m12) * d;
+			points[i + 1] = (px * m1 + py * m5 + pz * m9  + m13) * d;
+			points[i + 2] = (px * m2 + py * m6 + pz * m10 + m14) * d;
+		}
+	}
+
+	/**
+	 * Transform a set of 3D coordinates that are stored as structure of arrays with the 
+	 * full 4x4 matrix and divide them by the resulting w. The result of the operation is 
+	 * put back in the original arrays.
+	 * 
+	 * @param x       x coordinates
+	 * @param y       y coordinates
+	 * @param z       z coordinates
+	 * @param offset  index of the first point
+	 * @param count   number of points to transform
+	 */
+	public void projectPoints (float[] x, float[] y, float[] z, int offset, int count)
+	{
+		float m0 = m_[0], m1 = m_[1], m2  = m_[2],  m3  = m_[3];
+		float m4 = m_[4], m5 = m_[5], m6  = m_[6],  m7  = m_[7];
+		float m8 = m_[8], m9 = m_[9], m10 = m_[10], m11 = m_[11];
+		float m12 = m_[12], m13 = m_[13], m14 = m_[14], m15 = m_[15];
+		int end = offset + count;
+		for (int i = offset; i < end; i++) {
+			float px = x[i], py = y[i], pz = z[i];
+			float d = 1.0f / (px * m3 + py * m7 + pz * m11 + m15);
+			x[i] = (px * m0 + py * m4 + pz * m8  + m12) * d;
+			y[i] = (px * m1 + py * m5 + pz * m9  + m13) * d;
+			z[i] = (px * m2 + py * m6 + pz * m10 + m14) * d;
 		}
 	}
 
@@ -811,15 +1457,13 @@ public class Matrix4x4f
 	 */
 	public void transformXyPoints (float[] points)
 	{
+		float m0 = m_[0], m1 = m_[1];
+		float m4 = m_[4], m5 = m_[5];
+		float m12 = m_[12], m13 = m_[13];
 		for (int i = 0; i < points.length; i += 2) {
-			float x = points[i + 0] * m_[0]  +
-					points[i + 1] * m_[4]  + m_[12];
-
-			float y = points[i + 0] * m_[1]  +
-					points[i + 1] * m_[5]  + m_[13];
-
-			points[i + 0] = x;
-			points[i + 1] = y;
+			float px = points[i], py = points[i + 1];
+			points[i]     = px * m0 + py * m4 + m12;
+			points[i + 1] = px * m1 + py * m5 + m13;
 		}
 	}
 
@@ -893,7 +1537,14 @@ public class Matrix4x4f
 	 */
 	public Matrix4x4f translate(float dx, float dy, float dz)
 	{
-		translate(new Vector3f(dx, dy, dz));
+		for (int i = 0; i < 16; i += 4) {
+			float w = m_[i + 3];
+			m_[i]     += w * dx;
+			m_[i + 1] += w * dy;
+			m_[i + 2] += w * dz;
+		}
+		if (dx != 0.0f || dy != 0.0f || dz != 0.0f)
+			kind |= TRANSLATION;
 		return this;
 	}
 
@@ -905,9 +1556,7 @@ public class Matrix4x4f
 	 */
 	public Matrix4x4f translate(Vector3f vec)
 	{
-		Matrix4x4f  translationMatrix = new Matrix4x4f(vec);
-		multiply (translationMatrix);
-		return this;
+		return translate(vec.x(), vec.y(), vec.z());
 	}
 
 	/**
@@ -918,17 +1567,13 @@ public class Matrix4x4f
 	 */
 	public Matrix4x4f rotateX (float angle)
 	{
-		Matrix4x4f rotationMatrix = new Matrix4x4f();
-
-		float cosAngle = (float)Math.cos (angle);
-		float sinAngle = (float)Math.sin (angle);  
+		float cosAngle = Calc.cos (angle);
+		float sinAngle = Calc.sin (angle);  
 
-		rotationMatrix.setElement (1, 1,  cosAngle);
-		rotationMatrix.setElement (1, 2,  sinAngle);
-		rotationMatrix.setElement (2, 1, -sinAngle);
-		rotationMatrix.setElement (2, 2,  cosAngle);
-
-		multiply (rotationMatrix);
+		rotate3x3(1, 0, 0,
+				0,  cosAngle, sinAngle,
+				0, -sinAngle, cosAngle,
+				unitKind(cosAngle * cosAngle + sinAngle * sinAngle));
 		return this;
 	}
 
@@ -940,17 +1585,13 @@ public class Matrix4x4f
 	 */
 	public Matrix4x4f rotateY (float angle)
 	{
-		Matrix4x4f rotationMatrix = new Matrix4x4f();
-
-		float cosAngle = (float)Math.cos (angle);
-		float sinAngle = (float)Math.sin (angle);  
+		float cosAngle = Calc.cos (angle);
+		float sinAngle = Calc.sin (angle);  
 
-		rotationMatrix.setElement (0, 0,  cosAngle);
-		rotationMatrix.setElement (0, 2, -sinAngle);
-		rotationMatrix.setElement (2, 0,  sinAngle);
-		rotationMatrix.setElement (2, 2,  cosAngle);
-
-		multiply (rotationMatrix);
+		rotate3x3(cosAngle, 0, -sinAngle,
+				0, 1, 0,
+				sinAngle, 0, cosAngle,
+				unitKind(cosAngle * cosAngle + sinAngle * sinAngle));
 		return this;
 	}
 
@@ -962,17 +1603,13 @@ public class Matrix4x4f
 	 */
 	public Matrix4x4f rotateZ (float angle)
 	{
-		Matrix4x4f rotationMatrix = new Matrix4x4f();
-
-		float cosAngle = (float)Math.cos (angle);
-		float sinAngle = (float)Math.sin (angle);  
+		float cosAngle = Calc.cos (angle);
+		float sinAngle = Calc.sin (angle);  
 
-		rotationMatrix.setElement (0, 0,  cosAngle);
-		rotationMatrix.setElement (0, 1,  sinAngle);
-		rotationMatrix.setElement (1, 0, -sinAngle);
-		rotationMatrix.setElement (1, 1,  cosAngle);
-
-		multiply (rotationMatrix);
+		rotate3x3( cosAngle, sinAngle, 0,
+				-sinAngle, cosAngle, 0,
+				0, 0, 1,
+				unitKind(cosAngle * cosAngle + sinAngle * sinAngle));
 		return this;
 	}
 
@@ -1015,8 +1652,8 @@ public class Matrix4x4f
 		float n = a / (a*a + d*d);  
 
 		// Coefficients for the step 4 matrix
-		float cosAngle = (float)Math.cos (angle);
-		float sinAngle = (float)Math.sin (angle);  
+		float cosAngle = Calc.cos (angle);
+		float sinAngle = Calc.sin (angle);  
 
 		//
 		// Step 1
@@ -1097,10 +1734,68 @@ public class Matrix4x4f
 	 * @return this instance
 	 */
 	public Matrix4x4f rotate(Quaternionf quat){
-		multiply(new Matrix4x4f(quat));
+		//quat.normalize();
+		if (quat.x() == 0.0f && quat.y() == 0.0f && quat.z() == 0.0f && quat.w() * quat.w() == 1.0f)
+			return this;
+		float sqw = quat.w()*quat.w();
+		float sqx = quat.x()*quat.x();
+		float sqy = quat.y()*quat.y();
+		float sqz = quat.z()*quat.z();
+
+
+		float m00 = ( sqx - sqy - sqz + sqw); // since sqw + sqx + sqy + sqz =1/invs*invs
+		float m11 = (-sqx + sqy - sqz + sqw);
+		float m22 = (-sqx - sqy + sqz + sqw);
+
+		float tmp1 = quat.x()*quat.y();
+		float tmp2 = quat.z()*quat.w();
+		float m01 = 2.0f * (tmp1 + tmp2);
+		float m10 = 2.0f * (tmp1 - tmp2);
+		tmp1 = quat.x()*quat.z();
+		tmp2 = quat.y()*quat.w();
+		float m02 = 2.0f * (tmp1 - tmp2);
+		float m20 = 2.0f * (tmp1 + tmp2);
+		tmp1 = quat.y()*quat.z();
+		tmp2 = quat.x()*quat.w();
+		float m12 = 2.0f * (tmp1 + tmp2);
+		float m21 = 2.0f * (tmp1 - tmp2);      
+
+		rotate3x3(m00, m01, m02,
+				m10, m11, m12,
+				m20, m21, m22,
+				unitKind(sqw + sqx + sqy + sqz));
 		return this;
 	}
 
+	/**
+	 * Multiply this matrix with a matrix that has the specified upper left 3x3 
+	 * elements and is the identity otherwise. 
+	 * 
+	 * @param k  ROTATION or AFFINE, the kind of the 3x3 elements
+	 */
+	private void rotate3x3(float r00, float r01, float r02,
+			float r10, float r11, float r12,
+			float r20, float r21, float r22, int k)
+	{
+		for (int i = 0; i < 16; i += 4) {
+			float a0 = m_[i], a1 = m_[i + 1], a2 = m_[i + 2];
+			m_[i]     = a0 * r00 + a1 * r10 + a2 * r20;
+			m_[i + 1] = a0 * r01 + a1 * r11 + a2 * r21;
+			m_[i + 2] = a0 * r02 + a1 * r12 + a2 * r22;
+		}
+		kind |= k;
+	}
+
+	/**
+	 * Returns ROTATION if the squared length of a quaternion or of a sine and cosine 
+	 * pair is 1, otherwise AFFINE: the resulting 3x3 is not orthonormal and 
+	 * transposing it would not invert it.
+	 */
+	private static int unitKind(float length2)
+	{
+		return (Math.abs(length2 - 1.0f) <= UNIT_EPSILON) ? ROTATION : AFFINE;
+	}
+
 	/**
 	 * Apply scaling (relative to origo) to this 4x4 matrix.
 	 * 
@@ -1111,8 +1806,13 @@ public class Matrix4x4f
 	 */
 	public Matrix4x4f scale(float xScale, float yScale, float zScale)
 	{
-		Matrix4x4f  scalingMatrix = new Matrix4x4f(xScale, yScale, zScale);
-		multiply (scalingMatrix);
+		for (int i = 0; i < 16; i += 4) {
+			m_[i]     *= xScale;
+			m_[i + 1] *= yScale;
+			m_[i + 2] *= zScale;
+		}
+		if (xScale != 1.0f || yScale != 1.0f || zScale != 1.0f)
+			kind |= SCALE;
 		return this;
 	}
 
@@ -1150,91 +1850,192 @@ public class Matrix4x4f
 	 */
 	public Matrix4x4f invert()
 	{
-		float[] tmp = new float[12];
-		float[] src = new float[16];
-		float[] dst = new float[16];  
+		return invert(this);
+	}
 
-		// Transpose matrix
-		for (int i = 0; i < 4; i++) {
-			src[i +  0] = m_[i*4 + 0];
-			src[i +  4] = m_[i*4 + 1];
-			src[i +  8] = m_[i*4 + 2];
-			src[i + 12] = m_[i*4 + 3];
+	/**
+	 * Store the inverse of this 4x4 matrix in the destination matrix. 
+	 * The destination may be this instance.
+	 * 
+	 * Translations and scales are inverted directly, other matrices built with scale, 
+	 * rotate and translate with invertAffine() or invertRigid(), the rest with the 
+	 * general 4x4 inversion.
+	 * 
+	 * @param dest  Matrix to store the inverse in.
+	 * @return      dest
+	 */
+	public Matrix4x4f invert(Matrix4x4f dest)
+	{
+		int k = kind();
+		if ((k & ~(SCALE | TRANSLATION)) == 0) {
+			float sx = 1.0f / m_[0], sy = 1.0f / m_[5], sz = 1.0f / m_[10];
+			float tx = m_[12], ty = m_[13], tz = m_[14];
+			dest.setIdentity();
+			float[] d = dest.m_;
+			d[0]  = sx;
+			d[5]  = sy;
+			d[10] = sz;
+			d[12] = -tx * sx;
+			d[13] = -ty * sy;
+			d[14] = -tz * sz;
+			dest.kind = k;
+			return dest;
 		}
+		if ((k & ~(ROTATION | TRANSLATION)) == 0)
+			return invertRigid(dest);
+		if ((k & PROJECTIVE) == 0 || isAffine())
+			return invertAffine(dest);
+		invert(m_, 0, dest.m_, 0);
+		dest.kind = UNKNOWN;
+		return dest;
+	}
 
-		// Calculate pairs for first 8 elements (cofactors) 
-		tmp[0] = src[10] * src[15];
-		tmp[1] = src[11] * src[14];
-		tmp[2] = src[9]  * src[15];
-		tmp[3] = src[11] * src[13];
-		tmp[4] = src[9]  * src[14];
-		tmp[5] = src[10] * src[13];
-		tmp[6] = src[8]  * src[15];
-		tmp[7] = src[11] * src[12];
-		tmp[8] = src[8]  * src[14];
-		tmp[9] = src[10] * src[12];
-		tmp[10] = src[8] * src[13];
-		tmp[11] = src[9] * src[12];
-
-		// Calculate first 8 elements (cofactors)
-		dst[0]  = tmp[0]*src[5] + tmp[3]*src[6] + tmp[4]*src[7];
-		dst[0] -= tmp[1]*src[5] + tmp[2]*src[6] + tmp[5]*src[7];
-		dst[1]  = tmp[1]*src[4] + tmp[6]*src[6] + tmp[9]*src[7];
-		dst[1] -= tmp[0]*src[4] + tmp[7]*src[6] + tmp[8]*src[7];
-		dst[2]  = tmp[2]*src[4] + tmp[7]*src[5] + tmp[10]*src[7];
-		dst[2] -= tmp[3]*src[4] + tmp[6]*src[5] + tmp[11]*src[7];
-		dst[3]  = tmp[5]*src[4] + tmp[8]*src[5] + tmp[11]*src[6];
-		dst[3] -= tmp[4]*src[4] + tmp[9]*src[5] + tmp[10]*src[6];
-		dst[4]  = tmp[1]*src[1] + tmp[2]*src[2] + tmp[5]*src[3];
-		dst[4] -= tmp[0]*src[1] + tmp[3]*src[2] + tmp[4]*src[3];
-		dst[5]  = tmp[0]*src[0] + tmp[7]*src[2] + tmp[8]*src[3];
-		dst[5] -= tmp[1]*src[0] + tmp[6]*src[2] + tmp[9]*src[3];
-		dst[6]  = tmp[3]*src[0] + tmp[6]*src[1] + tmp[11]*src[3];
-		dst[6] -= tmp[2]*src[0] + tmp[7]*src[1] + tmp[10]*src[3];
-		dst[7]  = tmp[4]*src[0] + tmp[9]*src[1] + tmp[10]*src[2];
-		dst[7] -= tmp[5]*src[0] + tmp[8]*src[1] + tmp[11]*src[2];
-
-		// Calculate pairs for second 8 elements (cofactors)
-		tmp[0]  = src[2]*src[7];
-		tmp[1]  = src[3]*src[6];
-		tmp[2]  = src[1]*src[7];
-		tmp[3]  = src[3]*src[5];
-		tmp[4]  = src[1]*src[6];
-		tmp[5]  = src[2]*src[5];
-		tmp[6]  = src[0]*src[7];
-		tmp[7]  = src[3]*src[4];
-		tmp[8]  = src[0]*src[6];
-		tmp[9]  = src[2]*src[4];
-		tmp[10] = src[0]*src[5];
-		tmp[11] = src[1]*src[4];
-
-		// Calculate second 8 elements (cofactors)
-		dst[8]   = tmp[0] * src[13]  + tmp[3] * src[14]  + tmp[4] * src[15];
-		dst[8]  -= tmp[1] * src[13]  + tmp[2] * src[14]  + tmp[5] * src[15];
-		dst[9]   = tmp[1] * src[12]  + tmp[6] * src[14]  + tmp[9] * src[15];
-		dst[9]  -= tmp[0] * src[12]  + tmp[7] * src[14]  + tmp[8] * src[15];
-		dst[10]  = tmp[2] * src[12]  + tmp[7] * src[13]  + tmp[10]* src[15];
-		dst[10] -= tmp[3] * src[12]  + tmp[6] * src[13]  + tmp[11]* src[15];
-		dst[11]  = tmp[5] * src[12]  + tmp[8] * src[13]  + tmp[11]* src[14];
-		dst[11] -= tmp[4] * src[12]  + tmp[9] * src[13]  + tmp[10]* src[14];
-		dst[12]  = tmp[2] * src[10]  + tmp[5] * src[11]  + tmp[1] * src[9];
-		dst[12] -= tmp[4] * src[11]  + tmp[0] * src[9]   + tmp[3] * src[10];
-		dst[13]  = tmp[8] * src[11]  + tmp[0] * src[8]   + tmp[7] * src[10];
-		dst[13] -= tmp[6] * src[10]  + tmp[9] * src[11]  + tmp[1] * src[8];
-		dst[14]  = tmp[6] * src[9]   + tmp[11]* src[11]  + tmp[3] * src[8];
-		dst[14] -= tmp[10]* src[11 ] + tmp[2] * src[8]   + tmp[7] * src[9];
-		dst[15]  = tmp[10]* src[10]  + tmp[4] * src[8]   + tmp[9] * src[9];
-		dst[15] -= tmp[8] * src[9]   + tmp[11]* src[10]  + tmp[5] * src[8];
+	/**
+	 * Invert this matrix, assuming it is affine (a combination of scale, rotate and 
+	 * translate, see isAffine()).
+	 * @return this instance
+	 */
+	public Matrix4x4f invertAffine()
+	{
+		return invertAffine(this);
+	}
+
+	/**
+	 * Store the inverse of this matrix in the destination matrix, assuming it is affine 
+	 * (a combination of scale, rotate and translate, see isAffine()). The upper left 3x3 
+	 * is inverted with its cofactors and the translation is rotated back with it. 
+	 * The destination may be this instance.
+	 * 
+	 * Careful: the result is wrong if the last column is not (0, 0, 0, 1).
+	 * 
+	 * @param dest  Matrix to store the inverse in.
+	 * @return      dest
+	 */
+	public Matrix4x4f invertAffine(Matrix4x4f dest)
+	{
+		float a00 = m_[0], a01 = m_[1], a02 = m_[2];
+		float a10 = m_[4], a11 = m_[5], a12 = m_[6];
+		float a20 = m_[8], a21 = m_[9], a22 = m_[10];
+		float tx = m_[12], ty = m_[13], tz = m_[14];
+
+		// cofactors of the first column
+		float c00 = a11 * a22 - a12 * a21;
+		float c10 = a02 * a21 - a01 * a22;
+		float c20 = a01 * a12 - a02 * a11;
+
+		float det = 1.0f / (a00 * c00 + a10 * c10 + a20 * c20);
+
+		float i00 = c00 * det;
+		float i01 = c10 * det;
+		float i02 = c20 * det;
+		float i10 = (a12 * a20 - a10 * a22) * det;
+		float i11 = (a00 * a22 - a02 * a20) * det;
+		float i12 = (a02 * a10 - a00 * a12) * det;
+		float i20 = (a10 * a21 - a11 * a20) * det;
+		float i21 = (a01 * a20 - a00 * a21) * det;
+		float i22 = (a00 * a11 - a01 * a10) * det;
+
+		float[] d = dest.m_;
+		d[0]  = i00; d[1]  = i01; d[2]  = i02; d[3]  = 0.0f;
+		d[4]  = i10; d[5]  = i11; d[6]  = i12; d[7]  = 0.0f;
+		d[8]  = i20; d[9]  = i21; d[10] = i22; d[11] = 0.0f;
+		d[12] = -(tx * i00 + ty * i10 + tz * i20);
+		d[13] = -(tx * i01 + ty * i11 + tz * i21);
+		d[14] = -(tx * i02 + ty * i12 + tz * i22);
+		d[15] = 1.0f;
+		dest.kind = kind() & ~PROJECTIVE;
+		return dest;
+	}
+
+	/**
+	 * Invert this matrix, assuming it is rigid (a combination of rotate and translate).
+	 * @return this instance
+	 */
+	public Matrix4x4f invertRigid()
+	{
+		return invertRigid(this);
+	}
+
+	/**
+	 * Store the inverse of this matrix in the destination matrix, assuming it is rigid 
+	 * (a combination of rotate and translate). The inverse of the rotation is its 
+	 * transpose. The destination may be this instance.
+	 * 
+	 * Careful: the result is wrong if the matrix contains a scale or a projection.
+	 * 
+	 * @param dest  Matrix to store the inverse in.
+	 * @return      dest
+	 */
+	public Matrix4x4f invertRigid(Matrix4x4f dest)
+	{
+		float a00 = m_[0], a01 = m_[1], a02 = m_[2];
+		float a10 = m_[4], a11 = m_[5], a12 = m_[6];
+		float a20 = m_[8], a21 = m_[9], a22 = m_[10];
+		float tx = m_[12], ty = m_[13], tz = m_[14];
+
+		float[] d = dest.m_;
+		d[0]  = a00; d[1]  = a10; d[2]  = a20; d[3]  = 0.0f;
+		d[4]  = a01; d[5]  = a11; d[6]  = a21; d[7]  = 0.0f;
+		d[8]  = a02; d[9]  = a12; d[10] = a22; d[11] = 0.0f;
+		d[12] = -(tx * a00 + ty * a01 + tz * a02);
+		d[13] = -(tx * a10 + ty * a11 + tz * a12);
+		d[14] = -(tx * a20 + ty * a21 + tz * a22);
+		d[15] = 1.0f;
+		dest.kind = kind() & ~PROJECTIVE;
+		return dest;
+	}
+
+	/**
+	 * Inverts the matrix stored at offset a of the array am into the array dm at offset d.
+	 * Source and destination may be the same.
+	 */
+	static void invert(float[] am, int a, float[] dm, int d)
+	{
+		float a00 = am[a],      a01 = am[a + 1],  a02 = am[a + 2],  a03 = am[a + 3];
+		float a10 = am[a + 4],  a11 = am[a + 5],  a12 = am[a + 6],  a13 = am[a + 7];
+		float a20 = am[a + 8],  a21 = am[a + 9],  a22 = am[a + 10], a23 = am[a + 11];
+		float a30 = am[a + 12], a31 = am[a + 13], a32 = am[a + 14], a33 = am[a + 15];
+
+		// 2x2 determinants of the upper two rows
+		float s0 = a00 * a11 - a10 * a01;
+		float s1 = a00 * a12 - a10 * a02;
+		float s2 = a00 * a13 - a10 * a03;
+		float s3 = a01 * a12 - a11 * a02;
+		float s4 = a01 * a13 - a11 * a03;
+		float s5 = a02 * a13 - a12 * a03;
+
+		// 2x2 determinants of the lower two rows
+		float c5 = a22 * a33 - a32 * a23;
+		float c4 = a21 * a33 - a31 * a23;
+		float c3 = a21 * a32 - a31 * a22;
+		float c2 = a20 * a33 - a30 * a23;
+		float c1 = a20 * a32 - a30 * a22;
+		float c0 = a20 * a31 - a30 * a21;
 
 		// Calculate determinant
-		float det = src[0]*dst[0] + src[1]*dst[1] + src[2]*dst[2] + src[3]*dst[3];
+		float det = s0 * c5 - s1 * c4 + s2 * c3 + s3 * c2 - s4 * c1 + s5 * c0;
 
 		// Calculate matrix inverse
 		det = 1.0f / det;
-		for (int i = 0; i < 16; i++)
-			m_[i] = dst[i] * det;
-		
-		return this;
+		dm[d]      = ( a11 * c5 - a12 * c4 + a13 * c3) * det;
+		dm[d + 1]  = (-a01 * c5 + a02 * c4 - a03 * c3) * det;
+		dm[d + 2]  = ( a31 * s5 - a32 * s4 + a33 * s3) * det;
+		dm[d + 3]  = (-a21 * s5 + a22 * s4 - a23 * s3) * det;
+
+		dm[d + 4]  = (-a10 * c5 + a12 * c2 - a13 * c1) * det;
+		dm[d + 5]  = ( a00 * c5 - a02 * c2 + a03 * c1) * det;
+		dm[d + 6]  = (-a30 * s5 + a32 * s2 - a33 * s1) * det;
+		dm[d + 7]  = ( a20 * s5 - a22 * s2 + a23 * s1) * det;
+
+		dm[d + 8]  = ( a10 * c4 - a11 * c2 + a13 * c0) * det;
+		dm[d + 9]  = (-a00 * c4 + a01 * c2 - a03 * c0) * det;
+		dm[d + 10] = ( a30 * s4 - a31 * s2 + a33 * s0) * det;
+		dm[d + 11] = (-a20 * s4 + a21 * s2 - a23 * s0) * det;
+
+		dm[d + 12] = (-a10 * c3 + a11 * c1 - a12 * c0) * det;
+		dm[d + 13] = ( a00 * c3 - a01 * c1 + a02 * c0) * det;
+		dm[d + 14] = (-a30 * s3 + a31 * s1 - a32 * s0) * det;
+		dm[d + 15] = ( a20 * s3 - a21 * s1 + a22 * s0) * det;
 	}
 
 	/**
@@ -1243,7 +2044,7 @@ public class Matrix4x4f
 	 * @return new Instance of the inverse of this matrix.
 	 */
 	public Matrix4x4f invertMake(){
-		return clone().invert();
+		return invert(new Matrix4x4f());
 	}
 
 	/**
@@ -1371,8 +2172,8 @@ public class Matrix4x4f
 
 
 	/**
-	 * Get the rotation of this Matrix. It uses internally the decompose method - 
-	 * it is therefore not very fast..
+	 * Get the rotation of this Matrix. It uses internally the decompose method, 
+	 * which is only fast for matrices without shear.
 	 * 
 	 * @return rotation quaternion
 	 */
@@ -1381,6 +2182,20 @@ public class Matrix4x4f
 		decompose(new Vector3f(), ret, new Vector3f(), new Quaternionf());
 		return ret;
 	}
+
+	/**
+	 * Stores the rotation of this Matrix in the provided quaternion. It uses internally 
+	 * the decompose method, which is only fast for matrices without shear, but does not 
+	 * allocate anything.
+	 * 
+	 * @param dest    the quaternion to store the rotation in
+	 * @param buffer  scratch space for the decomposition
+	 * @return dest
+	 */
+	public Quaternionf getRotation(Quaternionf dest, DecomposeBuffer buffer){
+		decompose(buffer.translationOut, dest, buffer.scaleOut, buffer.soOut, buffer);
+		return dest;
+	}
 	
 	/**
 	 * Decompose this Matrix into a translsation vector, a scale vector and a
@@ -1397,14 +2212,43 @@ public class Matrix4x4f
 			Quaternionf rotation,
 			Vector3f scale,
 			Quaternionf so ){
+		decompose(translation, rotation, scale, so, new DecomposeBuffer());
+	}
 
-		AffineParts parts = new AffineParts();
-		double[][] hmatrix = new double[4][4];
+	/**
+	 * Decompose this Matrix into a translsation vector, a scale vector and a
+	 * quaternion rotation, using the provided scratch space instead of allocating 
+	 * new arrays.
+	 * 
+	 * Matrices without shear are decomposed by decomposeNoShear(), so is the identity. 
+	 * Only the others need the polar decomposition.
+	 * 
+	 * Careful: a buffer must not be used by two threads at the same time.
+	 * 
+	 * @param translation
+	 * @param rotation
+	 * @param scale
+	 * @param so
+	 * @param buffer scratch space, can be reused for any number of decompositions
+	 */
+	public void decompose( Vector3f translation,
+			Quaternionf rotation,
+			Vector3f scale,
+			Quaternionf so,
+			DecomposeBuffer buffer){
+
+		if (decomposeNoShear(translation, rotation, scale)) {
+			so.set(0f, 0f, 0f, 1f);
+			return;
+		}
+
+		DecomposeBuffer parts = buffer;
+		double[][] hmatrix = buffer.hmatrix;
 
 		// Transpose copy of LTW
 		for ( int i =0; i<4; i++){
 			for ( int j=0; j<4; j++){
-				hmatrix[i][j] = this.getElement(j, i);
+				hmatrix[i][j] = m_[j*4 + i];
 			}
 		}
 
@@ -1435,6 +2279,98 @@ public class Matrix4x4f
 
 	
 	
+	/**
+	 * Decompose this Matrix into a translation vector, a scale vector and a quaternion 
+	 * rotation, if it is a scale followed by a rotation and a translation, i.e. the 
+	 * rows of the upper left 3x3 are orthogonal. The scale is the length of the rows 
+	 * and the rotation the rows divided by it. If the determinant is negative, all 
+	 * scales are negative, like with the polar decomposition of decompose().
+	 * 
+	 * Nothing is allocated and the outputs are only written if the method succeeds.
+	 * 
+	 * @param translation
+	 * @param rotation
+	 * @param scale
+	 * @return false if the matrix contains a shear or a zero scale
+	 */
+	public boolean decomposeNoShear( Vector3f translation,
+			Quaternionf rotation,
+			Vector3f scale ){
+		float a00 = m_[0], a01 = m_[1], a02 = m_[2];
+		float a10 = m_[4], a11 = m_[5], a12 = m_[6];
+		float a20 = m_[8], a21 = m_[9], a22 = m_[10];
+
+		float l0 = a00 * a00 + a01 * a01 + a02 * a02;
+		float l1 = a10 * a10 + a11 * a11 + a12 * a12;
+		float l2 = a20 * a20 + a21 * a21 + a22 * a22;
+		if (l0 == 0.0f || l1 == 0.0f || l2 == 0.0f)
+			return false;
+
+		// squared cosines between the rows
+		float d01 = a00 * a10 + a01 * a11 + a02 * a12;
+		float d02 = a00 * a20 + a01 * a21 + a02 * a22;
+		float d12 = a10 * a20 + a11 * a21 + a12 * a22;
+		if (d01 * d01 > SHEAR_EPSILON * l0 * l1 || 
+				d02 * d02 > SHEAR_EPSILON * l0 * l2 || 
+				d12 * d12 > SHEAR_EPSILON * l1 * l2)
+			return false;
+
+		l0 = (float)Math.sqrt(l0);
+		l1 = (float)Math.sqrt(l1);
+		l2 = (float)Math.sqrt(l2);
+
+		float det = a00 * (a11 * a22 - a12 * a21) 
+				- a01 * (a10 * a22 - a12 * a20) 
+				+ a02 * (a10 * a21 - a11 * a20);
+		if (det < 0) {
+			l0 = -l0;
+			l1 = -l1;
+			l2 = -l2;
+		}
+
+		float i0 = 1.0f / l0, i1 = 1.0f / l1, i2 = 1.0f / l2;
+		setQuaternion(rotation, 
+				a00 * i0, a01 * i0, a02 * i0, 
+				a10 * i1, a11 * i1, a12 * i1, 
+				a20 * i2, a21 * i2, a22 * i2);
+		scale.set(l0, l1, l2);
+		translation.set(m_[12], m_[13], m_[14]);
+		return true;
+	}
+
+	/**
+	 * Sets the quaternion from the ROW-oriented rotation matrix r. Like quatFromMatrix(), 
+	 * it avoids near-zero divides by looking for a large component.
+	 */
+	private static void setQuaternion(Quaternionf qu, 
+			float r00, float r01, float r02,
+			float r10, float r11, float r12,
+			float r20, float r21, float r22)
+	{
+		float tr = r00 + r11 + r22;
+		if (tr >= 0.0f) {
+			float s = (float)Math.sqrt(tr + 1.0f);
+			float w = s * 0.5f;
+			s = 0.5f / s;
+			qu.set((r12 - r21) * s, (r20 - r02) * s, (r01 - r10) * s, w);
+		} else if (r00 >= r11 && r00 >= r22) {
+			float s = (float)Math.sqrt((r00 - (r11 + r22)) + 1.0f);
+			float x = s * 0.5f;
+			s = 0.5f / s;
+			qu.set(x, (r10 + r01) * s, (r02 + r20) * s, (r12 - r21) * s);
+		} else if (r11 >= r22) {
+			float s = (float)Math.sqrt((r11 - (r22 + r00)) + 1.0f);
+			float y = s * 0.5f;
+			s = 0.5f / s;
+			qu.set((r10 + r01) * s, y, (r21 + r12) * s, (r20 - r02) * s);
+		} else {
+			float s = (float)Math.sqrt((r22 - (r00 + r11)) + 1.0f);
+			float z = s * 0.5f;
+			s = 0.5f / s;
+			qu.set((r02 + r20) * s, (r21 + r12) * s, z, (r01 - r10) * s);
+		}
+	}
+
 	/* Decompose 4x4 affine matrix A as TFRUK(U transpose), where t contains the
 	 * translation components, q contains the rotation R, u contains U, k contains
 	 * scale factors, and f contains the sign of the determinant.
@@ -1442,39 +2378,71 @@ public class Matrix4x4f
 	 * See Ken Shoemake and Tom Duff. Matrix Animation and Polar Decomposition.
 	 * Proceedings of Graphics Interface 1992.
 	 */
-	private void decompAffine(double[][] A, AffineParts parts)
+	private void decompAffine(double[][] A, DecomposeBuffer parts)
 	{
-		double[][] Q = new double[4][4];
-		double[][] S = new double[4][4]; 
-		double[][] U = new double[4][4];
-		Quaternionf p;
+		double[][] Q = parts.Q;
+		double[][] S = parts.S; 
+		double[][] U = parts.U;
+		Quaternionf p = parts.p;
 
 		//Translation component.
-		parts.translation = new Vector4d(A[X][W], A[Y][W], A[Z][W], 0);
-		double det = polarDecomp(A, Q, S);
+		parts.translation.set(A[X][W], A[Y][W], A[Z][W], 0);
+		double det = polarDecomp(A, Q, S, parts);
 		if (det < 0){
-			mat_copy(Q, "=", mat_mult(Q, -1), 3);
+			mat_scale(Q, -1, 3);
 			parts.f = -1f;
 		}
 		else
 			parts.f = 1;
 
-		parts.rotation = quatFromMatrix(Q);
-		parts.k = spectDecomp(S, U);
-		parts.stretch = quatFromMatrix(U);
-		p = snuggle(parts.stretch, parts.k);
+		quatFromMatrix(Q, parts.rotation);
+		spectDecomp(S, U, parts.k, parts);
+		quatFromMatrix(U, parts.stretch);
+		snuggle(parts.stretch, parts.k, p, parts);
 		parts.stretch.multiply(p);
 	}
 	
-	private class AffineParts{
+	/**
+	 * Scratch space for decompose(). Holds all the intermediate results of the 
+	 * decomposition, so a matrix can be decomposed without allocating anything.
+	 * 
+	 * Careful: a buffer must not be used by two threads at the same time.
+	 */
+	public static class DecomposeBuffer{
 
-		Vector4d translation;     // t Translation Component;
-		Quaternionf rotation;           // q Essential Rotation
-		Quaternionf stretch;          // u Stretch rotation
-		Quaternionf k;          //Sign of determinant
+		Vector4d translation = new Vector4d();     // t Translation Component;
+		Quaternionf rotation = new Quaternionf();           // q Essential Rotation
+		Quaternionf stretch = new Quaternionf();          // u Stretch rotation
+		Quaternionf k = new Quaternionf();          //Sign of determinant
 		double f;          // Sign of determinant
 
-		AffineParts(){
+		double[][] hmatrix = new double[4][4];
+		double[][] Q = new double[4][4];
+		double[][] S = new double[4][4];
+		double[][] U = new double[4][4];
+		double[][] Mk = new double[4][4];
+		double[][] MadjTk = new double[4][4];
+		double[][] Ek = new double[4][4];
+		double[] diag = new double[3];
+		double[] offD = new double[3];
+		double[] ka = new double[4];
+		double[] qa = new double[4];
+		double[] pa = new double[4];
+		double[] mag = new double[3];
+		double[] v1 = new double[3];
+		double[] v2 = new double[3];
+		boolean[] neg = new boolean[4];
+		Quaternionf p = new Quaternionf();
+		Quaternionf qtoz = new Quaternionf();
+		Quaternionf qp = new Quaternionf();
+		Quaternionf tmp = new Quaternionf();
+
+		// receive the unused results of getRotation()
+		Vector3f translationOut = new Vector3f();
+		Vector3f scaleOut = new Vector3f();
+		Quaternionf soOut = new Quaternionf();
+
+		public DecomposeBuffer(){
 			;
 		}
 	}
@@ -1486,11 +2454,11 @@ public class Matrix4x4f
 	 * See Ken Shoemake and Tom Duff. Matrix Animation and Polar Decomposition.
 	 * Proceedings of Graphics Interface 1992. Details on p. 262-263.
 	 */
-	private Quaternionf snuggle(Quaternionf q, Quaternionf k)
+	private void snuggle(Quaternionf q, Quaternionf k, Quaternionf p, DecomposeBuffer buffer)
 	{
 
-		Quaternionf p = new Quaternionf();
-		double[] ka = new double[4];
+		p.set(0f, 0f, 0f, 1f);
+		double[] ka = buffer.ka;
 		int i, turn = -1;
 		ka[X] = k.x(); 
 		ka[Y] = k.y(); 
@@ -1507,25 +2475,29 @@ public class Matrix4x4f
 				turn = X;
 		}
 		if (turn>=0) {
-			Quaternionf qtoz, qp;
+			Quaternionf qtoz = buffer.qtoz;
+			Quaternionf qp = buffer.qp;
 			int  win;
-			double[] mag = new double[3]; 
+			double[] mag = buffer.mag; 
 			double t;
 			switch (turn) {
 			case X: 
-				qtoz = new Quaternionf(0f,(float)SQRTHALF,0f,(float)SQRTHALF);
+				qtoz.set(0f,(float)SQRTHALF,0f,(float)SQRTHALF);
 				q.multiply(qtoz); 
 				swap(ka,X,Z);
 				break;
 			case Y: 
-				qtoz = new Quaternionf((float)SQRTHALF,0f, 0f,(float)SQRTHALF);
+				qtoz.set((float)SQRTHALF,0f, 0f,(float)SQRTHALF);
 				q.multiply(qtoz); 
 				swap(ka,Y,Z); 
 				break;
 			case Z: 
-				qtoz = new Quaternionf(); 
+				qtoz.set(0f, 0f, 0f, 1f); 
 				break;
-			default: return q.conjugateMake();
+			default: 
+				p.set(q);
+				p.conjugate();
+				return;
 			}
 
 
@@ -1534,7 +2506,7 @@ public class Matrix4x4f
 			mag[1] = (double)q.x()*q.z()-(double)q.y()*q.w();
 			mag[2] = (double)q.y()*q.z()+(double)q.x()*q.w();
 
-			boolean[] neg = new boolean[3];
+			boolean[] neg = buffer.neg;
 			for (i=0; i<3; i++)
 			{
 				neg[i] = (mag[i]<0.0);
@@ -1554,37 +2526,40 @@ public class Matrix4x4f
 			switch (win) {
 			case 0: 
 				if (neg[0]) 
-					p = new Quaternionf(1.0f, 0.0f, 0.0f, 0.0f); 
+					p.set(1.0f, 0.0f, 0.0f, 0.0f); 
 				else 
-					p = new Quaternionf(); 
+					p.set(0f, 0f, 0f, 1f); 
 				break;
 			case 1: 
 				if (neg[1]) 
-					p = new Quaternionf(0.5f, 0.5f, -0.5f, -0.5f); 
+					p.set(0.5f, 0.5f, -0.5f, -0.5f); 
 				else 
-					p = new Quaternionf( 0.5f, 0.5f, 0.5f, 0.5f); 
+					p.set( 0.5f, 0.5f, 0.5f, 0.5f); 
 				cycle(ka,false); 
 				break;
 			case 2: 
 				if (neg[2]) 
-					p = new Quaternionf(-0.5f, 0.5f,-0.5f,-0.5f); 
+					p.set(-0.5f, 0.5f,-0.5f,-0.5f); 
 				else 
-					p = new Quaternionf( 0.5f, 0.5f, 0.5f,-0.5f); 
+					p.set( 0.5f, 0.5f, 0.5f,-0.5f); 
 				cycle(ka,true); 
 				break;
 			}
 
-			qp = q.multiplyMake(p);
+			qp.setMultiply(q, p);
 			t = Math.sqrt(mag[win]+0.5);
-			p.multiply(new Quaternionf(0f,0f,(float)(-qp.z()/t),(float)(qp.w()/t)));
-			p = qtoz.multiplyMake(p.conjugateMake());
+			buffer.tmp.set(0f,0f,(float)(-qp.z()/t),(float)(qp.w()/t));
+			p.multiply(buffer.tmp);
+			p.conjugate();
+			buffer.tmp.setMultiply(qtoz, p);
+			p.set(buffer.tmp);
 		}
 		else {
-			double[] qa = new double[4];
-			double[] pa = new double[4];
+			double[] qa = buffer.qa;
+			double[] pa = buffer.pa;
 			int lo, hi;
 			boolean par = false;
-			boolean[] neg = new boolean[4];
+			boolean[] neg = buffer.neg;
 			double all, big, two;
 			qa[0] = q.x(); qa[1] = q.y(); qa[2] = q.z(); qa[3] = q.w();
 			for (i=0; i<4; i++) {
@@ -1639,8 +2614,7 @@ public class Matrix4x4f
 						hi ^= lo; lo ^= hi; hi ^= lo;
 					}
 					if (hi==W) {
-						int[] lo2hi = new int[]{1, 2, 0};
-						hi = lo2hi[lo];
+						hi = LO2HI[lo];
 						//hi = "\001\002\000"[lo];
 						lo = 3-hi-lo;
 					}
@@ -1658,7 +2632,6 @@ public class Matrix4x4f
 		k.setX((float)ka[X]);
 		k.setY((float)ka[Y]);
 		k.setZ((float)ka[Z]);
-		return p;
 	}
 
 
@@ -1695,14 +2668,14 @@ public class Matrix4x4f
 	 * matrix of the scale factors, then S = U K (U transpose). Uses Jacobi method.
 	 * See Gene H. Golub and Charles F. Van Loan. Matrix Computations. Hopkins 1983.
 	 */
-	private Quaternionf spectDecomp(double[][] S, double[][] U)
+	private void spectDecomp(double[][] S, double[][] U, Quaternionf k, DecomposeBuffer buffer)
 	{
-		double[] Diag = new double[3];
-		double[] OffD = new double[3]; /* OffD is off-diag (by omitted index) */
+		double[] Diag = buffer.diag;
+		double[] OffD = buffer.offD; /* OffD is off-diag (by omitted index) */
 		double g,h,fabsh,fabsOffDi,t,theta,c,s,tau,ta,OffDq,a,b;
-		char[] nxt = new char[]{Y,Z,X};
+		char[] nxt = NXT;
 		int sweep, i, j;
-		mat_copy(U,"=",mat_id(),4);
+		mat_identity(U);
 		Diag[X] = S[X][X]; Diag[Y] = S[Y][Y]; Diag[Z] = S[Z][Z];
 		OffD[X] = S[Y][Z]; OffD[Y] = S[Z][X]; OffD[Z] = S[X][Y];
 		for (sweep=20; sweep>0; sweep--) {
@@ -1737,7 +2710,7 @@ public class Matrix4x4f
 				}
 			}
 		}
-		return new Quaternionf((float)Diag[X], (float)Diag[Y], (float)Diag[Z], 1.0f);
+		k.set((float)Diag[X], (float)Diag[Y], (float)Diag[Z], 1.0f);
 	}
 	
 
@@ -1748,13 +2721,13 @@ public class Matrix4x4f
 	 * Technical Report 88-942, October 1988,
 	 * Department of Computer Science, Cornell University.
 	 */
-	private double polarDecomp(double[][] M, double[][] Q, double[][] S)
+	private double polarDecomp(double[][] M, double[][] Q, double[][] S, DecomposeBuffer buffer)
 	{
 
 		double TOL = 1.0e-6;
-		double[][] Mk = new double[4][4];
-		double[][] MadjTk = new double[4][4]; 
-		double[][] Ek = new double[4][4];
+		double[][] Mk = buffer.Mk;
+		double[][] MadjTk = buffer.MadjTk; 
+		double[][] Ek = buffer.Ek;
 
 		double det, M_one, M_inf, MadjT_one, MadjT_inf, E_one, gamma, g1, g2;
 		int i, j;
@@ -1768,7 +2741,7 @@ public class Matrix4x4f
 			det = vdot(Mk[0], MadjTk[0]);
 			if (det==0.0)
 			{
-				do_rank2(Mk, MadjTk, Mk);
+				do_rank2(Mk, MadjTk, Mk, buffer);
 				break;
 			}
 
@@ -1779,7 +2752,9 @@ public class Matrix4x4f
 			g1 = gamma*0.5;
 			g2 = 0.5/(gamma*det);
 			mat_copy(Ek,"=",Mk,3); // there was a duplicate function in the original!!!?
-			matBinop(Mk,"=",mat_mult(Mk, g1),"+",mat_mult(MadjTk, g2),3);
+			for (i=0; i<3; i++)
+				for (j=0; j<3; j++)
+					Mk[i][j] = Mk[i][j] * g1 + MadjTk[i][j] * g2;
 			mat_copy(Ek,"-=",Mk,3);
 			E_one = norm_one(Ek);
 			M_one = norm_one(Mk);
@@ -1803,14 +2778,13 @@ public class Matrix4x4f
 	 * used to multiply column vector on the left: vnew = mat vold.  Works
 	 * correctly for right-handed coordinate system and right-handed rotations.
 	 * Translation and perspective components ignored. */
-	private Quaternionf quatFromMatrix(double[][] mat)
+	private void quatFromMatrix(double[][] mat, Quaternionf qu)
 	{
 		/* This algorithm avoids near-zero divides by looking for a large component
 		 * - first w, then x, y, or z.  When the trace is greater than zero,
 		 * |w| is greater than 1/2, which is as small as a largest component can be.
 		 * Otherwise, the largest diagonal entry corresponds to the largest of |x|,
 		 * |y|, or |z|, one of which must be larger than |w|, and at least 1/2. */
-		Quaternionf qu = new Quaternionf();
 		double tr, s;
 
 		tr = mat[X][X] + mat[Y][Y]+ mat[Z][Z];
@@ -1857,7 +2831,6 @@ public class Matrix4x4f
 		}
 		if (mat[W][W] != 1.0) 
 			qu.scale((float)(1/Math.sqrt(mat[W][W])));
-		return (qu);
 	}
 
 	/** Copy transpose of nxn matrix A to AT using "gets" for assignment
@@ -1896,42 +2869,16 @@ public class Matrix4x4f
 		}
 	}
 
-	/** Assign nxn matrix C the element-wise combination of A and B using "op"
-	 * 
-	 * @param C
-	 * @param gets ("=")
-	 * @param A
-	 * @param op ("*", "+")
-	 * @param B
-	 * @param n
-	 */
-	private void matBinop(double[][] C, String gets, double[][] A, String op, double[][] B, int n) {
-		int i,j; 
-		for(i=0;i<n;i++){
-			for(j=0;j<n;j++){
-				double operation = 0;
-				if(op.equals("*"))
-					operation = (A[i][j]) * (B[i][j]);
-				if(op.equals("+"))
-					operation = (A[i][j]) + (B[i][j]);
-				if(gets.equals("="))
-					C[i][j] = operation;
-			}
-		}
-	}
-
 	/**
-	 * Returns the scalar multiplication of the provided matrix
+	 * Scales the upper left nxn part of the provided matrix
 	 * @param M
 	 * @param factor
-	 * @return
+	 * @param n
 	 */
-	private double[][] mat_mult(double[][] M, double factor){
-		double[][] ret = new double[M.length][M[0].length];
-		for(int i = 0; i < M.length; i++)
-			for(int j = 0; j < M[0].length; j++)
-				ret[i][j] = M[i][j] * factor;
-		return ret;
+	private void mat_scale(double[][] M, double factor, int n){
+		for(int i = 0; i < n; i++)
+			for(int j = 0; j < n; j++)
+				M[i][j] *= factor;
 	}
 
 	/** Multiply the upper left 3x3 parts of A and B to get AB
@@ -2046,16 +2993,16 @@ public class Matrix4x4f
 	 * @param MadjT
 	 * @param Q
 	 */
-	private void do_rank2(double[][] M, double[][] MadjT, double[][] Q)
+	private void do_rank2(double[][] M, double[][] MadjT, double[][] Q, DecomposeBuffer buffer)
 	{
-		double[] v1 = new double[3];
-		double[] v2 = new double[3];
+		double[] v1 = buffer.v1;
+		double[] v2 = buffer.v2;
 		double w, x, y, z, c, s, d;
 		int col;
 		/* If rank(M) is 2, we should find a non-zero column in MadjT */
 		col = find_max_col(MadjT);
 		if (col<0){
-			do_rank1(M, Q); 
+			do_rank1(M, Q, buffer); 
 			return;
 		} /* Rank<2 */
 		v1[0] = MadjT[0][col]; 
@@ -2084,13 +3031,13 @@ public class Matrix4x4f
 	}
 
 	/** Find orthogonal factor Q of rank 1 (or less) M **/
-	private void do_rank1(double[][] M, double[][] Q)
+	private void do_rank1(double[][] M, double[][] Q, DecomposeBuffer buffer)
 	{
-		double[] v1 = new double[3];
-		double[] v2 = new double[3];
+		double[] v1 = buffer.v1;
+		double[] v2 = buffer.v2;
 		double s;
 		int col;
-		mat_copy(Q,"=",mat_id(),4);
+		mat_identity(Q);
 		/* If rank(M) is 1, we should find a non-zero column in M */
 		col = find_max_col(M);
 		if (col<0) return; /* Rank is 0 */
@@ -2127,8 +3074,11 @@ public class Matrix4x4f
 		return col;
 	}
 
-	private static double[][] mat_id(){
-		return new double[][]{{1,0,0,0},{0,1,0,0},{0,0,1,0},{0,0,0,1}};
+	/** Set the 4x4 matrix A to identity **/
+	private static void mat_identity(double[][] A){
+		for (int i=0; i<4; i++)
+			for (int j=0; j<4; j++)
+				A[i][j] = (i == j)? 1: 0;
 	}
 
 	/** Fill out 3x3 matrix to 4x4 **/
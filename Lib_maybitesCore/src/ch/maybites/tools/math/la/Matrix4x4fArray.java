@@ -0,0 +1,309 @@
+/*
+ * Copyright (c) 2013 maybites.ch
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal 
+ *  in the Software without restriction, including without limitation the rights 
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ *  copies of the Software, and to permit persons to whom the Software is furnished
+ *  to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ *  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ch.maybites.tools.math.la;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Stores many 4x4 matrices in one contiguous float array, each one laid out like the
+ * values of Matrix4x4f (m00, m01, etc.). 
+ * 
+ * Suited for instanced transforms, where thousands of matrices are multiplied by the 
+ * same parent or view matrix: the batch operations run over ranges of the array without
+ * chasing a pointer for every matrix.
+ * 
+ * The batch operations can be spread over all the cores, see setParallelThreshold().
+ * 
+ * @author maybites
+ *
+ */
+public class Matrix4x4fArray {
+
+	private float[] m_;
+	private int size;
+	
+	/**
+	 * the number of matrices from which on the batch operations run in parallel, 
+	 * 0 if they always run on the calling thread
+	 */
+	private int parallelThreshold = 0;
+	
+	/**
+	 * Create an array of identity matrices
+	 * 
+	 * @param _size number of matrices
+	 */
+	public Matrix4x4fArray(int _size){
+		size = _size;
+		m_ = new float[_size * 16];
+		setIdentity(0, _size);
+	}
+	
+	/**
+	 * Create an array on top of the specified values. The values are NOT copied.
+	 * 
+	 * @param _values the matrices one after the other, the length must be a multiple of 16
+	 */
+	public Matrix4x4fArray(float[] _values){
+		if(_values.length % 16 != 0)
+			throw new IllegalArgumentException("the length of the values must be a multiple of 16: " + _values.length);
+		size = _values.length / 16;
+		m_ = _values;
+	}
+	
+	/**
+	 * Returns the number of matrices
+	 * @return
+	 */
+	public int size(){
+		return size;
+	}
+	
+	/**
+	 * Returns the values of all the matrices. 
+	 * 
+	 * VERY Careful: this is the internal array, the matrix i starts at index i * 16.
+	 * 
+	 * @return
+	 */
+	public float[] get(){
+		return m_;
+	}
+	
+	/**
+	 * Copies the matrix at the specified index into the destination
+	 * 
+	 * @param index index of the matrix
+	 * @param dest the matrix to store the values in
+	 * @return dest
+	 */
+	public Matrix4x4f get(int index, Matrix4x4f dest){
+		dest.set(m_, index * 16);
+		return dest;
+	}
+	
+	/**
+	 * Sets the matrix at the specified index
+	 * 
+	 * @param index index of the matrix
+	 * @param matrix the values to copy
+	 */
+	public void set(int index, Matrix4x4f matrix){
+		matrix.get(m_, index * 16);
+	}
+	
+	/**
+	 * Sets a range of matrices to the identity
+	 * 
+	 * @param from index of the first matrix
+	 * @param count number of matrices
+	 */
+	public void setIdentity(int from, int count){
+		Arrays.fill(m_, from * 16, (from + count) * 16, 0.0f);
+		for(int i = from * 16; i < (from + count) * 16; i += 16){
+			m_[i] = 1.0f;
+			m_[i + 5] = 1.0f;
+			m_[i + 10] = 1.0f;
+			m_[i + 15] = 1.0f;
+		}
+	}
+	
+	/**
+	 * Sets the number of matrices from which on the batch operations are spread over all 
+	 * the cores. Ranges below it are processed by the calling thread.
+	 * 
+	 * Careful: the operands of a batch operation must not be modified until it returns.
+	 * 
+	 * @param threshold number of matrices, 0 to always process on the calling thread
+	 */
+	public void setParallelThreshold(int threshold){
+		parallelThreshold = (threshold > 0)? threshold: 0;
+	}
+	
+	/**
+	 * Returns the number of matrices from which on the batch operations run in parallel.
+	 * @return 0 if they always run on the calling thread
+	 */
+	public int getParallelThreshold(){
+		return parallelThreshold;
+	}
+	
+	/**
+	 * Multiplies each matrix of the range with the specified matrix: 
+	 * m[i] = m[i] * matrix. This is how a parent or view matrix is applied.
+	 * 
+	 * @param matrix the matrix to multiply with
+	 * @param from index of the first matrix
+	 * @param count number of matrices
+	 */
+	public void multiply(Matrix4x4f matrix, int from, int count){
+		final float[] b = matrix.get(new float[16]);
+		run(from, count, new Parallel.Range(){
+			public void run(int first, int end) {
+				for(int i = first * 16; i < end * 16; i += 16)
+					Matrix4x4f.multiply(m_, i, b, 0, m_, i);
+			}
+		});
+	}
+	
+	/**
+	 * Multiplies the specified matrix with each matrix of the range: 
+	 * m[i] = matrix * m[i]
+	 * 
+	 * @param matrix the matrix to multiply with
+	 * @param from index of the first matrix
+	 * @param count number of matrices
+	 */
+	public void premultiply(Matrix4x4f matrix, int from, int count){
+		final float[] a = matrix.get(new float[16]);
+		run(from, count, new Parallel.Range(){
+			public void run(int first, int end) {
+				for(int i = first * 16; i < end * 16; i += 16)
+					Matrix4x4f.multiply(a, 0, m_, i, m_, i);
+			}
+		});
+	}
+	
+	/**
+	 * Multiplies each matrix of the range with the matrix at the same index of the 
+	 * specified array: m[i] = m[i] * matrices[i]. 
+	 * 
+	 * @param matrices the matrices to multiply with, may be this instance
+	 * @param from index of the first matrix
+	 * @param count number of matrices
+	 */
+	public void multiply(Matrix4x4fArray matrices, int from, int count){
+		Parallel.checkRange(from, count, matrices.size);
+		final float[] b = matrices.m_;
+		run(from, count, new Parallel.Range(){
+			public void run(int first, int end) {
+				for(int i = first * 16; i < end * 16; i += 16)
+					Matrix4x4f.multiply(m_, i, b, i, m_, i);
+			}
+		});
+	}
+	
+	/**
+	 * Inverts each matrix of the range
+	 * 
+	 * @param from index of the first matrix
+	 * @param count number of matrices
+	 */
+	public void invert(int from, int count){
+		run(from, count, new Parallel.Range(){
+			public void run(int first, int end) {
+				for(int i = first * 16; i < end * 16; i += 16)
+					Matrix4x4f.invert(m_, i, m_, i);
+			}
+		});
+	}
+	
+	/**
+	 * Transposes each matrix of the range
+	 * 
+	 * @param from index of the first matrix
+	 * @param count number of matrices
+	 */
+	public void transpose(int from, int count){
+		run(from, count, new Parallel.Range(){
+			public void run(int first, int end) {
+				for(int i = first * 16; i < end * 16; i += 16){
+					for (int r = 0; r < 4; r++){
+						for (int c = r + 1; c < 4; c++){
+							float tmp = m_[i + r * 4 + c];
+							m_[i + r * 4 + c] = m_[i + c * 4 + r];
+							m_[i + c * 4 + r] = tmp;
+						}
+					}
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Transforms one 3D coordinate with each matrix of the range, the coordinate 
+	 * at index k with the matrix from + k. The result of the operation is put back 
+	 * in the original array.
+	 * 
+	 * This method will only give correct results if the matrices are
+	 * classical transformation matrices (ie. scale, rotate, translate or
+	 * a combination of the three)
+	 * 
+	 * @param points Points to transform [x0,y0,z0,x1,y1,z1,...], at least count points
+	 * @param from index of the first matrix
+	 * @param count number of matrices
+	 */
+	public void transformPoints(final float[] points, final int from, int count){
+		run(from, count, new Parallel.Range(){
+			public void run(int first, int end) {
+				for(int i = first; i < end; i++){
+					int m = i * 16;
+					int p = (i - from) * 3;
+					float px = points[p], py = points[p + 1], pz = points[p + 2];
+					points[p]     = px * m_[m]     + py * m_[m + 4] + pz * m_[m + 8]  + m_[m + 12];
+					points[p + 1] = px * m_[m + 1] + py * m_[m + 5] + pz * m_[m + 9]  + m_[m + 13];
+					points[p + 2] = px * m_[m + 2] + py * m_[m + 6] + pz * m_[m + 10] + m_[m + 14];
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Writes the values of a range of matrices into the buffer, starting at the 
+	 * specified index. The position of the buffer is not changed. 
+	 * 
+	 * @param buffer Buffer with at least count * 16 elements left after index
+	 * @param index Index of the first element to write
+	 * @param from index of the first matrix
+	 * @param count number of matrices
+	 * @return buffer
+	 */
+	public FloatBuffer store(FloatBuffer buffer, int index, int from, int count){
+		FloatBuffer view = buffer.duplicate();
+		view.position(index);
+		view.put(m_, from * 16, count * 16);
+		return buffer;
+	}
+	
+	/**
+	 * Reads the values of a range of matrices from the buffer, starting at the 
+	 * specified index. The position of the buffer is not changed. 
+	 * 
+	 * @param buffer Buffer with at least count * 16 elements left after index
+	 * @param index Index of the first element to read
+	 * @param from index of the first matrix
+	 * @param count number of matrices
+	 */
+	public void load(FloatBuffer buffer, int index, int from, int count){
+		FloatBuffer view = buffer.duplicate();
+		view.position(index);
+		view.get(m_, from * 16, count * 16);
+	}
+	
+	/**
+	 * Runs the range of matrices on the calling thread or in parallel
+	 */
+	private void run(int from, int count, Parallel.Range range){
+		Parallel.run(from, count, size, parallelThreshold, 1, range);
+	}
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2013 maybites.ch
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal 
+ *  in the Software without restriction, including without limitation the rights 
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ *  copies of the Software, and to permit persons to whom the Software is furnished
+ *  to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ *  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ch.maybites.tools.math.la;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits the bulk operations on large arrays across the cores. 
+ * 
+ * The range of elements is split in halves until the pieces are small enough. The 
+ * split points are multiples of an alignment in terms of the element index, not of the 
+ * position within the range, so each piece covers whole groups of elements. 
+ * 
+ * Careful: the JVM does not align arrays to cache lines, so two neighbouring pieces 
+ * may still share the cache line at their split point.
+ * 
+ * @author maybites
+ *
+ */
+final class Parallel {
+
+	/**
+	 * the smallest piece of work worth to be handed to another thread, in elements
+	 */
+	static final int MIN_CHUNK = 1024;
+	
+	/**
+	 * A range of elements to process
+	 */
+	interface Range {
+		void run(int from, int to);
+	}
+	
+	/**
+	 * Holds the pool, so it is only created once it is needed. Its threads are daemons.
+	 */
+	private static class Holder {
+		static final ForkJoinPool POOL = new ForkJoinPool();
+	}
+	
+	private Parallel(){
+		;
+	}
+	
+	/**
+	 * Returns the number of threads that do the work
+	 * @return
+	 */
+	static int getParallelism(){
+		return Holder.POOL.getParallelism();
+	}
+	
+	/**
+	 * Checks that the range lies within an array of the provided size
+	 * 
+	 * @param from index of the first element
+	 * @param count number of elements
+	 * @param size number of elements of the array
+	 * @throws IndexOutOfBoundsException if it does not
+	 */
+	static void checkRange(int from, int count, int size){
+		if(from < 0 || count < 0 || from + count > size)
+			throw new IndexOutOfBoundsException("range " + from + " + " + count + " exceeds size " + size);
+	}
+	
+	/**
+	 * Checks the range and processes it on the calling thread if it is smaller than the 
+	 * threshold, otherwise in parallel. Returns once all elements are done.
+	 * 
+	 * @param from index of the first element
+	 * @param count number of elements
+	 * @param size number of elements of the array
+	 * @param threshold the smallest count processed in parallel, 0 to never do so
+	 * @param align the split points are multiples of it
+	 * @param range the work to do
+	 */
+	static void run(int from, int count, int size, int threshold, int align, Range range){
+		checkRange(from, count, size);
+		if(threshold == 0 || count < threshold){
+			range.run(from, from + count);
+			return;
+		}
+		forRange(from, from + count, align, range);
+	}
+	
+	/**
+	 * Processes the elements from the index from to the index to in parallel and 
+	 * returns once all are done.
+	 * 
+	 * @param from index of the first element
+	 * @param to index after the last element
+	 * @param align the split points are multiples of it
+	 * @param range the work to do
+	 */
+	static void forRange(int from, int to, int align, Range range){
+		int chunk = Math.max((to - from) / (getParallelism() * 4), MIN_CHUNK);
+		chunk = (chunk + align - 1) / align * align;
+		if(to - from <= chunk){
+			range.run(from, to);
+			return;
+		}
+		Holder.POOL.invoke(new Task(range, from, to, chunk, align));
+	}
+	
+	private static class Task extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+
+		private Range range;
+		private int from;
+		private int to;
+		private int chunk;
+		private int align;
+		
+		Task(Range _range, int _from, int _to, int _chunk, int _align){
+			range = _range;
+			from = _from;
+			to = _to;
+			chunk = _chunk;
+			align = _align;
+		}
+
+		protected void compute() {
+			if(to - from <= chunk){
+				range.run(from, to);
+				return;
+			}
+			int mid = (from + (to - from) / 2) / align * align;
+			if(mid <= from)
+				mid = (from / align + 1) * align;
+			invokeAll(new Task(range, from, mid, chunk, align), new Task(range, mid, to, chunk, align));
+		}
+	}
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2013 maybites.ch
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal 
+ *  in the Software without restriction, including without limitation the rights 
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ *  copies of the Software, and to permit persons to whom the Software is furnished
+ *  to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ *  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package ch.maybites.tools.math.la;
+
+
+public class Planed{
+
+	private Vector3d normal;
+
+	private double p;
+
+	/**
+	 * Creates a plane in the origin with a normal pointing to the 
+	 * positive z-axis
+	 */
+	public Planed() {
+		normal = new Vector3d(0, 0, 1);
+		update(new Vector3d());
+	}
+
+	/**
+	 * Creates a plane in theOrigin with a normal pointing in the direction of
+	 * the theOrigin
+	 * 
+	 * @param	theOrigin	the reference point in that plane
+	 */
+	public Planed(Vector3d theOrigin) {
+		normal = new Vector3d(theOrigin);
+		update(theOrigin);
+	}
+
+	/**
+	 * Creates a plane in theOrigin and its normal
+	 * 
+	 * @param	theOrigin	the reference point in that plane
+	 * @param	theNormal	the normal vector of that plane
+	 */
+	public Planed(Vector3d theOrigin, Vector3d theNormal) {
+		normal = new Vector3d(theNormal);
+		update(theOrigin);
+	}
+	
+	/**
+	 * Creates a plane defined by two lines. If the lines don't intersect each other,
+	 * then the origin of the plane will lie in the middle between the two lines origins 
+	 * 
+	 * @param	theFirstLine	
+	 * @param	theSecondLine	
+	 */
+	public Planed(Lined theFirstLine, Lined theSecondLine) {
+		normal = theFirstLine.direction.crossMake(theSecondLine.direction);
+		Vector3d origin = theFirstLine.theOrigin.addMake(theSecondLine.theOrigin);
+		origin.scale(.5);
+		update(origin);
+	}
+
+	/**
+	 * Creates a plane in theOrigin and two other points in that plane
+	 * 
+	 * @param	theOrigin	the reference point in that plane
+	 * @param	thePointA	pointA that lies in that plane
+	 * @param	thePointB	pointB that lies in that plane
+	 */
+	public Planed(Vector3d theOrigin,
+			Vector3d thePointA,
+			Vector3d thePointB) {
+		normal = thePointA.subMake(theOrigin).crossMake(thePointB.subMake(theOrigin));
+		update(theOrigin);
+	}
+
+	/**
+	 * sets a plane in theOrigin and two vectors in that plane
+	 * 
+	 * @param	theOrigin	the reference point in that plane
+	 * @param	theVectorA	VectorA that defines that plane
+	 * @param	theVectorB	VectorB that lies in that plane
+	 */
+	public void set(Vector3d theOrigin, Vector3d theVectorA, Vector3d theVectorB) {
+		normal = theVectorA.crossMake(theVectorB);
+		update(theOrigin);
+	}
+
+	private void update(Vector3d origin) {
+		normal.normalize();
+		p = normal.dot(origin);
+	}
+
+	/**
+	 * returns the planes normal vector
+	 * 
+	 * @return	the normal vector
+	 */
+	public Vector3d getNormal() {
+		return normal;
+	}
+
+	/**
+	 * returns the planes p-value
+	 * 
+	 * @return	the p-value
+	 */
+	public double getP() {
+		return p;
+	}
+
+	/**
+	 * returns the origin point of this plane. Its not necessary the one specified
+	 * when this plane was constructed. Its the result of this planes normal-vector
+	 * scaled with factor p
+	 * 
+	 * @return	Vector3d	origin point
+	 */
+	public Vector3d getOrigin(){
+		Vector3d orig = new Vector3d(normal);
+		orig.scale(p);
+		return orig;
+	}
+
+	/**
+	 * returns the intersection point of the specified line with this plane
+	 * 
+	 * @param	line
+	 * @return	Vector3d	intersection point. returns null if line is parallel to plane
+	 */
+	public Vector3d getIntersection(Lined line){
+		// first check if line is parallel to plane:
+		if(!intersects(line))
+			return null;
+
+		Vector3d vector = new Vector3d(line.direction);
+		vector.scale((p - normal.dot(line.theOrigin))/normal.dot(vector));
+		return line.theOrigin.addMake(vector);
+	}
+
+	/**
+	 * returns the intersection line of the specified plane with this plane
+	 * 
+	 * @param	thePlane
+	 * @return	intersection line. returns null if thePlane is parallel to this plane
+	 */
+	public Lined getIntersection(Planed thePlane){
+		// first check if thePlane is parallel to plane:
+		if(!intersects(thePlane)){
+			return null;
+		}
+		Vector3d direction = thePlane.getNormal().crossMake(getNormal());
+		direction.normalize();
+		Vector3d point = thePlane.getOrigin().addMake(getOrigin());
+		return new Lined(point, direction);
+	}
+
+	/**
+	 * checks if the specified plane is intersecting this plane
+	 * 
+	 * @param	thePlane	
+	 * @return	true if thePlane intersects with this plane
+	 */
+	public boolean intersects(Planed thePlane){
+		return (thePlane.getNormal().crossMake(getNormal()).magnitude() == 0.0)? false: true;
+	}
+
+	/**
+	 * checks if the specified line is intersecting this plane
+	 * 
+	 * @param	line	
+	 * @return	boolean		true if it intersects with this plane
+	 */
+	public boolean intersects(Lined line){
+		return (line.direction.dot(normal) == 0.0)? false: true;
+	}
+
+	/**
+	 * returns the angle in rad between the specified line
+	 * and this plane
+	 * 
+	 * @param	line	
+	 * @return	double	intersection-angle in rad with this plane
+	 */
+	public double angle(Lined line){
+		if(!intersects(line)){
+			return 0.0;
+		}
+		double div = Math.abs(normal.dot(line.direction)) / (normal.magnitude() * line.direction.magnitude());
+		return Math.asin((div > 1.0)? 1.0: div);
+	}
+
+	/**
+	 * returns the shortest distance of the specified point to this plane
+	 * the distance is positive if the point lies on that side of the plane where
+	 * its normal is pointing to. otherwise its negative.
+	 * 
+	 * @param	point	point
+	 * @return	double	direct distance to this point. 
+	 */
+	public double getDistance(Vector3d point){
+		return normal.dot(point) - p;
+	}
+
+}
@@ -100,6 +100,22 @@ public class Planef{
 		update(theOrigin);
 	}
 
+	/**
+	 * sets the plane from the coefficients of its equation a*x + b*y + c*z + d = 0. 
+	 * The normal (a, b, c) is normalized and points to the side where the equation 
+	 * is positive.
+	 * 
+	 * @param	a
+	 * @param	b
+	 * @param	c
+	 * @param	d
+	 */
+	public void set(float a, float b, float c, float d) {
+		float length = (float)Math.sqrt(a * a + b * b + c * c);
+		normal.set(a / length, b / length, c / length);
+		p = -d / length;
+	}
+
 	private void update(Vector3f origin) {
 		normal.normalize();
 		p = normal.dot(origin);
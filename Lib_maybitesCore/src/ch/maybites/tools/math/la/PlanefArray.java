@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2013 maybites.ch
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal 
+ *  in the Software without restriction, including without limitation the rights 
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ *  copies of the Software, and to permit persons to whom the Software is furnished
+ *  to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ *  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ch.maybites.tools.math.la;
+
+/**
+ * Stores many planes in one contiguous float array, each one as its normalized 
+ * normal and its p-value (nx, ny, nz, p), like Planef.
+ * 
+ * Suited for picking against thousands of planes: one line is intersected with a 
+ * range of planes and the results are written into arrays provided by the caller. 
+ * The loops only touch primitive arrays, so the JIT can unroll and vectorize them.
+ * 
+ * The batch operations can be spread over all the cores, see setParallelThreshold().
+ * 
+ * @author maybites
+ *
+ */
+public class PlanefArray {
+
+	private float[] p_;
+	private int size;
+	
+	/**
+	 * the number of planes from which on the batch operations run in parallel, 
+	 * 0 if they always run on the calling thread
+	 */
+	private int parallelThreshold = 0;
+	
+	/**
+	 * Create an array of planes in the origin with a normal pointing to the 
+	 * positive z-axis
+	 * 
+	 * @param _size number of planes
+	 */
+	public PlanefArray(int _size){
+		size = _size;
+		p_ = new float[_size * 4];
+		for(int i = 0; i < _size * 4; i += 4)
+			p_[i + 2] = 1.0f;
+	}
+	
+	/**
+	 * Create an array on top of the specified values. The values are NOT copied.
+	 * 
+	 * @param _values the planes one after the other, the length must be a multiple of 4
+	 */
+	public PlanefArray(float[] _values){
+		if(_values.length % 4 != 0)
+			throw new IllegalArgumentException("the length of the values must be a multiple of 4: " + _values.length);
+		size = _values.length / 4;
+		p_ = _values;
+	}
+	
+	/**
+	 * Returns the number of planes
+	 * @return
+	 */
+	public int size(){
+		return size;
+	}
+	
+	/**
+	 * Returns the values of all the planes. 
+	 * 
+	 * VERY Careful: this is the internal array, the plane i starts at index i * 4.
+	 * 
+	 * @return
+	 */
+	public float[] get(){
+		return p_;
+	}
+	
+	/**
+	 * Returns a copy of the plane at the specified index
+	 * 
+	 * @param index index of the plane
+	 * @return new instance
+	 */
+	public Planef get(int index){
+		int i = index * 4;
+		Vector3f normal = new Vector3f(p_[i], p_[i + 1], p_[i + 2]);
+		return new Planef(normal.scaleMake(p_[i + 3]), normal);
+	}
+	
+	/**
+	 * Sets the plane at the specified index
+	 * 
+	 * @param index index of the plane
+	 * @param plane the plane to copy
+	 */
+	public void set(int index, Planef plane){
+		int i = index * 4;
+		Vector3f normal = plane.getNormal();
+		p_[i] = normal.x();
+		p_[i + 1] = normal.y();
+		p_[i + 2] = normal.z();
+		p_[i + 3] = plane.getP();
+	}
+	
+	/**
+	 * Sets the number of planes from which on the batch operations are spread over all 
+	 * the cores. Ranges below it are processed by the calling thread.
+	 * 
+	 * Careful: the operands of a batch operation must not be modified until it returns.
+	 * 
+	 * @param threshold number of planes, 0 to always process on the calling thread
+	 */
+	public void setParallelThreshold(int threshold){
+		parallelThreshold = (threshold > 0)? threshold: 0;
+	}
+	
+	/**
+	 * Returns the number of planes from which on the batch operations run in parallel.
+	 * @return 0 if they always run on the calling thread
+	 */
+	public int getParallelThreshold(){
+		return parallelThreshold;
+	}
+	
+	/**
+	 * Intersects the line with each plane of the range and stores the position on the 
+	 * line: the intersection point is origin + t * direction. 
+	 * 
+	 * @param line the line
+	 * @param dest the parameter t for the plane from + k at index k, NaN if the line 
+	 * 		is parallel to the plane. At least count elements.
+	 * @param from index of the first plane
+	 * @param count number of planes
+	 */
+	public void getIntersectionParameters(Linef line, final float[] dest, final int from, int count){
+		final float ox = line.theOrigin.x(), oy = line.theOrigin.y(), oz = line.theOrigin.z();
+		final float dx = line.direction.x(), dy = line.direction.y(), dz = line.direction.z();
+		run(from, count, new Parallel.Range(){
+			public void run(int first, int end) {
+				for(int i = first; i < end; i++){
+					int p = i * 4;
+					float nd = p_[p] * dx + p_[p + 1] * dy + p_[p + 2] * dz;
+					float no = p_[p] * ox + p_[p + 1] * oy + p_[p + 2] * oz;
+					dest[i - from] = (nd != 0.0f)? (p_[p + 3] - no) / nd: Float.NaN;
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Intersects the line with each plane of the range and stores the intersection 
+	 * points. See Planef.getIntersection(Linef)
+	 * 
+	 * @param line the line
+	 * @param dest the point [x,y,z] for the plane from + k at index k * 3, NaN if the 
+	 * 		line is parallel to the plane. At least count * 3 elements.
+	 * @param from index of the first plane
+	 * @param count number of planes
+	 */
+	public void getIntersections(Linef line, final float[] dest, final int from, int count){
+		final float ox = line.theOrigin.x(), oy = line.theOrigin.y(), oz = line.theOrigin.z();
+		final float dx = line.direction.x(), dy = line.direction.y(), dz = line.direction.z();
+		run(from, count, new Parallel.Range(){
+			public void run(int first, int end) {
+				for(int i = first; i < end; i++){
+					int p = i * 4;
+					int d = (i - from) * 3;
+					float nd = p_[p] * dx + p_[p + 1] * dy + p_[p + 2] * dz;
+					float no = p_[p] * ox + p_[p + 1] * oy + p_[p + 2] * oz;
+					float t = (nd != 0.0f)? (p_[p + 3] - no) / nd: Float.NaN;
+					dest[d]     = ox + t * dx;
+					dest[d + 1] = oy + t * dy;
+					dest[d + 2] = oz + t * dz;
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Stores the distance of the point to each plane of the range. 
+	 * See Planef.getDistance(Vector3f)
+	 * 
+	 * @param point the point
+	 * @param dest the distance to the plane from + k at index k, at least count elements
+	 * @param from index of the first plane
+	 * @param count number of planes
+	 */
+	public void getDistances(Vector3f point, final float[] dest, final int from, int count){
+		final float x = point.x(), y = point.y(), z = point.z();
+		run(from, count, new Parallel.Range(){
+			public void run(int first, int end) {
+				for(int i = first; i < end; i++){
+					int p = i * 4;
+					dest[i - from] = p_[p] * x + p_[p + 1] * y + p_[p + 2] * z - p_[p + 3];
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Runs the range of planes on the calling thread or in parallel
+	 */
+	private void run(int from, int count, Parallel.Range range){
+		Parallel.run(from, count, size, parallelThreshold, 16, range);
+	}
+}
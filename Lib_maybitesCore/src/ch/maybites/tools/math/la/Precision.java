@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2013 maybites.ch
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal 
+ *  in the Software without restriction, including without limitation the rights 
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ *  copies of the Software, and to permit persons to whom the Software is furnished
+ *  to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ *  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ch.maybites.tools.math.la;
+
+/**
+ * Conversion kernels between the float and the double family, for arrays of
+ * coordinates or matrix values that are converted in bulk.
+ * 
+ * @author maybites
+ *
+ */
+public final class Precision {
+
+	private Precision(){
+		;
+	}
+
+	/**
+	 * Converts a range of floats to doubles, with the arguments of System.arraycopy().
+	 * 
+	 * @param src source array
+	 * @param srcPos index of the first value to convert
+	 * @param dest destination array
+	 * @param destPos index of the first value to write
+	 * @param length number of values
+	 * @return dest
+	 */
+	public static double[] toDouble(float[] src, int srcPos, double[] dest, int destPos, int length){
+		for(int i = 0; i < length; i++)
+			dest[destPos + i] = src[srcPos + i];
+		return dest;
+	}
+
+	/**
+	 * Converts all the floats to a new double array
+	 * 
+	 * @param src source array
+	 * @return new array of the same length
+	 */
+	public static double[] toDouble(float[] src){
+		return toDouble(src, 0, new double[src.length], 0, src.length);
+	}
+
+	/**
+	 * Converts a range of doubles to floats, with the arguments of System.arraycopy().
+	 * The values are rounded to the nearest float.
+	 * 
+	 * @param src source array
+	 * @param srcPos index of the first value to convert
+	 * @param dest destination array
+	 * @param destPos index of the first value to write
+	 * @param length number of values
+	 * @return dest
+	 */
+	public static float[] toFloat(double[] src, int srcPos, float[] dest, int destPos, int length){
+		for(int i = 0; i < length; i++)
+			dest[destPos + i] = (float)src[srcPos + i];
+		return dest;
+	}
+
+	/**
+	 * Converts all the doubles to a new float array
+	 * 
+	 * @param src source array
+	 * @return new array of the same length
+	 */
+	public static float[] toFloat(double[] src){
+		return toFloat(src, 0, new float[src.length], 0, src.length);
+	}
+}
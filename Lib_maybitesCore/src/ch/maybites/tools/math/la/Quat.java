@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2013 maybites.ch
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal 
+ *  in the Software without restriction, including without limitation the rights 
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ *  copies of the Software, and to permit persons to whom the Software is furnished
+ *  to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ *  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ch.maybites.tools.math.la;
+
+import ch.maybites.tools.Const;
+
+/**
+ * Immutable quaternion. Every operation returns a new instance and no instance 
+ * is ever modified, so short lived intermediate results of chained expressions 
+ * do not escape and can be removed by the escape analysis of the JIT. 
+ * See Vec3.
+ * 
+ * @author maybites
+ *
+ */
+public final class Quat {
+
+	public static final Quat IDENTITY = new Quat(0, 0, 0, 1);
+
+	public final float x;
+	public final float y;
+	public final float z;
+	public final float w;
+
+	public Quat(float _x, float _y, float _z, float _w){
+		x = _x;
+		y = _y;
+		z = _z;
+		w = _w;
+	}
+
+	/**
+	 * Creates a quaternion with the values of the mutable quaternion
+	 * @param quat
+	 * @return new instance
+	 */
+	public static Quat of(Quaternionf quat){
+		return new Quat(quat.x(), quat.y(), quat.z(), quat.w());
+	}
+
+	/**
+	 * Creates the rotation of angle (degrees) around the axis, like 
+	 * Quaternionf.setRotate()
+	 * 
+	 * @param angle in degrees
+	 * @param axis
+	 * @return new instance, IDENTITY if the axis has no length
+	 */
+	public static Quat rotation(float angle, Vec3 axis){
+		float length = axis.length();
+		if (length < 0.0000001f)
+			return IDENTITY;
+		float half = 0.5f * angle * (float)Const.DEG_TO_RAD;
+		float s = (float)Math.sin(half) / length;
+		return new Quat(axis.x * s, axis.y * s, axis.z * s, (float)Math.cos(half));
+	}
+
+	/**
+	 * Stores the values of this quaternion in the mutable quaternion
+	 * @param dest
+	 * @return dest
+	 */
+	public Quaternionf get(Quaternionf dest){
+		dest.set(x, y, z, w);
+		return dest;
+	}
+
+	/**
+	 * Returns the product of this and the specified quaternion, 
+	 * like Quaternionf.multiply()
+	 * @param q
+	 * @return new instance
+	 */
+	public Quat multiply(Quat q){
+		return new Quat(w * q.x + x * q.w + y * q.z - z * q.y,
+				w * q.y - x * q.z + y * q.w + z * q.x,
+				w * q.z + x * q.y - y * q.x + z * q.w,
+				w * q.w - x * q.x - y * q.y - z * q.z);
+	}
+
+	public Quat conjugate(){
+		return new Quat(-x, -y, -z, w);
+	}
+
+	public Quat inverse(){
+		float s = 1.0f / lengthSquared();
+		return new Quat(-x * s, -y * s, -z * s, w * s);
+	}
+
+	public float dot(Quat q){
+		return x * q.x + y * q.y + z * q.z + w * q.w;
+	}
+
+	public float lengthSquared(){
+		return x * x + y * y + z * z + w * w;
+	}
+
+	public float length(){
+		return (float)Math.sqrt(lengthSquared());
+	}
+
+	public Quat normalize(){
+		float s = 1.0f / length();
+		return new Quat(x * s, y * s, z * s, w * s);
+	}
+
+	/**
+	 * Rotates the vector with this normalized quaternion: q * v * q^-1
+	 * @param v
+	 * @return new instance
+	 */
+	public Vec3 rotate(Vec3 v){
+		// t = 2 * cross(q.xyz, v), v' = v + w * t + cross(q.xyz, t)
+		float tx = 2.0f * (y * v.z - z * v.y);
+		float ty = 2.0f * (z * v.x - x * v.z);
+		float tz = 2.0f * (x * v.y - y * v.x);
+		return new Vec3(v.x + w * tx + (y * tz - z * ty),
+				v.y + w * ty + (z * tx - x * tz),
+				v.z + w * tz + (x * ty - y * tx));
+	}
+
+	public boolean equals(Object object){
+		if(!(object instanceof Quat))
+			return false;
+		Quat q = (Quat)object;
+		return Float.compare(x, q.x) == 0 && Float.compare(y, q.y) == 0 && 
+				Float.compare(z, q.z) == 0 && Float.compare(w, q.w) == 0;
+	}
+
+	public int hashCode(){
+		return ((Float.floatToIntBits(x) * 31 + Float.floatToIntBits(y)) * 31 + 
+				Float.floatToIntBits(z)) * 31 + Float.floatToIntBits(w);
+	}
+
+	public String toString(){
+		return "Quat: [x=" + x + ", y=" + y + ", z=" + z + ", w=" + w + "]";
+	}
+}
@@ -0,0 +1,509 @@
+/*
+ * Copyright (c) 2013 maybites.ch / openframeworks.org
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal 
+ *  in the Software without restriction, including without limitation the rights 
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ *  copies of the Software, and to permit persons to whom the Software is furnished
+ *  to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ *  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * derived from code by
+ * Patrick Kochlik + Dennis Paul
+ * Openframeworks
+ *
+ */
+
+package ch.maybites.tools.math.la;
+
+import java.nio.DoubleBuffer;
+
+import ch.maybites.tools.Const;
+
+/**
+ * 
+ * @author Martin Frhlich
+ *
+ * This class is heavily indebted by the openframeworks Quaternion class and code from
+ * Patrick Kochlik + Dennis Paul. And others...
+ * 
+ */
+public class Quaterniond {
+
+	private double[] v_;
+
+	/**
+	 * Construct an empty Quaternion 
+	 */
+	public Quaterniond() {
+		reset();
+	}
+
+	/**
+	 * Construct a Quaternion with the specified element values.
+	 * 
+	 * @param args  Array of 4 imaginary elements: x, y, z, w
+	 */
+	public Quaterniond(double[] args) {
+		reset();
+		for(int i = 0; i < 4; i++)
+			v_[i] = args[i];
+	}
+
+	/**
+	 * Construct a Quaternion with the specified euler angles.
+	 * @param bank
+	 * @param heading
+	 * @param attitude
+	 */
+	public Quaterniond(double bank, double heading, double attitude) {
+		reset();
+		setEuler(bank, heading, attitude);
+	}
+
+	/**
+	 * Construct a Quaternion from a rotation around a vector
+	 * @param angle
+	 * @param vector
+	 */
+	public Quaterniond(double angle, Vector3d vector) {
+		reset();
+		setRotate(angle, vector);
+	}
+
+	/**
+	 * Construct an empty Quaternion 
+	 * 
+	 * @param theX  imaginary x value
+	 * @param theY  imaginary y value
+	 * @param theZ  imaginary w value
+	 * @param theW  imaginary z value
+	 */
+	public Quaterniond(double theX, double theY, double theZ, double theW) {
+		reset();
+		set(theX, theY, theZ, theW);
+	}
+
+	public double magnitude(){
+		return Math.sqrt(v_[0] * v_[0] + v_[1] * v_[1] + v_[2] * v_[2] + v_[3] * v_[3]);
+	}
+
+	public void normalize(){
+		double magnitude = magnitude();
+		v_[0] /= magnitude;
+		v_[1] /= magnitude;
+		v_[2] /= magnitude;
+		v_[3] /= magnitude;
+	}
+	
+	public void reset() {
+		if(v_ == null)
+			v_ = new double[4];
+		for (int i = 0; i < 4; i++)
+			v_[i] = 0.0;
+		v_[3] = 1.0;
+	}
+
+	public double x(){
+		return v_[0];
+	}
+
+	public double y(){
+		return v_[1];
+	}
+
+	public double z(){
+		return v_[2];
+	}
+
+	public double w(){
+		return v_[3];
+	}
+
+	public void setX(double x){
+		v_[0] = x;
+	}
+
+	public void setY(double y){
+		v_[1] = y;
+	}
+
+	public void setZ(double z){
+		v_[2] = z;
+	}
+
+	public void setW(double w){
+		v_[3] = w;
+	}
+
+	/**
+	 * Sets this Quaternion according to the euler angles in degrees
+	 * 
+	 * calc based on from http://www.euclideanspace.com/maths/geometry/rotations/conversions/eulerToQuaternion/index.htm
+	 * 
+	 * @param bank (x)
+	 * @param heading (y)
+	 * @param attitude (z)
+	 */
+	public void setEuler(double bank, double heading, double attitude) {
+		reset();
+		double angleX = bank * Const.DEG_TO_RAD;
+		double angleY = heading * Const.DEG_TO_RAD;
+		double angleZ = attitude * Const.DEG_TO_RAD;
+		double c1 = Math.cos(angleY);
+		double s1 = Math.sin(angleY);
+		double c2 = Math.cos(angleZ);
+		double s2 = Math.sin(angleZ);
+		double c3 = Math.cos(angleX);
+		double s3 = Math.sin(angleX);
+	    v_[3] = Math.sqrt(1.0 + c1 * c2 + c1*c3 - s1 * s2 * s3 + c2*c3) / 2.0;
+	    double w4 = (4.0 * v_[3]);
+	    v_[0] = (c2 * s3 + c1 * s3 + s1 * s2 * c3) / w4 ;
+	    v_[1] = (s1 * c2 + s1 * c3 + c1 * s2 * s3) / w4 ;
+	    v_[2] = (-s1 * s3 + c1 * s2 * c3 +s2) / w4 ;
+	}
+
+	public void set(double theW, Vector3d theVector3d) {
+		v_[0] = theVector3d.x();
+		v_[1] = theVector3d.y();
+		v_[2] = theVector3d.z();
+		v_[3] = theW;
+	}
+
+	public void set(double theX, double theY, double theZ, double theW) {
+		v_[0] = theX;
+		v_[1] = theY;
+		v_[2] = theZ;
+		v_[3] = theW;
+	}
+
+	public void set(Quaterniond theQuaternion) {
+		v_[0] = theQuaternion.x();
+		v_[1] = theQuaternion.y();
+		v_[2] = theQuaternion.z();
+		v_[3] = theQuaternion.w();
+	}
+
+	public void set(Quaternionf theQuaternion) {
+		v_[0] = theQuaternion.x();
+		v_[1] = theQuaternion.y();
+		v_[2] = theQuaternion.z();
+		v_[3] = theQuaternion.w();
+	}
+
+	/**
+	 * Set the elements of the Quat to represent a rotation of angle
+	 * (degrees) around the axis (x,y,z)
+	 * @param angle
+	 * @param x
+	 * @param y
+	 * @param z
+	 */
+	public void setRotate( double angle, double x, double y, double z ) {
+		angle = angle * Const.DEG_TO_RAD;
+		double epsilon = 0.0000001;
+
+		double length = Math.sqrt( x * x + y * y + z * z );
+		if (length < epsilon) {
+			// ~zero length axis, so reset rotation to zero.
+			reset();
+			return;
+		}
+
+		double inversenorm  = 1.0 / length;
+		double coshalfangle = Math.cos( 0.5 * angle );
+		double sinhalfangle = Math.sin( 0.5 * angle );
+
+		setX(x * sinhalfangle * inversenorm);
+		setY(y * sinhalfangle * inversenorm);
+		setZ(z * sinhalfangle * inversenorm);
+		setW(coshalfangle);
+	}
+
+	/**
+	 * Set the elements of the Quat to represent a rotation of angle
+	 * (degrees) around the axis vector
+	 * 
+	 * @param angle
+	 * @param vec
+	 */
+	public void setRotate(double angle, Vector3d vec) {
+		setRotate( angle, vec.x(), vec.y(), vec.z() );
+	}
+
+	/**
+	 * Set the elements of the Quat to represent a rotation of 3 angles
+	 * (degrees) around the three axis vectors
+	 * 
+	 * @param angle1
+	 * @param axis1
+	 * @param angle2
+	 * @param axis2
+	 * @param angle3
+	 * @param axis3
+	 */
+	public void setRotate(double angle1, Vector3d axis1,
+	                      double angle2, Vector3d axis2,
+	                      double angle3, Vector3d axis3) {
+	       Quaterniond q1 = new Quaterniond(); 
+	       q1.setRotate(angle1,axis1);
+	       Quaterniond q2 = new Quaterniond(); 
+	       q2.setRotate(angle2,axis2);
+	       Quaterniond q3 = new Quaterniond(); 
+	       q3.setRotate(angle3,axis3);
+
+	       
+	       setMultiply(q1, q2);
+	       multiply(q3);
+	}
+	
+	/**
+	 * This method returns the imaginary values (x, y, z) inside Vector
+	 * @return
+	 */
+	public Vector3d getImaginaryQuaternion(){
+		return new Vector3d(x(), y(), z());
+	}
+		
+	/**
+	 * get the Quaternion values in an array 
+	 * 
+	 * @return 	double[] array
+	 */
+	public double[] get(){
+		return v_;
+	}
+
+	/**
+	 * Writes x, y, z, w into the buffer, starting at the specified index. 
+	 * The position of the buffer is not changed.
+	 * 
+	 * @param buffer 	Buffer with at least 4 elements left after index
+	 * @param index 	Index of the first element to write
+	 * @return 	buffer
+	 */
+	public DoubleBuffer store(DoubleBuffer buffer, int index){
+		for(int i = 0; i < 4; i++)
+			buffer.put(index + i, v_[i]);
+		return buffer;
+	}
+
+	/**
+	 * Reads x, y, z, w from the buffer, starting at the specified index. 
+	 * The position of the buffer is not changed.
+	 * 
+	 * @param buffer 	Buffer with at least 4 elements left after index
+	 * @param index 	Index of the first element to read
+	 */
+	public void load(DoubleBuffer buffer, int index){
+		for(int i = 0; i < 4; i++)
+			v_[i] = buffer.get(index + i);
+	}
+	
+	/**
+	 * Set this quaternion as a result of the multiplication of the two specified quaternions.
+	 * Either of them may be this instance.
+	 * @param theA
+	 * @param theB
+	 */
+	public void setMultiply(Quaterniond theA, Quaterniond theB) {
+		double ax = theA.x(), ay = theA.y(), az = theA.z(), aw = theA.w();
+		double bx = theB.x(), by = theB.y(), bz = theB.z(), bw = theB.w();
+		v_[0] = aw * bx + ax * bw + ay * bz - az * by;
+		v_[1] = aw * by - ax * bz + ay * bw + az * bx;
+		v_[2] = aw * bz + ax * by - ay * bx + az * bw;
+		v_[3] = aw * bw - ax * bx - ay * by - az * bz;
+	}
+		
+	/**
+	 * Multiply this quaternion with the specified quaternion and return this instance
+	 * @param theA
+	 * @return this instance
+	 */
+	public Quaterniond multiply(Quaterniond theA) {
+		setMultiply(this, theA);
+		return this;
+	}
+	
+	/**
+	 * Returns the result of the multiplication between this and the specified
+	 * Quaternion without modifying this instance
+	 * @param theA
+	 * @return the new instance of a quaternion
+	 */
+	public Quaterniond multiplyMake(Quaterniond theA) {
+		return clone().multiply(theA);
+	}
+
+	/**
+	 * Scales this quaternion and returns this instance
+	 * @param scale
+	 * @return
+	 */
+	public Quaterniond scale(double scale){
+		v_[0] *= scale;
+		v_[1] *= scale;
+		v_[2] *= scale;
+		v_[3] *= scale;
+		return this;
+	}
+	
+	/**
+	 * Conjugates this Quaternion (changes the sign of the x, y and z values)
+	 * 
+	 * @return this instance
+	 */
+	public Quaterniond conjugate(){
+		v_[0] *= -1;
+		v_[1] *= -1;
+		v_[2] *= -1;
+		return this;
+	}
+	
+	/**
+	 * Conjugates this Quaternion (changes the sign of the x, y and z values) and returns 
+	 * the result as a new Instance without modifying this instance
+	 * 
+	 * @return new instance
+	 */
+	public Quaterniond conjugateMake(){
+		return clone().conjugate();
+	}
+	
+	public double length2(){
+		return x() * x() + y() * y() + z() * z() + w() * w();
+	}
+	
+	public double length(){
+		return Math.sqrt(length2());
+	}
+	
+	public Quaterniond inverse(){
+		conjugate().scale(1.0 / length2());
+		return this;
+	}
+	
+	public Quaterniond inverseMake(){
+		return clone().inverse();
+	}
+	
+	/**
+	 * Rotates the vector with this quaternion (q * v * q^-1) and stores the result in 
+	 * dest, without building a matrix or intermediate quaternions. 
+	 * 
+	 * Careful: a quaternion that is not normalized rotates like the normalized one, 
+	 * the length of the vector is kept.
+	 * 
+	 * @param vec the vector to rotate
+	 * @param dest the vector to store the result in, may be vec
+	 * @return dest
+	 */
+	public Vector3d rotate(Vector3d vec, Vector3d dest){
+		double vx = vec.x(), vy = vec.y(), vz = vec.z();
+		double qx = v_[0], qy = v_[1], qz = v_[2], qw = v_[3];
+		// t = 2 * cross(q.xyz, v) / |q|^2, v' = v + w * t + cross(q.xyz, t)
+		double s = 2.0 / length2();
+		double tx = s * (qy * vz - qz * vy);
+		double ty = s * (qz * vx - qx * vz);
+		double tz = s * (qx * vy - qy * vx);
+		dest.set(vx + qw * tx + (qy * tz - qz * ty),
+				vy + qw * ty + (qz * tx - qx * tz),
+				vz + qw * tz + (qx * ty - qy * tx));
+		return dest;
+	}
+
+	/**
+	 * Rotates the 3D coordinates with this quaternion. The result of the operation 
+	 * is put back in the original array.
+	 * 
+	 * @param points Points to rotate [x0,y0,z0,x1,y1,z1,...]
+	 */
+	public void rotatePoints(double[] points){
+		rotatePoints(points, 0, points.length / 3);
+	}
+
+	/**
+	 * Rotates a range of 3D coordinates with this quaternion. The result of the 
+	 * operation is put back in the original array.
+	 * 
+	 * @param points Points to rotate [x0,y0,z0,x1,y1,z1,...]
+	 * @param first index of the first point
+	 * @param count number of points
+	 */
+	public void rotatePoints(double[] points, int first, int count){
+		double qx = v_[0], qy = v_[1], qz = v_[2], qw = v_[3];
+		if (qx == 0.0 && qy == 0.0 && qz == 0.0)
+			return;
+		double s = 2.0 / length2();
+		for (int i = first * 3; i < (first + count) * 3; i += 3) {
+			double vx = points[i], vy = points[i + 1], vz = points[i + 2];
+			double tx = s * (qy * vz - qz * vy);
+			double ty = s * (qz * vx - qx * vz);
+			double tz = s * (qx * vy - qy * vx);
+			points[i]     = vx + qw * tx + (qy * tz - qz * ty);
+			points[i + 1] = vy + qw * ty + (qz * tx - qx * tz);
+			points[i + 2] = vz + qw * tz + (qx * ty - qy * tx);
+		}
+	}
+	
+	/**
+	 * Returns the Euler angles inside a vector in degrees
+	 * 
+	 * math based on http://www.euclideanspace.com/maths/geometry/rotations/conversions/quaternionToEuler/index.htm
+	 * 
+	 * @return vector with euler angles [bank, heading, attitude]
+	 */
+	public Vector3d getEuler() {
+		double heading, attitude, bank;
+	    double sqw = w()*w();
+	    double sqx = x()*x();
+	    double sqy = y()*y();
+	    double sqz = z()*z();
+	    // if normalised is one, otherwise is correction factor
+	    double unit = sqx + sqy + sqz + sqw; 
+	    double test = x()*y() + z()*w();
+		if (test > 0.499*unit) { // singularity at north pole
+			heading = 2.0 * Math.atan2(x(),w());
+			attitude = Const.HALF_PI;
+			bank = 0;
+		}else if (test < -0.499*unit) { // singularity at south pole
+			heading = -2.0 * Math.atan2(x(),w());
+			attitude = -Const.HALF_PI;
+			bank = 0;
+		}else{
+		    heading = Math.atan2(2.0*y()*w()-2.0*x()*z() , sqx - sqy - sqz + sqw);
+			attitude = Math.asin(2*test/unit);
+			bank = Math.atan2(2.0*x()*w()-2.0*y()*z() , -sqx + sqy - sqz + sqw);
+		}
+		return new Vector3d(bank * Const.RAD_TO_DEG, heading * Const.RAD_TO_DEG, attitude * Const.RAD_TO_DEG);
+	}
+	
+	/**
+	 * get an exact copy of this quaternion
+	 */
+	public Quaterniond clone(){
+		return new Quaterniond(x(), y(), z(), w());
+	}
+
+	 /**
+	  * Create a string representation of this vector.
+	  * 
+	  * @return  String representing this vector.
+	  */
+	 public String toString()
+	 {
+		 return ("Quaterniond: [x=" + 
+				 v_[0] + ", y=" + v_[1] + ", z=" + v_[2] + ", w=" + v_[3] + "]");
+	 }
+
+}
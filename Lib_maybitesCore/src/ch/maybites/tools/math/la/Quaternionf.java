@@ -26,6 +26,9 @@
 
 package ch.maybites.tools.math.la;
 
+import java.nio.FloatBuffer;
+
+import ch.maybites.tools.Calc;
 import ch.maybites.tools.Const;
 
 /**
@@ -40,6 +43,11 @@ public class Quaternionf {
 
 	private float[] v_;
 
+	/**
+	 * above this cosine between two rotations slerp falls back to nlerp
+	 */
+	private static final float SLERP_LINEAR = 0.9995f;
+
 	/**
 	 * Construct an empty Quaternion 
 	 */
@@ -105,7 +113,8 @@ public class Quaternionf {
 	}
 	
 	public void reset() {
-		v_ = new float[4];
+		if(v_ == null)
+			v_ = new float[4];
 		for (int i = 0; i < 4; i++)
 			v_[i] = 0.0f;
 		v_[3] = 1.0f;
@@ -157,12 +166,12 @@ public class Quaternionf {
 		float angleX = bank * (float)Const.DEG_TO_RAD;
 		float angleY = heading * (float)Const.DEG_TO_RAD;
 		float angleZ = attitude * (float)Const.DEG_TO_RAD;
-		float c1 = (float)Math.cos(angleY);
-		float s1 = (float)Math.sin(angleY);
-		float c2 = (float)Math.cos(angleZ);
-		float s2 = (float)Math.sin(angleZ);
-		float c3 = (float)Math.cos(angleX);
-		float s3 = (float)Math.sin(angleX);
+		float c1 = Calc.cos(angleY);
+		float s1 = Calc.sin(angleY);
+		float c2 = Calc.cos(angleZ);
+		float s2 = Calc.sin(angleZ);
+		float c3 = Calc.cos(angleX);
+		float s3 = Calc.sin(angleX);
 	    v_[3] = (float)Math.sqrt(1.0f + c1 * c2 + c1*c3 - s1 * s2 * s3 + c2*c3) / 2.0f;
 	    float w4 = (4.0f * v_[3]);
 	    v_[0] = (c2 * s3 + c1 * s3 + s1 * s2 * c3) / w4 ;
@@ -191,6 +200,13 @@ public class Quaternionf {
 		v_[3] = theQuaternion.w();
 	}
 
+	public void set(Quaterniond theQuaternion) {
+		v_[0] = (float)theQuaternion.x();
+		v_[1] = (float)theQuaternion.y();
+		v_[2] = (float)theQuaternion.z();
+		v_[3] = (float)theQuaternion.w();
+	}
+
 	/**
 	 * Set the elements of the Quat to represent a rotation of angle
 	 * (degrees) around the axis (x,y,z)
@@ -211,8 +227,8 @@ public class Quaternionf {
 		}
 
 		float inversenorm  = 1.0f / length;
-		float coshalfangle = (float)Math.cos( 0.5f * angle );
-		float sinhalfangle = (float)Math.sin( 0.5f * angle );
+		float coshalfangle = Calc.cos( 0.5f * angle );
+		float sinhalfangle = Calc.sin( 0.5f * angle );
 
 		setX(x * sinhalfangle * inversenorm);
 		setY(y * sinhalfangle * inversenorm);
@@ -273,17 +289,46 @@ public class Quaternionf {
 	public float[] get(){
 		return v_;
 	}
+
+	/**
+	 * Writes x, y, z, w into the buffer, starting at the specified index. 
+	 * The position of the buffer is not changed.
+	 * 
+	 * @param buffer 	Buffer with at least 4 elements left after index
+	 * @param index 	Index of the first element to write
+	 * @return 	buffer
+	 */
+	public FloatBuffer store(FloatBuffer buffer, int index){
+		for(int i = 0; i < 4; i++)
+			buffer.put(index + i, v_[i]);
+		return buffer;
+	}
+
+	/**
+	 * Reads x, y, z, w from the buffer, starting at the specified index. 
+	 * The position of the buffer is not changed.
+	 * 
+	 * @param buffer 	Buffer with at least 4 elements left after index
+	 * @param index 	Index of the first element to read
+	 */
+	public void load(FloatBuffer buffer, int index){
+		for(int i = 0; i < 4; i++)
+			v_[i] = buffer.get(index + i);
+	}
 	
 	/**
-	 * Set this quaternion as a result of the multiplication of the two specified quaternions
+	 * Set this quaternion as a result of the multiplication of the two specified quaternions.
+	 * Either of them may be this instance.
 	 * @param theA
 	 * @param theB
 	 */
 	public void setMultiply(Quaternionf theA, Quaternionf theB) {
-		v_[0] = theA.w() * theB.x() + theA.x() * theB.w() + theA.y() * theB.z() - theA.z() * theB.y();
-		v_[1] = theA.w() * theB.y() - theA.x() * theB.z() + theA.y() * theB.w() + theA.z() * theB.x();
-		v_[2] = theA.w() * theB.z() + theA.x() * theB.y() - theA.y() * theB.x() + theA.z() * theB.w();
-		v_[3] = theA.w() * theB.w() - theA.x() * theB.x() - theA.y() * theB.y() - theA.z() * theB.z();
+		float ax = theA.x(), ay = theA.y(), az = theA.z(), aw = theA.w();
+		float bx = theB.x(), by = theB.y(), bz = theB.z(), bw = theB.w();
+		v_[0] = aw * bx + ax * bw + ay * bz - az * by;
+		v_[1] = aw * by - ax * bz + ay * bw + az * bx;
+		v_[2] = aw * bz + ax * by - ay * bx + az * bw;
+		v_[3] = aw * bw - ax * bx - ay * by - az * bz;
 	}
 		
 	/**
@@ -292,7 +337,7 @@ public class Quaternionf {
 	 * @return this instance
 	 */
 	public Quaternionf multiply(Quaternionf theA) {
-		setMultiply(clone(), theA);
+		setMultiply(this, theA);
 		return this;
 	}
 	
@@ -358,6 +403,190 @@ public class Quaternionf {
 		return clone().inverse();
 	}
 	
+	/**
+	 * Rotates the vector with this quaternion (q * v * q^-1) and stores the result in 
+	 * dest, without building a matrix or intermediate quaternions. 
+	 * 
+	 * Careful: a quaternion that is not normalized rotates like the normalized one, 
+	 * the length of the vector is kept.
+	 * 
+	 * @param vec the vector to rotate
+	 * @param dest the vector to store the result in, may be vec
+	 * @return dest
+	 */
+	public Vector3f rotate(Vector3f vec, Vector3f dest){
+		float vx = vec.x(), vy = vec.y(), vz = vec.z();
+		float qx = v_[0], qy = v_[1], qz = v_[2], qw = v_[3];
+		// t = 2 * cross(q.xyz, v) / |q|^2, v' = v + w * t + cross(q.xyz, t)
+		float s = 2.0f / length2();
+		float tx = s * (qy * vz - qz * vy);
+		float ty = s * (qz * vx - qx * vz);
+		float tz = s * (qx * vy - qy * vx);
+		dest.set(vx + qw * tx + (qy * tz - qz * ty),
+				vy + qw * ty + (qz * tx - qx * tz),
+				vz + qw * tz + (qx * ty - qy * tx));
+		return dest;
+	}
+
+	/**
+	 * Rotates the 3D coordinates with this quaternion (see rotate()). The result of the 
+	 * operation is put back in the original array.
+	 * 
+	 * @param points Points to rotate [x0,y0,z0,x1,y1,z1,...]
+	 */
+	public void rotatePoints(float[] points){
+		rotatePoints(points, 0, points.length / 3);
+	}
+
+	/**
+	 * Rotates a range of 3D coordinates with this quaternion (see rotate()). The result 
+	 * of the operation is put back in the original array.
+	 * 
+	 * @param points Points to rotate [x0,y0,z0,x1,y1,z1,...]
+	 * @param first index of the first point
+	 * @param count number of points
+	 */
+	public void rotatePoints(float[] points, int first, int count){
+		float qx = v_[0], qy = v_[1], qz = v_[2], qw = v_[3];
+		if (qx == 0.0f && qy == 0.0f && qz == 0.0f)
+			return;
+		float s = 2.0f / length2();
+		for (int i = first * 3; i < (first + count) * 3; i += 3) {
+			float vx = points[i], vy = points[i + 1], vz = points[i + 2];
+			float tx = s * (qy * vz - qz * vy);
+			float ty = s * (qz * vx - qx * vz);
+			float tz = s * (qx * vy - qy * vx);
+			points[i]     = vx + qw * tx + (qy * tz - qz * ty);
+			points[i + 1] = vy + qw * ty + (qz * tx - qx * tz);
+			points[i + 2] = vz + qw * tz + (qx * ty - qy * tx);
+		}
+	}
+
+	/**
+	 * Set this quaternion to the spherical linear interpolation between the two 
+	 * specified normalized quaternions. The rotation follows the shortest path with 
+	 * constant angular velocity. Either of them may be this instance.
+	 * 
+	 * @param theA the rotation at blend 0
+	 * @param theB the rotation at blend 1
+	 * @param blend 
+	 */
+	public void setSlerp(Quaternionf theA, Quaternionf theB, float blend) {
+		slerp(theA.v_, 0, theB.v_, 0, blend, v_, 0);
+	}
+
+	/**
+	 * Interpolates spherically from this quaternion to the specified one and returns 
+	 * this instance. See setSlerp()
+	 * @param theB the rotation at blend 1
+	 * @param blend
+	 * @return this instance
+	 */
+	public Quaternionf slerp(Quaternionf theB, float blend) {
+		setSlerp(this, theB, blend);
+		return this;
+	}
+
+	/**
+	 * Returns the spherical interpolation from this quaternion to the specified one 
+	 * without modifying this instance. See setSlerp()
+	 * @param theB the rotation at blend 1
+	 * @param blend
+	 * @return the new instance of a quaternion
+	 */
+	public Quaternionf slerpMake(Quaternionf theB, float blend) {
+		return clone().slerp(theB, blend);
+	}
+
+	/**
+	 * Set this quaternion to the normalized linear interpolation between the two 
+	 * specified normalized quaternions. It follows the same shortest path as setSlerp(),
+	 * but not with constant velocity. It is much cheaper and good enough to blend 
+	 * rotations that are close to each other. Either of them may be this instance.
+	 * 
+	 * @param theA the rotation at blend 0
+	 * @param theB the rotation at blend 1
+	 * @param blend 
+	 */
+	public void setNlerp(Quaternionf theA, Quaternionf theB, float blend) {
+		nlerp(theA.v_, 0, theB.v_, 0, blend, v_, 0);
+	}
+
+	/**
+	 * Interpolates linearly from this quaternion to the specified one, normalizes and 
+	 * returns this instance. See setNlerp()
+	 * @param theB the rotation at blend 1
+	 * @param blend
+	 * @return this instance
+	 */
+	public Quaternionf nlerp(Quaternionf theB, float blend) {
+		setNlerp(this, theB, blend);
+		return this;
+	}
+
+	/**
+	 * Returns the normalized linear interpolation from this quaternion to the specified 
+	 * one without modifying this instance. See setNlerp()
+	 * @param theB the rotation at blend 1
+	 * @param blend
+	 * @return the new instance of a quaternion
+	 */
+	public Quaternionf nlerpMake(Quaternionf theB, float blend) {
+		return clone().nlerp(theB, blend);
+	}
+
+	/**
+	 * Spherical interpolation of the quaternions stored at the offsets, the result may 
+	 * overwrite either of them.
+	 */
+	static void slerp(float[] a, int ai, float[] b, int bi, float blend, float[] d, int di){
+		float ax = a[ai], ay = a[ai + 1], az = a[ai + 2], aw = a[ai + 3];
+		float bx = b[bi], by = b[bi + 1], bz = b[bi + 2], bw = b[bi + 3];
+		float cos = ax * bx + ay * by + az * bz + aw * bw;
+		if(cos < 0){
+			cos = -cos;
+			bx = -bx; by = -by; bz = -bz; bw = -bw;
+		}
+		if(cos > SLERP_LINEAR){
+			// the sine of the angle gets too small to divide by
+			lerp(ax, ay, az, aw, bx, by, bz, bw, blend, d, di);
+			return;
+		}
+		float angle = (float)Math.acos(cos);
+		float sin = 1.0f / (float)Math.sin(angle);
+		float sa = (float)Math.sin((1.0f - blend) * angle) * sin;
+		float sb = (float)Math.sin(blend * angle) * sin;
+		d[di]     = sa * ax + sb * bx;
+		d[di + 1] = sa * ay + sb * by;
+		d[di + 2] = sa * az + sb * bz;
+		d[di + 3] = sa * aw + sb * bw;
+	}
+
+	/**
+	 * Normalized linear interpolation of the quaternions stored at the offsets, the 
+	 * result may overwrite either of them.
+	 */
+	static void nlerp(float[] a, int ai, float[] b, int bi, float blend, float[] d, int di){
+		float bx = b[bi], by = b[bi + 1], bz = b[bi + 2], bw = b[bi + 3];
+		if(a[ai] * bx + a[ai + 1] * by + a[ai + 2] * bz + a[ai + 3] * bw < 0){
+			bx = -bx; by = -by; bz = -bz; bw = -bw;
+		}
+		lerp(a[ai], a[ai + 1], a[ai + 2], a[ai + 3], bx, by, bz, bw, blend, d, di);
+	}
+
+	private static void lerp(float ax, float ay, float az, float aw, 
+			float bx, float by, float bz, float bw, float blend, float[] d, int di){
+		float x = ax + blend * (bx - ax);
+		float y = ay + blend * (by - ay);
+		float z = az + blend * (bz - az);
+		float w = aw + blend * (bw - aw);
+		float s = 1.0f / (float)Math.sqrt(x * x + y * y + z * z + w * w);
+		d[di]     = x * s;
+		d[di + 1] = y * s;
+		d[di + 2] = z * s;
+		d[di + 3] = w * s;
+	}
+
 	/**
 	 * Returns the Euler angles inside a vector in degrees
 	 * 
@@ -375,17 +604,17 @@ public class Quaternionf {
 	    float unit = sqx + sqy + sqz + sqw; 
 	    float test = x()*y() + z()*w();
 		if (test > 0.499*unit) { // singularity at north pole
-			heading = 2.0f * (float)Math.atan2(x(),w());
+			heading = 2.0f * Calc.atan2(x(),w());
 			attitude = (float)Const.HALF_PI;
 			bank = 0;
 		}else if (test < -0.499*unit) { // singularity at south pole
-			heading = -2.0f * (float)Math.atan2(x(),w());
+			heading = -2.0f * Calc.atan2(x(),w());
 			attitude = -(float)Const.HALF_PI;
 			bank = 0;
 		}else{
-		    heading = (float)Math.atan2(2.0f*y()*w()-2.0f*x()*z() , sqx - sqy - sqz + sqw);
-			attitude = (float)Math.asin(2*test/unit);
-			bank = (float)Math.atan2(2.0*x()*w()-2.0*y()*z() , -sqx + sqy - sqz + sqw);
+		    heading = Calc.atan2(2.0f*y()*w()-2.0f*x()*z() , sqx - sqy - sqz + sqw);
+			attitude = Calc.asin(2*test/unit);
+			bank = (float)Calc.atan2(2.0*x()*w()-2.0*y()*z() , -sqx + sqy - sqz + sqw);
 		}
 		return new Vector3f(bank * (float)Const.RAD_TO_DEG, heading * (float)Const.RAD_TO_DEG, attitude * (float)Const.RAD_TO_DEG);
 	}
@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) 2013 maybites.ch
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal 
+ *  in the Software without restriction, including without limitation the rights 
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ *  copies of the Software, and to permit persons to whom the Software is furnished
+ *  to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ *  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ch.maybites.tools.math.la;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Stores many quaternions in one contiguous float array, each one laid out like the
+ * values of Quaternionf (x, y, z, w). 
+ * 
+ * Suited for skeletal or crowd animation, where the orientations of thousands of 
+ * joints are blended every frame. A whole animation can be held in one instance too: 
+ * N keyframes of M joints each, keyframe k starting at quaternion k * M. 
+ * 
+ * The batch operations can be spread over all the cores, see setParallelThreshold().
+ * 
+ * @author maybites
+ *
+ */
+public class QuaternionfArray {
+
+	private float[] q_;
+	private int size;
+	
+	/**
+	 * the number of quaternions from which on the batch operations run in parallel, 
+	 * 0 if they always run on the calling thread
+	 */
+	private int parallelThreshold = 0;
+	
+	/**
+	 * Create an array of identity quaternions
+	 * 
+	 * @param _size number of quaternions
+	 */
+	public QuaternionfArray(int _size){
+		size = _size;
+		q_ = new float[_size * 4];
+		setIdentity(0, _size);
+	}
+	
+	/**
+	 * Create an array on top of the specified values. The values are NOT copied.
+	 * 
+	 * @param _values the quaternions one after the other, the length must be a multiple of 4
+	 */
+	public QuaternionfArray(float[] _values){
+		if(_values.length % 4 != 0)
+			throw new IllegalArgumentException("the length of the values must be a multiple of 4: " + _values.length);
+		size = _values.length / 4;
+		q_ = _values;
+	}
+	
+	/**
+	 * Returns the number of quaternions
+	 * @return
+	 */
+	public int size(){
+		return size;
+	}
+	
+	/**
+	 * Returns the values of all the quaternions. 
+	 * 
+	 * VERY Careful: this is the internal array, the quaternion i starts at index i * 4.
+	 * 
+	 * @return
+	 */
+	public float[] get(){
+		return q_;
+	}
+	
+	/**
+	 * Copies the quaternion at the specified index into the destination
+	 * 
+	 * @param index index of the quaternion
+	 * @param dest the quaternion to store the values in
+	 * @return dest
+	 */
+	public Quaternionf get(int index, Quaternionf dest){
+		int i = index * 4;
+		dest.set(q_[i], q_[i + 1], q_[i + 2], q_[i + 3]);
+		return dest;
+	}
+	
+	/**
+	 * Sets the quaternion at the specified index
+	 * 
+	 * @param index index of the quaternion
+	 * @param quat the values to copy
+	 */
+	public void set(int index, Quaternionf quat){
+		System.arraycopy(quat.get(), 0, q_, index * 4, 4);
+	}
+	
+	/**
+	 * Sets a range of quaternions to the identity
+	 * 
+	 * @param from index of the first quaternion
+	 * @param count number of quaternions
+	 */
+	public void setIdentity(int from, int count){
+		for(int i = from * 4; i < (from + count) * 4; i += 4){
+			q_[i] = 0.0f;
+			q_[i + 1] = 0.0f;
+			q_[i + 2] = 0.0f;
+			q_[i + 3] = 1.0f;
+		}
+	}
+	
+	/**
+	 * Sets the number of quaternions from which on the batch operations are spread over all 
+	 * the cores. Ranges below it are processed by the calling thread.
+	 * 
+	 * Careful: the operands of a batch operation must not be modified until it returns.
+	 * 
+	 * @param threshold number of quaternions, 0 to always process on the calling thread
+	 */
+	public void setParallelThreshold(int threshold){
+		parallelThreshold = (threshold > 0)? threshold: 0;
+	}
+	
+	/**
+	 * Returns the number of quaternions from which on the batch operations run in parallel.
+	 * @return 0 if they always run on the calling thread
+	 */
+	public int getParallelThreshold(){
+		return parallelThreshold;
+	}
+	
+	/**
+	 * Normalizes each quaternion of the range
+	 * 
+	 * @param from index of the first quaternion
+	 * @param count number of quaternions
+	 */
+	public void normalize(int from, int count){
+		run(from, count, new Parallel.Range(){
+			public void run(int first, int end) {
+				for(int i = first * 4; i < end * 4; i += 4){
+					float s = 1.0f / (float)Math.sqrt(q_[i] * q_[i] + q_[i + 1] * q_[i + 1] + 
+							q_[i + 2] * q_[i + 2] + q_[i + 3] * q_[i + 3]);
+					q_[i] *= s;
+					q_[i + 1] *= s;
+					q_[i + 2] *= s;
+					q_[i + 3] *= s;
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Sets each quaternion of the range to the spherical interpolation between the 
+	 * quaternions at the same index of a and b: q[i] = slerp(a[i], b[i], blend). 
+	 * See Quaternionf.setSlerp()
+	 * 
+	 * @param a the rotations at blend 0, may be this instance
+	 * @param b the rotations at blend 1, may be this instance
+	 * @param blend
+	 * @param from index of the first quaternion
+	 * @param count number of quaternions
+	 */
+	public void slerp(QuaternionfArray a, QuaternionfArray b, final float blend, int from, int count){
+		Parallel.checkRange(from, count, a.size);
+		Parallel.checkRange(from, count, b.size);
+		final float[] aq = a.q_, bq = b.q_;
+		run(from, count, new Parallel.Range(){
+			public void run(int first, int end) {
+				for(int i = first * 4; i < end * 4; i += 4)
+					Quaternionf.slerp(aq, i, bq, i, blend, q_, i);
+			}
+		});
+	}
+	
+	/**
+	 * Sets each quaternion of the range to the normalized linear interpolation between 
+	 * the quaternions at the same index of a and b: q[i] = nlerp(a[i], b[i], blend). 
+	 * See Quaternionf.setNlerp()
+	 * 
+	 * @param a the rotations at blend 0, may be this instance
+	 * @param b the rotations at blend 1, may be this instance
+	 * @param blend
+	 * @param from index of the first quaternion
+	 * @param count number of quaternions
+	 */
+	public void nlerp(QuaternionfArray a, QuaternionfArray b, final float blend, int from, int count){
+		Parallel.checkRange(from, count, a.size);
+		Parallel.checkRange(from, count, b.size);
+		final float[] aq = a.q_, bq = b.q_;
+		run(from, count, new Parallel.Range(){
+			public void run(int first, int end) {
+				for(int i = first * 4; i < end * 4; i += 4)
+					Quaternionf.nlerp(aq, i, bq, i, blend, q_, i);
+			}
+		});
+	}
+	
+	/**
+	 * Samples an animation: sets each quaternion of the range to the spherical 
+	 * interpolation between the two keyframes around the position. The keyframes
+	 * hold one quaternion per quaternion of this array, keyframe k starting at 
+	 * the quaternion k * size().
+	 * 
+	 * @param keyframes the keyframes, at least two
+	 * @param position between 0 (the first keyframe) and the number of keyframes - 1 
+	 * 		(the last keyframe), it is clamped to this range
+	 * @param from index of the first quaternion
+	 * @param count number of quaternions
+	 */
+	public void interpolate(QuaternionfArray keyframes, float position, int from, int count){
+		int frames = keyframes.size / size;
+		if(frames < 2)
+			throw new IllegalArgumentException("the animation needs at least two keyframes of " + size + " quaternions");
+		position = Math.max(0.0f, Math.min(position, frames - 1));
+		int key = Math.min((int)position, frames - 2);
+		final float blend = position - key;
+		final int ka = key * size * 4;
+		final int kb = ka + size * 4;
+		final float[] kq = keyframes.q_;
+		run(from, count, new Parallel.Range(){
+			public void run(int first, int end) {
+				for(int i = first * 4; i < end * 4; i += 4)
+					Quaternionf.slerp(kq, ka + i, kq, kb + i, blend, q_, i);
+			}
+		});
+	}
+	
+	/**
+	 * Blends any number of poses with weights: sets each quaternion of the range to the 
+	 * normalized, weighted sum of the quaternions at the same index of the keyframes. 
+	 * Each quaternion is flipped onto the hemisphere of the first keyframe before it is 
+	 * added, like nlerp() does for two of them. The keyframes hold one quaternion per 
+	 * quaternion of this array, keyframe k starting at the quaternion k * size().
+	 * 
+	 * @param keyframes the poses to blend
+	 * @param weights the weight of each keyframe, the keyframes without a weight are ignored. 
+	 * 		The weights do not need to add up to 1.
+	 * @param from index of the first quaternion
+	 * @param count number of quaternions
+	 */
+	public void blend(QuaternionfArray keyframes, float[] weights, int from, int count){
+		final int frames = Math.min(weights.length, keyframes.size / size);
+		if(frames < 1)
+			throw new IllegalArgumentException("no keyframe of " + size + " quaternions to blend");
+		final float[] kq = keyframes.q_;
+		final float[] w = weights.clone();
+		final int stride = size * 4;
+		run(from, count, new Parallel.Range(){
+			public void run(int first, int end) {
+				for(int i = first * 4; i < end * 4; i += 4){
+					float rx = kq[i], ry = kq[i + 1], rz = kq[i + 2], rw = kq[i + 3];
+					float x = rx * w[0], y = ry * w[0], z = rz * w[0], qw = rw * w[0];
+					for(int k = 1, j = i + stride; k < frames; k++, j += stride){
+						float s = (rx * kq[j] + ry * kq[j + 1] + rz * kq[j + 2] + rw * kq[j + 3] < 0)? -w[k]: w[k];
+						x += kq[j] * s;
+						y += kq[j + 1] * s;
+						z += kq[j + 2] * s;
+						qw += kq[j + 3] * s;
+					}
+					float s = 1.0f / (float)Math.sqrt(x * x + y * y + z * z + qw * qw);
+					q_[i] = x * s;
+					q_[i + 1] = y * s;
+					q_[i + 2] = z * s;
+					q_[i + 3] = qw * s;
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Writes the values of a range of quaternions into the buffer, starting at the 
+	 * specified index. The position of the buffer is not changed. 
+	 * 
+	 * @param buffer Buffer with at least count * 4 elements left after index
+	 * @param index Index of the first element to write
+	 * @param from index of the first quaternion
+	 * @param count number of quaternions
+	 * @return buffer
+	 */
+	public FloatBuffer store(FloatBuffer buffer, int index, int from, int count){
+		FloatBuffer view = buffer.duplicate();
+		view.position(index);
+		view.put(q_, from * 4, count * 4);
+		return buffer;
+	}
+	
+	/**
+	 * Reads the values of a range of quaternions from the buffer, starting at the 
+	 * specified index. The position of the buffer is not changed. 
+	 * 
+	 * @param buffer Buffer with at least count * 4 elements left after index
+	 * @param index Index of the first element to read
+	 * @param from index of the first quaternion
+	 * @param count number of quaternions
+	 */
+	public void load(FloatBuffer buffer, int index, int from, int count){
+		FloatBuffer view = buffer.duplicate();
+		view.position(index);
+		view.get(q_, from * 4, count * 4);
+	}
+	
+	/**
+	 * Runs the range of quaternions on the calling thread or in parallel
+	 */
+	private void run(int from, int count, Parallel.Range range){
+		Parallel.run(from, count, size, parallelThreshold, 4, range);
+	}
+}
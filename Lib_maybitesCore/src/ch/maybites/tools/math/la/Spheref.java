@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2013 maybites.ch
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal 
+ *  in the Software without restriction, including without limitation the rights 
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ *  copies of the Software, and to permit persons to whom the Software is furnished
+ *  to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ *  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package ch.maybites.tools.math.la;
+
+/**
+ * Bounding sphere, defined by its center and radius.
+ * 
+ * @author maybites
+ *
+ */
+public class Spheref {
+
+	private Vector3f center;
+	
+	private float radius;
+
+	/**
+	 * Creates a sphere in the origin with radius 0
+	 */
+	public Spheref() {
+		center = new Vector3f();
+	}
+
+	/**
+	 * Creates a sphere with the specified center and radius
+	 * 
+	 * @param	theCenter
+	 * @param	theRadius
+	 */
+	public Spheref(Vector3f theCenter, float theRadius) {
+		center = new Vector3f(theCenter);
+		radius = theRadius;
+	}
+
+	/**
+	 * Creates the sphere around the box
+	 * 
+	 * @param	box
+	 */
+	public Spheref(AABBf box) {
+		center = new Vector3f();
+		set(box);
+	}
+
+	/**
+	 * sets the center and radius of this sphere
+	 * 
+	 * @param	theCenter
+	 * @param	theRadius
+	 */
+	public void set(Vector3f theCenter, float theRadius) {
+		center.set(theCenter);
+		radius = theRadius;
+	}
+
+	/**
+	 * sets this sphere around the box
+	 * 
+	 * @param	box
+	 */
+	public void set(AABBf box) {
+		box.getCenter(center);
+		radius = box.getMax().distance(center);
+	}
+
+	/**
+	 * returns the center
+	 * 
+	 * @return	the internal vector
+	 */
+	public Vector3f getCenter() {
+		return center;
+	}
+
+	public float getRadius() {
+		return radius;
+	}
+
+	public void setRadius(float theRadius) {
+		radius = theRadius;
+	}
+
+	/**
+	 * checks if the point lies inside this sphere or on its surface
+	 * 
+	 * @param	point
+	 * @return	true if it is contained
+	 */
+	public boolean contains(Vector3f point) {
+		return (point.distanceSquared(center) <= radius * radius)? true: false;
+	}
+
+	/**
+	 * checks if the specified sphere overlaps this sphere
+	 * 
+	 * @param	sphere
+	 * @return	true if they overlap
+	 */
+	public boolean intersects(Spheref sphere) {
+		float r = radius + sphere.radius;
+		return (sphere.center.distanceSquared(center) <= r * r)? true: false;
+	}
+
+	/**
+	 * Stores this sphere transformed by the matrix in dest. The radius is scaled by 
+	 * the largest scale factor of the matrix, so the result contains the transformed 
+	 * sphere.
+	 * 
+	 * This method will only give correct results if the matrix is a
+	 * classical transformation matrix (ie. scale, rotate, translate or
+	 * a combination of the three)
+	 * 
+	 * @param	matrix
+	 * @param	dest	may be this instance
+	 * @return	dest
+	 */
+	public Spheref transform(Matrix4x4f matrix, Spheref dest) {
+		float scale2 = 0;
+		for (int i = 0; i < 3; i++) {
+			float x = matrix.getElement(i, 0), y = matrix.getElement(i, 1), z = matrix.getElement(i, 2);
+			scale2 = Math.max(scale2, x * x + y * y + z * z);
+		}
+		float cx = center.x(), cy = center.y(), cz = center.z();
+		dest.center.set(
+				cx * matrix.getElement(0, 0) + cy * matrix.getElement(1, 0) + cz * matrix.getElement(2, 0) + matrix.getElement(3, 0),
+				cx * matrix.getElement(0, 1) + cy * matrix.getElement(1, 1) + cz * matrix.getElement(2, 1) + matrix.getElement(3, 1),
+				cx * matrix.getElement(0, 2) + cy * matrix.getElement(1, 2) + cz * matrix.getElement(2, 2) + matrix.getElement(3, 2));
+		dest.radius = radius * (float)Math.sqrt(scale2);
+		return dest;
+	}
+
+	public String toString() {
+		return "Spheref: center " + center + " / radius " + radius;
+	}
+
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2013 maybites.ch
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal 
+ *  in the Software without restriction, including without limitation the rights 
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ *  copies of the Software, and to permit persons to whom the Software is furnished
+ *  to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ *  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ch.maybites.tools.math.la;
+
+/**
+ * Stores many bounding spheres in separate arrays for the x, y and z coordinates of 
+ * the centers and for the radii (structure of arrays). 
+ * 
+ * Suited for frustum culling of thousands of nodes per frame: the culling loops run 
+ * over the coordinates without chasing a pointer for every sphere. Each sphere 
+ * remembers the plane that rejected it the last time and tests it first, so a 
+ * sphere that stays outside is usually rejected by a single plane.
+ * 
+ * The culling can be spread over all the cores, see setParallelThreshold().
+ * 
+ * @author maybites
+ *
+ */
+public class SpherefArray {
+
+	private float[] x_;
+	private float[] y_;
+	private float[] z_;
+	private float[] r_;
+	
+	/**
+	 * the plane that rejected each sphere the last time
+	 */
+	private byte[] plane_;
+	
+	private int size;
+	
+	/**
+	 * the number of spheres from which on the culling runs in parallel, 
+	 * 0 if it always runs on the calling thread
+	 */
+	private int parallelThreshold = 0;
+	
+	/**
+	 * Create an array of spheres in the origin with radius 0
+	 * 
+	 * @param _size number of spheres
+	 */
+	public SpherefArray(int _size){
+		size = _size;
+		x_ = new float[_size];
+		y_ = new float[_size];
+		z_ = new float[_size];
+		r_ = new float[_size];
+		plane_ = new byte[_size];
+	}
+	
+	/**
+	 * Returns the number of spheres
+	 * @return
+	 */
+	public int size(){
+		return size;
+	}
+	
+	/**
+	 * Returns the x coordinates of the centers. 
+	 * 
+	 * VERY Careful: this is the internal array, the same goes for getY(), getZ() and getRadius().
+	 * 
+	 * @return
+	 */
+	public float[] getX(){
+		return x_;
+	}
+	
+	public float[] getY(){
+		return y_;
+	}
+	
+	public float[] getZ(){
+		return z_;
+	}
+	
+	public float[] getRadius(){
+		return r_;
+	}
+	
+	/**
+	 * Copies the sphere at the specified index into the destination
+	 * 
+	 * @param index index of the sphere
+	 * @param dest the sphere to store the values in
+	 * @return dest
+	 */
+	public Spheref get(int index, Spheref dest){
+		dest.getCenter().set(x_[index], y_[index], z_[index]);
+		dest.setRadius(r_[index]);
+		return dest;
+	}
+	
+	/**
+	 * Sets the sphere at the specified index
+	 * 
+	 * @param index index of the sphere
+	 * @param sphere the sphere to copy
+	 */
+	public void set(int index, Spheref sphere){
+		Vector3f c = sphere.getCenter();
+		set(index, c.x(), c.y(), c.z(), sphere.getRadius());
+	}
+	
+	/**
+	 * Sets the sphere at the specified index
+	 * 
+	 * @param index index of the sphere
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @param radius
+	 */
+	public void set(int index, float x, float y, float z, float radius){
+		x_[index] = x;
+		y_[index] = y;
+		z_[index] = z;
+		r_[index] = radius;
+	}
+	
+	/**
+	 * Sets the number of spheres from which on the culling is spread over all 
+	 * the cores. Ranges below it are processed by the calling thread.
+	 * 
+	 * Careful: the operands of the culling must not be modified until it returns.
+	 * 
+	 * @param threshold number of spheres, 0 to always process on the calling thread
+	 */
+	public void setParallelThreshold(int threshold){
+		parallelThreshold = (threshold > 0)? threshold: 0;
+	}
+	
+	/**
+	 * Returns the number of spheres from which on the culling runs in parallel.
+	 * @return 0 if it always runs on the calling thread
+	 */
+	public int getParallelThreshold(){
+		return parallelThreshold;
+	}
+	
+	/**
+	 * Tests each sphere of the range against the frustum.
+	 * 
+	 * @param frustum the planes to test against
+	 * @param dest the result for the sphere from + k at index k: FrustumPlanes.OUTSIDE, 
+	 * 		INTERSECTING or INSIDE. At least count elements.
+	 * @param from index of the first sphere
+	 * @param count number of spheres
+	 */
+	public void cull(FrustumPlanes frustum, final byte[] dest, final int from, int count){
+		final float[] planes = frustum.p_;
+		run(from, count, new Parallel.Range(){
+			public void run(int first, int end) {
+				for(int i = first; i < end; i++)
+					dest[i - from] = FrustumPlanes.testSphere(planes, x_[i], y_[i], z_[i], r_[i], plane_, i);
+			}
+		});
+	}
+	
+	/**
+	 * Tests each sphere of the range against the frustum and collects the visible ones. 
+	 * It always runs on the calling thread.
+	 * 
+	 * @param frustum the planes to test against
+	 * @param visible the indices of the spheres that are not outside, at least count elements
+	 * @param from index of the first sphere
+	 * @param count number of spheres
+	 * @return the number of visible spheres
+	 */
+	public int cull(FrustumPlanes frustum, int[] visible, int from, int count){
+		Parallel.checkRange(from, count, size);
+		float[] planes = frustum.p_;
+		int n = 0;
+		for(int i = from; i < from + count; i++){
+			if(FrustumPlanes.testSphere(planes, x_[i], y_[i], z_[i], r_[i], plane_, i) != FrustumPlanes.OUTSIDE)
+				visible[n++] = i;
+		}
+		return n;
+	}
+	
+	/**
+	 * Runs the range of spheres on the calling thread or in parallel
+	 */
+	private void run(int from, int count, Parallel.Range range){
+		Parallel.run(from, count, size, parallelThreshold, 64, range);
+	}
+}
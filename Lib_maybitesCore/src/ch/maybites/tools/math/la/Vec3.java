@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2013 maybites.ch
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal 
+ *  in the Software without restriction, including without limitation the rights 
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ *  copies of the Software, and to permit persons to whom the Software is furnished
+ *  to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ *  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ch.maybites.tools.math.la;
+
+/**
+ * Immutable 3-element vector. Every operation returns a new instance and no 
+ * instance is ever modified, so short lived intermediate results of chained 
+ * expressions like a.add(b).scale(2).dot(c) do not escape and can be removed 
+ * by the escape analysis of the JIT.
+ * 
+ * Unlike Vector3f it has no identity: equals() and hashCode() compare the 
+ * values, which makes it ready to become a value class.
+ * 
+ * @author maybites
+ *
+ */
+public final class Vec3 {
+
+	public static final Vec3 ZERO = new Vec3(0, 0, 0);
+	public static final Vec3 X_AXIS = new Vec3(1, 0, 0);
+	public static final Vec3 Y_AXIS = new Vec3(0, 1, 0);
+	public static final Vec3 Z_AXIS = new Vec3(0, 0, 1);
+
+	public final float x;
+	public final float y;
+	public final float z;
+
+	public Vec3(float _x, float _y, float _z){
+		x = _x;
+		y = _y;
+		z = _z;
+	}
+
+	/**
+	 * Creates a vector with the values of the mutable vector
+	 * @param vector
+	 * @return new instance
+	 */
+	public static Vec3 of(Vector3f vector){
+		return new Vec3(vector.x(), vector.y(), vector.z());
+	}
+
+	/**
+	 * Stores the values of this vector in the mutable vector
+	 * @param dest
+	 * @return dest
+	 */
+	public Vector3f get(Vector3f dest){
+		dest.set(x, y, z);
+		return dest;
+	}
+
+	public Vec3 add(Vec3 v){
+		return new Vec3(x + v.x, y + v.y, z + v.z);
+	}
+
+	public Vec3 sub(Vec3 v){
+		return new Vec3(x - v.x, y - v.y, z - v.z);
+	}
+
+	public Vec3 scale(float s){
+		return new Vec3(x * s, y * s, z * s);
+	}
+
+	/**
+	 * Scales each coordinate with the related coordinate of the specified vector
+	 * @param v
+	 * @return new instance
+	 */
+	public Vec3 scale(Vec3 v){
+		return new Vec3(x * v.x, y * v.y, z * v.z);
+	}
+
+	public Vec3 negate(){
+		return new Vec3(-x, -y, -z);
+	}
+
+	public float dot(Vec3 v){
+		return x * v.x + y * v.y + z * v.z;
+	}
+
+	public Vec3 cross(Vec3 v){
+		return new Vec3(y * v.z - z * v.y, 
+				z * v.x - x * v.z, 
+				x * v.y - y * v.x);
+	}
+
+	public float lengthSquared(){
+		return x * x + y * y + z * z;
+	}
+
+	public float length(){
+		return (float)Math.sqrt(lengthSquared());
+	}
+
+	public float distance(Vec3 v){
+		return sub(v).length();
+	}
+
+	/**
+	 * Returns a vector with the same direction and the length of 1
+	 * @return new instance
+	 */
+	public Vec3 normalize(){
+		return scale(1.0f / length());
+	}
+
+	/**
+	 * Interpolates between this vector and the specified vector. 
+	 * @param v other vector
+	 * @param blend 0 returns this vector, 1 the other
+	 * @return new instance
+	 */
+	public Vec3 lerp(Vec3 v, float blend){
+		return new Vec3(x + blend * (v.x - x), 
+				y + blend * (v.y - y), 
+				z + blend * (v.z - z));
+	}
+
+	/**
+	 * Transforms this point with the matrix, including the division by w. 
+	 * See Matrix4x4f.multiply(Vector3f)
+	 * @param matrix
+	 * @return new instance
+	 */
+	public Vec3 transform(Matrix4x4f matrix){
+		float d = 1.0f / (x * matrix.getElement(0, 3) + y * matrix.getElement(1, 3) + 
+				z * matrix.getElement(2, 3) + matrix.getElement(3, 3));
+		return new Vec3(
+				(x * matrix.getElement(0, 0) + y * matrix.getElement(1, 0) + 
+						z * matrix.getElement(2, 0) + matrix.getElement(3, 0)) * d,
+				(x * matrix.getElement(0, 1) + y * matrix.getElement(1, 1) + 
+						z * matrix.getElement(2, 1) + matrix.getElement(3, 1)) * d,
+				(x * matrix.getElement(0, 2) + y * matrix.getElement(1, 2) + 
+						z * matrix.getElement(2, 2) + matrix.getElement(3, 2)) * d);
+	}
+
+	/**
+	 * Rotates this vector with the normalized quaternion
+	 * @param rotation
+	 * @return new instance
+	 */
+	public Vec3 rotate(Quat rotation){
+		return rotation.rotate(this);
+	}
+
+	public boolean equals(Object object){
+		if(!(object instanceof Vec3))
+			return false;
+		Vec3 v = (Vec3)object;
+		return Float.compare(x, v.x) == 0 && Float.compare(y, v.y) == 0 && Float.compare(z, v.z) == 0;
+	}
+
+	public int hashCode(){
+		return (Float.floatToIntBits(x) * 31 + Float.floatToIntBits(y)) * 31 + Float.floatToIntBits(z);
+	}
+
+	public String toString(){
+		return "Vec3: [" + x + "," + y + "," + z + "]";
+	}
+}
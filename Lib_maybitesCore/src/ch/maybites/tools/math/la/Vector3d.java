@@ -0,0 +1,856 @@
+/*
+ * Copyright (c) 2013 maybites.ch
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal 
+ *  in the Software without restriction, including without limitation the rights 
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ *  copies of the Software, and to permit persons to whom the Software is furnished
+ *  to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ *  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ch.maybites.tools.math.la;
+
+import java.io.Serializable;
+import java.nio.DoubleBuffer;
+import java.util.Random;
+
+/**
+ * Implementation of a 3-element Vector suited for use with
+ * Matrix4x4
+ */   
+public class Vector3d
+{
+	
+	  protected double[] v_;
+
+	  /**
+	   * threshold to maintain the minimal difference between two vectors before
+	   * they are almost the same
+	   */
+	  protected static final double ALMOST_THRESHOLD = 0.001;
+
+	  /**
+	   * Utility for random
+	   */
+	  protected static final Random generator = new Random();
+
+	  protected void initialize()
+	  {
+	    v_ = new double[3];
+	    for (int i = 0; i < 3; i++)
+	      v_[i] = 0.0;
+	  }
+
+	/**
+	 * Create a default 3-element vector (all elements set to 0.0).
+	 */
+	public Vector3d()
+	{
+		initialize();
+	}
+
+	/**
+	 * Create a 3-element vector with the specified values.
+	 * 
+	 * @param v1  1st element.
+	 * @param v2  2nd element.
+	 * @param v3  3rd element.
+	 */
+	public Vector3d (double v1, double v2, double v3)
+	{
+	    initialize();
+	    set (v1, v2, v3);
+	}
+
+	/**
+	 * Create a 3-element vector with the specified values.
+	 * 
+	 * @param args  3 element double array.
+	 */
+	public Vector3d (double[] args)
+	{
+	    initialize();
+	    set (args[0], args[1], args[2]);
+	}
+
+	/**
+	 * Construct a 3-element vector as a copy of the specified Vector.
+	 * 
+	 * @param vector
+	 */
+	public Vector3d (Vector3d vector)
+	{
+	    initialize();
+		set(vector);
+	}
+	
+	/**
+	 * Construct a 3-element vector as a copy of the specified float Vector.
+	 * 
+	 * @param vector
+	 */
+	public Vector3d (Vector3f vector)
+	{
+	    initialize();
+		set(vector);
+	}
+	
+	/**
+	 * Construct a 3-element vector from the specified 4-element Vector. It disregards
+	 * the w-value
+	 * 
+	 * @param vector
+	 */
+	public Vector3d (Vector4d vector)
+	{
+	    initialize();
+		set(vector.x(), vector.y(),vector.z());
+	}
+	
+
+	 /**
+	   * Set the elements of this vector.
+	   * 
+	   * @param v1  1st element.
+	   * @param v2  2nd element.
+	   * @param v3  3rd element.
+	   */
+	  public void set (double v1, double v2, double v3)
+	  {
+	    v_[0] = v1;
+	    v_[1] = v2;
+	    v_[2] = v3;
+	  }
+
+
+	/**
+	 * Set the elements of this vector according to the specified vector.
+	 * 
+	 * @param vector  Vector to copy.
+	 */
+	public void set (Vector3d vector)
+	{
+		for (int i = 0; i < 3; i++)
+			v_[i] = vector.v_[i];
+	}
+
+	/**
+	 * Set the elements of this vector according to the specified float vector.
+	 * 
+	 * @param vector  Vector to copy.
+	 */
+	public void set (Vector3f vector)
+	{
+		v_[0] = vector.x();
+		v_[1] = vector.y();
+		v_[2] = vector.z();
+	}
+
+
+	  /**
+	   * Return the i'th element of this Vector.
+	   * 
+	   * @param i  Index of element to get (first is 0).
+	   * @return   i'th element of this point.
+	   */
+	  public double getElement (int i)
+	  {
+	    return v_[i];
+	  }
+
+	  /**
+	   * Set the i'th element of this vector.
+	   * 
+	   * @param i  		Index of element to set (first is 0).
+	   * @param value   Value to set.
+	   */
+	  public void setElement (int i, double value)
+	  {
+	    v_[i] = value;
+	  }
+	  
+	  public final double x(){
+		  return v_[0];
+	  }
+	  
+	  public final double y(){
+		  return v_[1];
+	  }
+	 
+	  public final double z(){
+		  return v_[2];
+	  }
+	  
+	  public final void setX(double x){
+		  v_[0] = x;
+	  }
+	  
+	  public final void setY(double y){
+		  v_[1] = y;
+	  }
+	 
+	  public final void setZ(double z){
+		  v_[2] = z;
+	  }
+
+	  public final double[] get() {
+	      return v_;
+	  }
+
+	  /**
+	   * Writes x, y, z into the buffer, starting at the specified index. 
+	   * The position of the buffer is not changed.
+	   * 
+	   * @param buffer  Buffer with at least 3 elements left after index
+	   * @param index   Index of the first element to write
+	   * @return        buffer
+	   */
+	  public final DoubleBuffer store(DoubleBuffer buffer, int index) {
+		  buffer.put(index, v_[0]);
+		  buffer.put(index + 1, v_[1]);
+		  buffer.put(index + 2, v_[2]);
+		  return buffer;
+	  }
+
+	  /**
+	   * Reads x, y, z from the buffer, starting at the specified index. 
+	   * The position of the buffer is not changed.
+	   * 
+	   * @param buffer  Buffer with at least 3 elements left after index
+	   * @param index   Index of the first element to read
+	   */
+	  public final void load(DoubleBuffer buffer, int index) {
+		  v_[0] = buffer.get(index);
+		  v_[1] = buffer.get(index + 1);
+		  v_[2] = buffer.get(index + 2);
+	  }
+
+	  public final boolean isNaN() {
+	      if (Double.isNaN(v_[0]) || Double.isNaN(v_[1]) || Double.isNaN(v_[2])) {
+	          return true;
+	      } else {
+	          return false;
+	      }
+	  }
+
+
+	/**
+	 * Returns a new Vector with the result of the addition of the 
+	 * specified Vectors with this Vector. This instance will NOT be
+	 * modified
+	 * 
+	 * Usage: Vector3d newVec = thisVector.add(otherVector)
+	 * 
+	 * @param theVector	the Vector to be added
+	 * @return the addition
+	 */
+	public final Vector3d addMake(Vector3d theVector) {
+		return clone().add(theVector);
+	}
+	
+	/**
+	 * Adds the specified Vector to this instance and returns it. This method modifies this instance.
+	 * 
+	 * @param theVector	the Vector to be added
+	 * @return the addition
+	 */
+	public final Vector3d add(Vector3d theVector) {
+		setAdd(this, theVector);
+		return this;
+	}
+
+	/**
+	 * Replace this Vector with the result of the addition of the two 
+	 * specified Vectors. This method modifies this instance.
+	 * 
+	 * Usage 1: add the otherVector from thisVector and apply the result to thisVector:
+	 * 	thisVector.sub(thisVector, otherVector);
+	 * 
+	 * Usage 2: add the otherVector from firstVector and apply the result to thisVector:
+	 * 	thisVector.sub(firstVector, otherVector);
+	 * 
+	 * @param theVectorA	of class Vector3d
+	 * @param theVectorB	of class Vector3d
+	 */
+	public final void setAdd(Vector3d theVectorA, Vector3d theVectorB) {
+		v_[0] = theVectorA.v_[0] + theVectorB.v_[0];
+		v_[1] = theVectorA.v_[1] + theVectorB.v_[1];
+		v_[2] = theVectorA.v_[2] + theVectorB.v_[2];
+	}
+
+	/**
+	 * Replace this Vector with the result of the subtraction of the two 
+	 * specified Vectors). This method modifies this instance.
+	 * 
+	 * Usage 1: substract the otherVector from thisVector and apply the result to thisVector:
+	 * 	thisVector.sub(thisVector, otherVector);
+	 * 
+	 * Usage 2: substract the otherVector from firstVector and apply the result to thisVector:
+	 * 	thisVector.sub(firstVector, otherVector);
+	 * 
+	 * @param theVectorA	of class Vector3d
+	 * @param theVectorB	of class Vector3d
+	 */
+	public final void setSub(Vector3d theVectorA, Vector3d theVectorB) {
+		v_[0] = theVectorA.v_[0] - theVectorB.v_[0];
+		v_[1] = theVectorA.v_[1] - theVectorB.v_[1];
+		v_[2] = theVectorA.v_[2] - theVectorB.v_[2];
+	}
+
+	
+	/**
+	 * Substract the specified vector from this instance and return it. This method modifies this instance.
+	 *  
+	 * @param theVectorA	of class Vector3d
+	 * @return this instance
+	 */
+	public final Vector3d sub(Vector3d theVectorA) {
+		v_[0] -= theVectorA.v_[0];
+		v_[1] -= theVectorA.v_[1];
+		v_[2] -= theVectorA.v_[2];
+		return this;
+	}
+
+	/**
+	 * Returns a new Vector with the result of the subtraction of the 
+	 * specified Vectors from this Vector. This instance will NOT be
+	 * modified
+	 * 
+	 * Usage: Vector3d newVec = thisVector.sub(otherVector)
+	 * 
+	 * @param theVector	the Vector to be substracted
+	 * @return the subtraction
+	 */
+	public final Vector3d subMake(Vector3d theVector) {
+		return clone().sub(theVector);
+	}
+	
+
+	/**
+	 * Use this method to negate a vector. The result of the negation is vector
+	 * with the same magnitude but opposite direction. Mathematically the
+	 * negation is the additive inverse of the vector. The sum of a value and
+	 * its additive inerse is always zero.
+	 *
+	 * @related scale ( )
+	 */
+	public final void negate() {
+		scale( -1);
+	}
+
+
+
+	/**
+	 *
+	 * @param theVector
+	 *            Vector3d: vector with the value each coord is scaled with
+	 * @return this instance
+	 */
+	public final Vector3d scale(final Vector3d theVector) {
+		scale(theVector.v_[0], theVector.v_[1], theVector.v_[2]);
+		return this;
+	}
+
+
+	/**
+	 *	Scales this instance with the specified values
+	 *
+	 * @param theX double
+	 * @param theY double
+	 * @param theZ double
+	 * @return this instance
+	 */
+	public final Vector3d scale(double theX, double theY, double theZ) {
+		v_[0] *= theX;
+		v_[1] *= theY;
+		v_[2] *= theZ;
+		return this;
+	}
+	
+	/**
+	 * Use this method to scale a vector. To scale a vector each of its
+	 * coordinates is multiplied with the given scalar. The result is a vector
+	 * that is parallel with its origin, with a different length and possibly
+	 * opposite direction.<br>
+	 * You can also scale a vector with another vector, in this case each coord
+	 * of the vector is multiplied with related coord of the given vector.<br>
+	 * Another possibillity is to set and scale the vector, this means the
+	 * vector is set to the given vector multiplied with the given scalar.
+	 *
+	 * @param scalar double
+	 * @return this instance
+	 */
+	public final Vector3d scale(double scalar) {
+		scale(scalar, scalar, scalar);
+		return this;
+	}
+
+	/**
+	 *	Scales this instance with the scalar and returns a new Vector.
+	 *  This method does NOT modify this instance 
+	 *
+	 * @param scalar double
+	 * @return a new instance
+	 */
+	public final Vector3d scaleMake(double scalar) {
+		return clone().scale(scalar);
+	}
+
+	/**
+	 *	Scales this instance with the specified values and returns a new Vector.
+	 *  This method does NOT modify this instance 
+	 *
+	 * @param theX double
+	 * @param theY double
+	 * @param theZ double
+	 * @return a new instance
+	 */
+	public final Vector3d scaleMake(double theX, double theY, double theZ) {
+		return clone().scale(theX, theY, theZ);
+	}
+
+	/**
+	 * @param theScalar
+	 *            double or int: value the given vector is scaled with
+	 * @param theVector
+	 *            Vector3d: vector the vector is set to
+	 * @return this instance
+	 */
+	public final Vector3d scale(final double theScalar, final Vector3d theVector) {
+		v_[0] = theScalar * theVector.v_[0];
+		v_[1] = theScalar * theVector.v_[1];
+		v_[2] = theScalar * theVector.v_[2];
+		return this;
+	}
+
+	/**
+	 * Dividing is the the same as scaling
+	 *
+	 * @param theDivisor
+	 * @return this instance
+	 */
+	public final Vector3d divide(final double theDivisor) {
+		scale(1.0 / theDivisor);
+		return this;
+	}
+
+	/**
+	 * Dividing is the the same as scaling
+	 *
+	 * @param theDivisor
+	 * @return this instance
+	 */
+	public final Vector3d divide(final Vector3d theVector) {
+		v_[0] /= theVector.v_[0];
+		v_[1] /= theVector.v_[1];
+		v_[2] /= theVector.v_[2];
+		return this;
+	}
+
+	public final double lengthSquared() {
+		return v_[0] * v_[0] + v_[1] * v_[1] + v_[2] * v_[2];
+	}
+
+	/**
+	 * Use this method to calculate the length of a vector, the length of a
+	 * vector is also known as its magnitude. Vectors have a magnitude and a
+	 * direction. These values are not explicitly expressed in the vector so
+	 * they have to be computed.
+	 *
+	 * @return double: the length of the vector
+	 */
+	public final double length() {
+		return Math.sqrt(lengthSquared());
+	}
+
+	/**
+	 * See length()
+	 *
+	 * @return double: the length of the vector
+	 */
+	public final double magnitude() {
+		return length();
+	}
+
+	/**
+	 * Replace this Vector with the result of the crossproduct of the two 
+	 * specified Vectors. This method modifies this instance.
+	 * 
+	 * Usage 1: cross the otherVector with thisVector and apply the result to thisVector:
+	 * 	thisVector.cross(thisVector, otherVector);
+	 * 
+	 * Usage 2: cross the otherVector with firstVector and apply the result to thisVector:
+	 * 	thisVector.cross(firstVector, otherVector);
+	 * 
+	 * @param theVectorA
+	 * @param theVectorB
+	 */
+	public final void setCross(final Vector3d theVectorA, final Vector3d theVectorB) {
+		set(theVectorA.v_[1] * theVectorB.v_[2] - theVectorA.v_[2] * theVectorB.v_[1],
+			theVectorA.v_[2] * theVectorB.v_[0] - theVectorA.v_[0] * theVectorB.v_[2],
+			theVectorA.v_[0] * theVectorB.v_[1] - theVectorA.v_[1] * theVectorB.v_[0]);
+	}
+	
+
+	/**
+	 * This vector will be crossed with the specified vector and the result will be
+	 * stored in this instance. The cross product returns a
+	 * vector standing vertical on the two vectors. 
+	 * 
+	 * @param theVector	the other vector
+	 * @return this modified instance
+	 */
+	public Vector3d cross(final Vector3d theVector) {
+		setCross(clone(), theVector);
+		return this;
+	}
+
+	/**
+	 * Returns the cross product of this instance and the 
+	 * specified vector. The cross product returns a
+	 * vector standing vertical on the two vectors. This instance will NOT be
+	 * modified
+	 * 
+	 * @param theVector	the other vector
+	 * @return the cross product
+	 */
+	public Vector3d crossMake(final Vector3d theVector) {
+		return clone().cross(theVector);
+	}
+
+	/**
+	 * Returns the cosine of the angle between two vectors. 
+	 *
+	 * @param theVector	the other vector
+	 * @return double	cosine of two vectors
+	 */
+	public final double angle(Vector3d theVector) {
+		return this.dot(theVector) / (magnitude() * theVector.magnitude());
+	}
+
+	/**
+	 * Returns the dot product of two vectors. The dot product is the cosinus of
+	 * the angle between two vectors
+	 *
+	 * @param theVector	 the other vector
+	 * @return double dot product of two vectors
+	 */
+	public final double dot(Vector3d theVector) {
+		return v_[0] * theVector.v_[0] + v_[1] * theVector.v_[1] + v_[2] * theVector.v_[2];
+	}
+
+	/**
+	 * Returns the, by the provided matrix, transformed instance of this vector.
+	 * @param matrix
+	 * @return transformed instance
+	 */
+	public Vector3d transform(Matrix4x4d matrix){
+		return matrix.multiply(this);
+	}
+
+	/**
+	 * Returns the, by the provided matrix, transformed clone of this vector. This
+	 * instance stays unchanged
+	 * @param matrix
+	 * @return cloned and transformed vector of this instance
+	 */
+	public Vector3d transformMake(Matrix4x4d matrix){
+		return matrix.multiply(this.clone());
+	}
+
+	/**
+	 * Sets the vector to the given one and norms it to the length of 1
+	 *
+	 * @param theVector
+	 * @return normalized vector
+	 */
+	public final Vector3d normalize(Vector3d theVector) {
+		set(theVector);
+		normalize();
+		return this;
+	}
+
+	/**
+	 * Norms the vector to the length of 1 and returns this instance
+	 * @return normalized vector
+	 */
+	public final Vector3d normalize() {
+		double inverseMag = 1.0 / magnitude();
+		v_[0] *= inverseMag;
+		v_[1] *= inverseMag;
+		v_[2] *= inverseMag;
+		return this;
+	}
+
+	/**
+	 * Returns a normalized copy of this vector
+	 * @return normalized vector
+	 */
+	public final Vector3d normalizeMake() {
+		return clone().normalize();
+	}
+
+
+	/**
+	 * Interpolates between this vector and the given vector by a given blend
+	 * value. The blend value has to be between 0 and 1. A blend value 0 would
+	 * change nothing, a blend value 1 would set this vector to the given one.
+	 *
+	 * @param blend double, blend value for interpolation
+	 * @param i_vector Vector3d, other vector for interpolation
+	 */
+	public void interpolate(final double blend, final Vector3d i_vector) {
+		v_[0] = v_[0] + blend * (i_vector.v_[0] - v_[0]);
+		v_[1] = v_[1] + blend * (i_vector.v_[1] - v_[1]);
+		v_[2] = v_[2] + blend * (i_vector.v_[2] - v_[2]);
+	}
+
+
+	/**
+	 * Sets a position randomly distributed inside a sphere of unit radius
+	 * centered at the origin. Orientation will be random and length will range
+	 * between 0 and 1
+	 */
+	public void randomize() {
+		v_[0] = generator.nextDouble() * 2.0 - 1.0;
+		v_[1] = generator.nextDouble() * 2.0 - 1.0;
+		v_[2] = generator.nextDouble() * 2.0 - 1.0;
+		normalize();
+	}
+
+	/**
+	 * Returns the squared distance of the specified vector to this vector
+	 * @param theVector
+	 * @return the squared distance
+	 */
+	public final double distanceSquared(Vector3d theVector) {
+		double dx = v_[0] - theVector.v_[0];
+		double dy = v_[1] - theVector.v_[1];
+		double dz = v_[2] - theVector.v_[2];
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	/**
+	 * Returns the distance of the specified vector to this vector
+	 * @param theVector
+	 * @return the distance
+	 */
+	public final double distance(Vector3d theVector) {
+		return Math.sqrt(distanceSquared(theVector));
+	}
+
+	public final void min(Vector3d theMin) {
+		if (v_[0] < theMin.v_[0]) {
+			v_[0] = theMin.v_[0];
+		}
+		if (v_[1] < theMin.v_[1]) {
+			v_[1] = theMin.v_[1];
+		}
+		if (v_[2] < theMin.v_[2]) {
+			v_[2] = theMin.v_[2];
+		}
+	}
+
+	public final void min(double theX, double theY, double theZ) {
+		if (v_[0] < theX) {
+			v_[0] = theX;
+		}
+		if (v_[1] < theY) {
+			v_[1] = theY;
+		}
+		if (v_[2] < theZ) {
+			v_[2] = theZ;
+		}
+	}
+
+	public final void max(Vector3d theMax) {
+		if (v_[0] > theMax.v_[0]) {
+			v_[0] = theMax.v_[0];
+		}
+		if (v_[1] > theMax.v_[1]) {
+			v_[1] = theMax.v_[1];
+		}
+		if (v_[2] > theMax.v_[2]) {
+			v_[2] = theMax.v_[2];
+		}
+	}
+
+	public final void max(double theX, double theY, double theZ) {
+		if (v_[0] > theX) {
+			v_[0] = theX;
+		}
+		if (v_[1] > theY) {
+			v_[1] = theY;
+		}
+		if (v_[2] > theZ) {
+			v_[2] = theZ;
+		}
+	}
+
+	public final boolean equals(final Vector3d theVector) {
+		if (v_[0] == theVector.v_[0] && v_[1] == theVector.v_[1] && v_[2] == theVector.v_[2]) {
+			return true;
+		} else {
+			return false;
+		}
+	}
+
+	/**
+	 * Check if this 3-element vector equals the specified object.
+	 * 
+	 * @return  TRue if the two equals, false otherwise.
+	 */
+	 public final boolean equals(final Object theVector) {
+		 if (! (theVector instanceof Vector3d)) {
+			 return false;
+		 }
+
+		 return equals( (Vector3d) theVector);
+	 }
+
+	 public final boolean almost(final Vector3d theVector) {
+		 if (Math.abs(v_[0] - theVector.v_[0]) < ALMOST_THRESHOLD
+				 && Math.abs(v_[1] - theVector.v_[1]) < ALMOST_THRESHOLD
+				 && Math.abs(v_[2] - theVector.v_[2]) < ALMOST_THRESHOLD) {
+			 return true;
+		 } else {
+			 return false;
+		 }
+	 }
+
+	 /**
+	  * rotate the vector by the quaternion (q * v * q^-1) and return this instance. 
+	  * See Quaterniond.rotate()
+	  * @param rotation
+	  * @return this instance
+	  */
+	 public Vector3d rotateBy(Quaterniond rotation){
+		 return rotation.rotate(this, this);
+	 }
+	 
+	 /**
+	  * rotate the vector around its Z Axis and return this instance
+	  * @param angle
+	  * @return this instance
+	  */
+	 public final Vector3d rotZ(double angle){
+		 double x1 = v_[0] * Math.cos(angle) + v_[1] * Math.sin(angle);
+		 double y1 = v_[1] * Math.cos(angle) - v_[0] * Math.sin(angle);
+		 v_[0] = x1;
+		 v_[1] = y1;
+		 return this;
+	 }
+	 
+	 /**
+	  * rotate the vector around its Z Axis and return a new instance.
+	  * This method does NOT modify this instance.
+	  * @param angle
+	  * @return this instance
+	  */
+	 public final Vector3d rotZ_Make(double angle){
+		 return clone().rotZ(angle);
+	 }
+	 
+	 /**
+	  * rotate the vector around its Y Axis and return this instance
+	  * @param angle
+	  * @return this instance
+	  */
+	 public final Vector3d rotY(double angle){
+		 double x1 = v_[0] * Math.cos(angle) - v_[2] * Math.sin(angle);
+		 double z1 = v_[2] * Math.cos(angle) + v_[0] * Math.sin(angle);
+		 v_[0] = x1;
+		 v_[2] = z1;
+		 return this;
+	 }
+	 
+	 /**
+	  * rotate the vector around its Y Axis and return a new instance.
+	  * This method does NOT modify this instance.
+	  * @param angle
+	  * @return this instance
+	  */
+	 public final Vector3d rotY_Make(double angle){
+		 return clone().rotY(angle);
+	 }
+	 
+	 /**
+	  * rotate the vector around its X Axis and return this instance
+	  * @param angle
+	  * @return this instance
+	  */
+	 public final Vector3d rotX(double angle){
+		 double y1 = v_[1] * Math.cos(angle) + v_[2] * Math.sin(angle);
+		 double z1 = v_[2] * Math.cos(angle) - v_[1] * Math.sin(angle);
+		 v_[1] = y1;
+		 v_[2] = z1;
+		 return this;
+	 }
+	 
+	 /**
+	  * rotate the vector around its X Axis and return a new instance.
+	  * This method does NOT modify this instance.
+	  * @param angle
+	  * @return this instance
+	  */
+	 public final Vector3d rotX_Make(double angle){
+		 return clone().rotX(angle);
+	 }
+	 
+	 public Vector3d clone() {
+		 Vector3d clone = new Vector3d(v_[0], v_[1], v_[2]);
+		 return clone;
+	 }
+
+
+	  public static final int X = 0;
+
+	  public static final int Y = 1;
+
+	  public static final int Z = 2;
+
+	  public static final int LENGTH = 3;
+
+	  public static int COMPARE_TYPE = LENGTH;
+
+
+	 public int compareTo(Vector3d theVector3d) {
+		 if (COMPARE_TYPE == LENGTH) {
+			 final double myLengthSquared = lengthSquared();
+			 final double myOtherLengthSquared = theVector3d.lengthSquared();
+			 return myLengthSquared > myOtherLengthSquared ? 1 : (myLengthSquared < myOtherLengthSquared ? -1 : 0);
+		 } else if (COMPARE_TYPE == X) {
+			 return v_[0] > theVector3d.v_[0] ? 1 : (v_[0] < theVector3d.v_[0] ? -1 : 0);
+		 } else if (COMPARE_TYPE == Y) {
+			 return v_[1] > theVector3d.v_[1] ? 1 : (v_[1] < theVector3d.v_[1] ? -1 : 0);
+		 } else if (COMPARE_TYPE == Z) {
+			 return v_[2] > theVector3d.v_[2] ? 1 : (v_[2] < theVector3d.v_[2] ? -1 : 0);
+		 } else {
+			 return 0;
+		 }
+	 }
+
+
+	 /**
+	  * Create a string representation of this vector.
+	  * 
+	  * @return  String representing this vector.
+	  */
+	 public String toString()
+	 {
+		 return ("Vector3d: [" + 
+				 v_[0] + "," + v_[1] + "," + v_[2] + "]");
+	 }
+}
+
@@ -22,8 +22,11 @@
 package ch.maybites.tools.math.la;
 
 import java.io.Serializable;
+import java.nio.FloatBuffer;
 import java.util.Random;
 
+import ch.maybites.tools.Calc;
+
 /**
  * Implementation of a 3-element Vector suited for use with
  * Matrix4x4
@@ -133,6 +136,18 @@ public class Vector3f
 			v_[i] = vector.v_[i];
 	}
 
+	/**
+	 * Set the elements of this vector according to the specified double vector.
+	 * 
+	 * @param vector  Vector to copy.
+	 */
+	public void set (Vector3d vector)
+	{
+		v_[0] = (float)vector.x();
+		v_[1] = (float)vector.y();
+		v_[2] = (float)vector.z();
+	}
+
 
 	  /**
 	   * Return the i'th element of this Vector.
@@ -184,6 +199,34 @@ public class Vector3f
 	      return v_;
 	  }
 
+	  /**
+	   * Writes x, y, z into the buffer, starting at the specified index. 
+	   * The position of the buffer is not changed.
+	   * 
+	   * @param buffer  Buffer with at least 3 elements left after index
+	   * @param index   Index of the first element to write
+	   * @return        buffer
+	   */
+	  public final FloatBuffer store(FloatBuffer buffer, int index) {
+		  buffer.put(index, v_[0]);
+		  buffer.put(index + 1, v_[1]);
+		  buffer.put(index + 2, v_[2]);
+		  return buffer;
+	  }
+
+	  /**
+	   * Reads x, y, z from the buffer, starting at the specified index. 
+	   * The position of the buffer is not changed.
+	   * 
+	   * @param buffer  Buffer with at least 3 elements left after index
+	   * @param index   Index of the first element to read
+	   */
+	  public final void load(FloatBuffer buffer, int index) {
+		  v_[0] = buffer.get(index);
+		  v_[1] = buffer.get(index + 1);
+		  v_[2] = buffer.get(index + 2);
+	  }
+
 	  public final boolean isNaN() {
 	      if (Float.isNaN(v_[0]) || Float.isNaN(v_[1]) || Float.isNaN(v_[2])) {
 	          return true;
@@ -677,9 +720,14 @@ public class Vector3f
 		 }
 	 }
 
+	 /**
+	  * rotate the vector by the quaternion (q * v * q^-1) and return this instance. 
+	  * See Quaternionf.rotate()
+	  * @param rotation
+	  * @return this instance
+	  */
 	 public Vector3f rotateBy(Quaternionf rotation){
-		 set(rotation.clone().multiply(new Quaternionf(this.x(), this.y(), this.z(), 0)).multiply(rotation.inverseMake()).getImaginaryQuaternion());
-		 return this;
+		 return rotation.rotate(this, this);
 	 }
 	 
 	 /**
@@ -688,8 +736,10 @@ public class Vector3f
 	  * @return this instance
 	  */
 	 public final Vector3f rotZ(float angle){
-		 float x1 = v_[0] * (float)Math.cos(angle) + v_[1] * (float)Math.sin(angle);
-		 float y1 = v_[1] * (float)Math.cos(angle) - v_[0] * (float)Math.sin(angle);
+		 float cos = Calc.cos(angle);
+		 float sin = Calc.sin(angle);
+		 float x1 = v_[0] * cos + v_[1] * sin;
+		 float y1 = v_[1] * cos - v_[0] * sin;
 		 v_[0] = x1;
 		 v_[1] = y1;
 		 return this;
@@ -711,8 +761,10 @@ public class Vector3f
 	  * @return this instance
 	  */
 	 public final Vector3f rotY(float angle){
-		 float x1 = v_[0] * (float)Math.cos(angle) - v_[2] * (float)Math.sin(angle);
-		 float z1 = v_[2] * (float)Math.cos(angle) + v_[0] * (float)Math.sin(angle);
+		 float cos = Calc.cos(angle);
+		 float sin = Calc.sin(angle);
+		 float x1 = v_[0] * cos - v_[2] * sin;
+		 float z1 = v_[2] * cos + v_[0] * sin;
 		 v_[0] = x1;
 		 v_[2] = z1;
 		 return this;
@@ -734,8 +786,10 @@ public class Vector3f
 	  * @return this instance
 	  */
 	 public final Vector3f rotX(float angle){
-		 float y1 = v_[1] * (float)Math.cos(angle) + v_[2] * (float)Math.sin(angle);
-		 float z1 = v_[2] * (float)Math.cos(angle) - v_[1] * (float)Math.sin(angle);
+		 float cos = Calc.cos(angle);
+		 float sin = Calc.sin(angle);
+		 float y1 = v_[1] * cos + v_[2] * sin;
+		 float z1 = v_[2] * cos - v_[1] * sin;
 		 v_[1] = y1;
 		 v_[2] = z1;
 		 return this;
@@ -22,7 +22,9 @@ package ch.maybites.tools.threedee;
  *
  */
 
+import ch.maybites.tools.math.la.FrustumPlanes;
 import ch.maybites.tools.math.la.Matrix4x4f;
+import ch.maybites.tools.Calc;
 import ch.maybites.tools.Const;
 
 public class Frustum {
@@ -170,6 +172,16 @@ public class Frustum {
 		return new Matrix4x4f(this);
 	}
 
+	/**
+	 * Returns the planes of this frustum in world space, for culling.
+	 * 
+	 * @param viewMatrix the matrix that transforms world coordinates into camera coordinates
+	 * @return the planes
+	 */
+	public FrustumPlanes getPlanes(Matrix4x4f viewMatrix){
+		return new FrustumPlanes(viewMatrix.multiplyMake(getProjectionMatrix()));
+	}
+
 	private void reset(){
 		left = -0.05f;
 		right = 0.05f;
@@ -182,7 +194,7 @@ public class Frustum {
 	
 	private void update(){
 	    // calculate the appropriate left, right etc.
-	    float tan_fovy = (float)Math.tan(fovy*0.5f*Const.DEG_TO_RAD);
+	    float tan_fovy = (float)Calc.tan(fovy*0.5f*Const.DEG_TO_RAD);
 	    right  =  tan_fovy * aspectRatio * zNear;
 	    left   = -right;
 	    top    =  tan_fovy * zNear;
@@ -190,7 +202,7 @@ public class Frustum {
 	}
 	
 	private void updateFovy(){
-		fovy = (float)((Math.atan(top/zNear)-Math.atan(bottom/zNear))*Const.RAD_TO_DEG);
+		fovy = (float)((Calc.atan((double)(top/zNear))-Calc.atan((double)(bottom/zNear)))*Const.RAD_TO_DEG);
 	    aspectRatio = (right-left)/(top-bottom); 
 	}
 
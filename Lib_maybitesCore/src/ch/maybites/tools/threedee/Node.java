@@ -53,6 +53,14 @@ public class Node {
 	
 	protected boolean wasTransformed = false;
 	
+	/**
+	 * true once the local matrix or the axes were handed out. createMatrix() reuses 
+	 * them in place as long as nobody else holds them, otherwise it creates new ones 
+	 * so the returned instances keep their values.
+	 */
+	private boolean matrixShared = false;
+	private boolean axisShared = false;
+	
 	public Node(){
 		axis = new Vector3f[3];
 		position = new Vector3f(.0f, .0f, .0f);
@@ -111,14 +119,17 @@ public class Node {
 	}
 
 	public Vector3f getXAxis(){
+		axisShared = true;
 		return axis[0];
 	}
 
 	public Vector3f getYAxis() {
+		axisShared = true;
 		return axis[1];
 	}
 
 	public Vector3f getZAxis() {
+		axisShared = true;
 		return axis[2];
 	}
 
@@ -232,6 +243,7 @@ public class Node {
 	
 	
 	public Matrix4x4f getLocalTransformationMatrix(){
+		matrixShared = true;
 		return localTransfromMatrix;
 	}
 	
@@ -287,20 +299,21 @@ public class Node {
 	private void createMatrix() {
 		//if(isMatrixDirty) {
 		//	isMatrixDirty = false;
-		localTransfromMatrix = new Matrix4x4f();
-		localTransfromMatrix.scale(scale);
-		localTransfromMatrix.rotate(orientation);
-		localTransfromMatrix.translate(position);
-				
-		if(scale.x()>0){
-			axis[0] = localTransfromMatrix.getRowAsVector(0).scale(1.0f / scale.x());
-		}
-		if(scale.y()>0){
-			axis[1] = localTransfromMatrix.getRowAsVector(1).scale(1.0f / scale.y());
+		if(localTransfromMatrix == null || matrixShared){
+			localTransfromMatrix = new Matrix4x4f();
+			matrixShared = false;
 		}
-		if(scale.z()>0){
-			axis[2] = localTransfromMatrix.getRowAsVector(2).scale(1.0f / scale.z());
+		localTransfromMatrix.set(position, orientation, scale);
+				
+		for(int i = 0; i < 3; i++){
+			float s = scale.getElement(i);
+			if(s > 0){
+				if(axis[i] == null || axisShared)
+					axis[i] = new Vector3f();
+				localTransfromMatrix.getRowAsVector(i, axis[i]).scale(1.0f / s);
+			}
 		}
+		axisShared = false;
 
 		setTransformed();
 	}
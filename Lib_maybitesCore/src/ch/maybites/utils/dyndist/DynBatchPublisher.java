@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2013 maybites.ch
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal 
+ *  in the Software without restriction, including without limitation the rights 
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ *  copies of the Software, and to permit persons to whom the Software is furnished
+ *  to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ *  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ch.maybites.utils.dyndist;
+
+import java.util.List;
+
+/**
+ * A publisher that wants to receive the coalesced callbacks of its subscriptions in one 
+ * call. See DynPublication.setCoalescing(). 
+ * 
+ * @author maybites
+ *
+ * @param <ObjectType> The Type of the published Object
+ * @param <CallbackType> The Type of the subscriptions Callback Object
+ */
+public interface DynBatchPublisher<ObjectType, CallbackType> extends DynPublisher<ObjectType, CallbackType> {
+
+	/**
+	 * This method is called instead of subscriptionCallback() with all the subscriptions
+	 * whose callback() method was called during the coalescing window. Each subscription
+	 * is contained only once, in the order of their first call.
+	 * 
+	 * @param distributor identifies the distributor
+	 * @param subscriptions
+	 */
+	public void subscriptionCallbacks(String distributor, List<DynSubscription<ObjectType, CallbackType>> subscriptions);
+
+}
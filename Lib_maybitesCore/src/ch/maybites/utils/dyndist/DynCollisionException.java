@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2013 maybites.ch
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal 
+ *  in the Software without restriction, including without limitation the rights 
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ *  copies of the Software, and to permit persons to whom the Software is furnished
+ *  to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ *  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ch.maybites.utils.dyndist;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Thrown if one or more publications could not be published because their 
+ * identifiers have already been taken.
+ * 
+ * @author maybites
+ *
+ */
+public class DynCollisionException extends DynException{
+
+	private List<String> identifiers;
+
+	protected DynCollisionException(List<String> _identifiers){
+		super("Publication names already taken: " + _identifiers);
+		identifiers = Collections.unmodifiableList(_identifiers);
+	}
+	
+	/**
+	 * Returns the identifiers that have already been taken
+	 * @return list of identifiers
+	 */
+	public List<String> getIdentifiers(){
+		return identifiers;
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2013 maybites.ch
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal 
+ *  in the Software without restriction, including without limitation the rights 
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ *  copies of the Software, and to permit persons to whom the Software is furnished
+ *  to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ *  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ch.maybites.utils.dyndist;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread safe version of the Dynamic Distributor. Use it if publications and 
+ * subscriptions are created and removed from different threads (i.e. MaxMSP's 
+ * scheduler and low priority thread).
+ * 
+ * The registry is kept in concurrent maps. Every modification (publish, recall, 
+ * subscribe and unsubscribe) takes a lock that is striped by the identifier, so 
+ * only operations on the same identifier block each other.
+ * 
+ * Reading a subscription (getPublishedObject(), isConnected()) or asking the 
+ * distributor (isPublished(), getPublicationNames(), getPublicationNameList()) never 
+ * takes a lock.
+ * 
+ * The publishers and subscribers callback methods are called after the lock of the 
+ * identifier has been released, still before publish(), subscribe(), recall() or 
+ * unsubscribe() return. They may thus publish or subscribe again, and even wait for 
+ * other threads that do the same.
+ * 
+ * @author maybites
+ *
+ * @param <ObjectType> The Type of Object this Distributor helps to create dynamic links to
+ * @param <CallbackType> The Type of Callback Object that helps to manipulate the linking party 
+ */
+public class DynConcurrentDistributor<ObjectType, CallbackType> extends DynDistributor<ObjectType, CallbackType> {
+
+	private static final int DEFAULT_STRIPES = 32;
+
+	private ReentrantLock[] stripes;
+	
+	/**
+	 * Constructor of a thread safe Dynamic Distributor
+	 * @param _name identifier of this distributor
+	 */
+	public DynConcurrentDistributor(String _name){
+		this(_name, DEFAULT_STRIPES);
+	}
+
+	/**
+	 * Constructor of a thread safe Dynamic Distributor
+	 * @param _name identifier of this distributor
+	 * @param _stripes number of locks the identifiers are distributed to
+	 */
+	public DynConcurrentDistributor(String _name, int _stripes){
+		super(_name);
+		stripes = new ReentrantLock[(_stripes > 0)? _stripes: 1];
+		for(int i = 0; i < stripes.length; i++)
+			stripes[i] = new ReentrantLock();
+	}
+
+	protected Set<DynSubscription<ObjectType, CallbackType>> createSubscriptionSet(){
+		return Collections.newSetFromMap(new ConcurrentHashMap<DynSubscription<ObjectType, CallbackType>, Boolean>());
+	}
+
+	protected Map<String, Set<DynSubscription<ObjectType, CallbackType>>> createPendingMap(){
+		return new ConcurrentHashMap<String, Set<DynSubscription<ObjectType, CallbackType>>>();
+	}
+
+	protected Map<String, DynPublication<ObjectType, CallbackType>> createPublicationMap(){
+		return new ConcurrentHashMap<String, DynPublication<ObjectType, CallbackType>>();
+	}
+
+	protected void lock(String identifier){
+		stripe(identifier).lock();
+	}
+
+	protected void unlock(String identifier){
+		stripe(identifier).unlock();
+	}
+	
+	private ReentrantLock stripe(String identifier){
+		int hash = identifier.hashCode();
+		hash ^= (hash >>> 16);
+		return stripes[(hash & 0x7fffffff) % stripes.length];
+	}
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2013 maybites.ch
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal 
+ *  in the Software without restriction, including without limitation the rights 
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ *  copies of the Software, and to permit persons to whom the Software is furnished
+ *  to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ *  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ch.maybites.utils.dyndist;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import ch.maybites.tools.Debugger;
+
+/**
+ * Delivers the callbacks of a Dynamic Distributor asynchronously. 
+ * 
+ * The callbacks are queued by the identifier of the publication they concern. Each queue 
+ * is drained by one task of the executor at the time, so the callbacks of the same 
+ * identifier are always delivered in the order they were dispatched, even if the executor 
+ * uses more than one thread.
+ * 
+ * @author maybites
+ *
+ */
+public class DynDispatcher {
+
+	private Executor executor;
+	
+	/**
+	 * the queued callbacks by identifier. a queue exists as long as it is being drained.
+	 */
+	private HashMap<String, ArrayDeque<Runnable>> queues;
+	
+	/**
+	 * number of dispatched callbacks that have not yet returned
+	 */
+	private int pending;
+	
+	/**
+	 * marks the threads that are currently delivering callbacks 
+	 */
+	private ThreadLocal<Boolean> delivering;
+
+	/**
+	 * Creates a dispatcher that delivers all the callbacks with its own daemon thread. 
+	 * The thread terminates if there is nothing to deliver and is restarted on demand.
+	 * 
+	 * @param _threadName name of the delivering thread
+	 */
+	public DynDispatcher(final String _threadName){
+		this(new ThreadPoolExecutor(0, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), 
+				new ThreadFactory(){
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, _threadName);
+						thread.setDaemon(true);
+						return thread;
+					}
+				}));
+	}
+	
+	/**
+	 * Creates a dispatcher that delivers the callbacks with the provided executor. 
+	 * 
+	 * @param _executor
+	 */
+	public DynDispatcher(Executor _executor){
+		executor = _executor;
+		queues = new HashMap<String, ArrayDeque<Runnable>>();
+		delivering = new ThreadLocal<Boolean>();
+	}
+	
+	/**
+	 * Queues the callback behind all the other callbacks of the same identifier
+	 * 
+	 * @param identifier of the publication the callback concerns
+	 * @param callback
+	 */
+	protected void dispatch(String identifier, Runnable callback){
+		boolean drain = false;
+		synchronized(this){
+			pending++;
+			ArrayDeque<Runnable> queue = queues.get(identifier);
+			if(queue == null){
+				queue = new ArrayDeque<Runnable>();
+				queues.put(identifier, queue);
+				drain = true;
+			}
+			queue.add(callback);
+		}
+		if(drain){
+			Drain task = new Drain(identifier);
+			try{
+				executor.execute(task);
+			} catch (RejectedExecutionException e){
+				Debugger.warning(getClass(), "executor rejected callbacks, delivering them directly");
+				task.run();
+			}
+		}
+	}
+	
+	/**
+	 * Waits until all the callbacks dispatched so far have been delivered.
+	 * 
+	 * @throws InterruptedException if the thread was interrupted while waiting
+	 * @throws IllegalStateException if called from within a callback
+	 */
+	public void flush() throws InterruptedException{
+		checkNotDelivering();
+		synchronized(this){
+			while(pending > 0)
+				wait();
+		}
+	}
+
+	/**
+	 * Waits until all the callbacks dispatched so far have been delivered, but at most for 
+	 * the provided time.
+	 * 
+	 * @param timeout the maximum time to wait
+	 * @param unit the unit of the timeout
+	 * @return true if all callbacks were delivered, false if the time elapsed
+	 * @throws InterruptedException if the thread was interrupted while waiting
+	 * @throws IllegalStateException if called from within a callback
+	 */
+	public boolean awaitQuiescence(long timeout, TimeUnit unit) throws InterruptedException{
+		checkNotDelivering();
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		synchronized(this){
+			while(pending > 0){
+				long left = deadline - System.nanoTime();
+				if(left <= 0)
+					return false;
+				TimeUnit.NANOSECONDS.timedWait(this, left);
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Returns true if there are callbacks that have not been delivered yet
+	 * @return
+	 */
+	public synchronized boolean isBusy(){
+		return (pending > 0)? true: false;
+	}
+	
+	private void checkNotDelivering(){
+		if(delivering.get() != null)
+			throw new IllegalStateException("Cannot wait for the callbacks from within a callback");
+	}
+
+	/**
+	 * Delivers the queued callbacks of one identifier until its queue is empty
+	 */
+	private class Drain implements Runnable{
+		
+		private String identifier;
+		
+		Drain(String _identifier){
+			identifier = _identifier;
+		}
+		
+		public void run() {
+			boolean drained = false;
+			delivering.set(Boolean.TRUE);
+			try{
+				while(true){
+					Runnable callback;
+					synchronized(DynDispatcher.this){
+						ArrayDeque<Runnable> queue = queues.get(identifier);
+						callback = queue.poll();
+						if(callback == null){
+							queues.remove(identifier);
+							drained = true;
+							return;
+						}
+					}
+					try{
+						callback.run();
+					} catch (RuntimeException e){
+						Debugger.error(getClass(), "callback for " + identifier + " failed: " + e);
+					} finally {
+						synchronized(DynDispatcher.this){
+							pending--;
+							if(pending == 0)
+								DynDispatcher.this.notifyAll();
+						}
+					}
+				}
+			} finally {
+				delivering.remove();
+				if(!drained)
+					resume();
+			}
+		}
+		
+		/**
+		 * Hands the rest of the queue to a new task after a callback threw an Error, 
+		 * otherwise the queue would stay registered and its identifier would never 
+		 * be drained again.
+		 */
+		private void resume(){
+			synchronized(DynDispatcher.this){
+				if(queues.get(identifier).isEmpty()){
+					queues.remove(identifier);
+					return;
+				}
+			}
+			try{
+				executor.execute(new Drain(identifier));
+			} catch (RuntimeException e){
+				Debugger.error(getClass(), "could not resume callbacks for " + identifier + ": " + e);
+				synchronized(DynDispatcher.this){
+					pending -= queues.remove(identifier).size();
+					DynDispatcher.this.notifyAll();
+				}
+			}
+		}
+	}
+}
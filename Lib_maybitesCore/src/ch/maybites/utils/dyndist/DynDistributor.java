@@ -21,8 +21,20 @@
 
 package ch.maybites.utils.dyndist;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import ch.maybites.tools.Debugger;
 
@@ -46,6 +58,25 @@ import ch.maybites.tools.Debugger;
  * of the subscription. since the subscription can contain a callback object, the publisher gets thus 
  * access to the subscriber or associated objects.
  * 
+ * Publishers and Subscribers should implement DynPublisher and DynSubscriber with the same
+ * type arguments as the Distributor. The subscriptions passed to their callback methods 
+ * then return the published object and the callback object without any casts.
+ * 
+ * By default the publishers and subscribers callback methods are called directly from within
+ * publish(), subscribe(), recall() and unsubscribe(), once their changes are done. Call 
+ * setAsynchronous() to have them delivered by a separate thread instead.
+ * 
+ * By default the Distributor holds strong references to all the publishers, subscribers and 
+ * their objects until they are recalled or unsubscribed. Call setWeakReferences() to only
+ * hold weak references instead, so the publications and subscriptions of garbage collected 
+ * objects are removed automatically.
+ * 
+ * The sizes of a Distributor can be queried with getPublicationCount(), getSubscriptionCount()
+ * and getPendingCount(). Set DynMetrics with setMetrics() to also record the timings.
+ * 
+ * This Distributor is not thread safe. If publications and subscriptions are created and 
+ * removed from different threads use the DynConcurrentDistributor instead.
+ * 
  * @author maybites
  *
  * @param <ObjectType> The Type of Object this Distributor helps to create dynamic links to
@@ -54,10 +85,63 @@ import ch.maybites.tools.Debugger;
  */
 public class DynDistributor<ObjectType, CallbackType> {
 
-	private ArrayList<DynSubscription> subscriptions;
-	private ArrayList<DynPublication> publications;
+	/**
+	 * all registered subscriptions, connected or not
+	 */
+	private Set<DynSubscription<ObjectType, CallbackType>> subscriptions;
+	/**
+	 * the subscriptions that are still waiting for a publication, keyed by identifier
+	 */
+	private Map<String, Set<DynSubscription<ObjectType, CallbackType>>> pendingSubscriptions;
+	/**
+	 * the published publications, keyed by identifier
+	 */
+	private Map<String, DynPublication<ObjectType, CallbackType>> publications;
+	/**
+	 * the subscribed pattern subscriptions, indexed by their prefix. guarded by itself.
+	 */
+	private DynPrefixTrie<DynPatternSubscription<ObjectType, CallbackType>> patterns;
+	
+	private volatile int patternCount = 0;
+	
+	/**
+	 * incremented each time a publication is added or removed
+	 */
+	private final AtomicInteger version = new AtomicInteger();
+	
+	/**
+	 * the last returned publication names
+	 */
+	private volatile NameSnapshot publicationNames;
 	
 	private String name;
+	
+	/**
+	 * if set, the callbacks are dispatched through it instead of being called directly
+	 */
+	private volatile DynDispatcher dispatcher;
+	
+	/**
+	 * the weak references of garbage collected publishers, subscribers and objects
+	 */
+	private final ReferenceQueue<Object> referenceQueue = new ReferenceQueue<Object>();
+	
+	private volatile boolean weakReferences = false;
+	
+	/**
+	 * if set, the latencies and callback timings are recorded into it
+	 */
+	private volatile DynMetrics metrics;
+	
+	/**
+	 * the callbacks that are called directly, collected while the calling thread 
+	 * holds the lock of an identifier
+	 */
+	private final ThreadLocal<Deferred> deferred = new ThreadLocal<Deferred>(){
+		protected Deferred initialValue(){
+			return new Deferred();
+		}
+	};
 
 	/**
 	 * Constructor of a Dynamic Distributor
@@ -65,8 +149,92 @@ public class DynDistributor<ObjectType, CallbackType> {
 	 */
 	public DynDistributor(String _name){
 		name = _name;
-		subscriptions = new ArrayList<DynSubscription>();
-		publications = new ArrayList<DynPublication>();
+		subscriptions = createSubscriptionSet();
+		pendingSubscriptions = createPendingMap();
+		publications = createPublicationMap();
+		patterns = new DynPrefixTrie<DynPatternSubscription<ObjectType, CallbackType>>();
+	}
+	
+	/**
+	 * Creates the set that holds all the registered subscriptions. 
+	 * 
+	 * Careful: this method is called from within the constructor.
+	 * @return new Set
+	 */
+	protected Set<DynSubscription<ObjectType, CallbackType>> createSubscriptionSet(){
+		return new LinkedHashSet<DynSubscription<ObjectType, CallbackType>>();
+	}
+
+	/**
+	 * Creates the map that holds the pending subscriptions by identifier. 
+	 * 
+	 * Careful: this method is called from within the constructor.
+	 * @return new Map
+	 */
+	protected Map<String, Set<DynSubscription<ObjectType, CallbackType>>> createPendingMap(){
+		return new HashMap<String, Set<DynSubscription<ObjectType, CallbackType>>>();
+	}
+
+	/**
+	 * Creates the map that holds the publications by identifier. 
+	 * 
+	 * Careful: this method is called from within the constructor.
+	 * @return new Map
+	 */
+	protected Map<String, DynPublication<ObjectType, CallbackType>> createPublicationMap(){
+		return new LinkedHashMap<String, DynPublication<ObjectType, CallbackType>>();
+	}
+	
+	/**
+	 * Called before the state of the provided identifier is modified. All the 
+	 * publications and subscriptions with the same identifier are guarded by
+	 * the same lock. The default implementation does nothing.
+	 * 
+	 * @param identifier
+	 */
+	protected void lock(String identifier){
+		;
+	}
+
+	/**
+	 * Called after the state of the provided identifier has been modified. 
+	 * The default implementation does nothing.
+	 * 
+	 * @param identifier
+	 */
+	protected void unlock(String identifier){
+		;
+	}
+	
+	/**
+	 * Locks the identifier and starts collecting the callbacks that are called directly
+	 */
+	private void begin(String identifier){
+		lock(identifier);
+		deferred.get().depth++;
+	}
+	
+	/**
+	 * Unlocks the identifier. Once the calling thread holds no lock anymore, it calls 
+	 * the collected callbacks, so they are free to publish or subscribe on any thread.
+	 */
+	private void end(String identifier){
+		Deferred _deferred = deferred.get();
+		_deferred.depth--;
+		unlock(identifier);
+		if(_deferred.depth == 0 && !_deferred.callbacks.isEmpty())
+			_deferred.run();
+	}
+	
+	/**
+	 * Calls the callback directly, or once the calling thread holds no lock anymore
+	 */
+	private void call(Runnable callback){
+		Deferred _deferred = deferred.get();
+		if(_deferred.depth > 0)
+			_deferred.callbacks.add(callback);
+		else
+			callback.run();
 	}
 	
 	/**
@@ -78,6 +246,149 @@ public class DynDistributor<ObjectType, CallbackType> {
 		return name;
 	}
 	
+	/**
+	 * Sets the dispatch mode of the callbacks. If set to asynchronous, the publishers and 
+	 * subscribers callback methods are called by a thread owned by this distributor, in 
+	 * the order they occured. The calling thread returns without waiting for them.
+	 * 
+	 * @param asynchronous true to dispatch the callbacks asynchronously, false to call them directly
+	 */
+	public void setAsynchronous(boolean asynchronous){
+		setDispatcher((asynchronous)? new DynDispatcher("DynDistributor " + name): null);
+	}
+	
+	/**
+	 * Sets the dispatcher that delivers the publishers and subscribers callbacks. The 
+	 * callbacks concerning the same identifier are delivered in the order they occured.
+	 * 
+	 * @param _dispatcher the dispatcher or null to call the callbacks directly
+	 */
+	public void setDispatcher(DynDispatcher _dispatcher){
+		dispatcher = _dispatcher;
+	}
+	
+	/**
+	 * Returns the dispatcher that delivers the callbacks
+	 * 
+	 * @return null if the callbacks are called directly
+	 */
+	public DynDispatcher getDispatcher(){
+		return dispatcher;
+	}
+	
+	/**
+	 * Waits until all the callbacks dispatched so far have been delivered. Returns 
+	 * immediately if the callbacks are called directly.
+	 * 
+	 * Careful: must not be called from within a callback method.
+	 * 
+	 * @throws InterruptedException if the thread was interrupted while waiting
+	 */
+	public void flush() throws InterruptedException{
+		DynDispatcher _dispatcher = dispatcher;
+		if(_dispatcher != null)
+			_dispatcher.flush();
+	}
+	
+	/**
+	 * Sets the metrics that record the latencies of publish() and subscribe() and the 
+	 * timings of the publicationConnected() and subscriptionConnected() callbacks. 
+	 * 
+	 * @param _metrics the metrics or null to stop measuring
+	 */
+	public void setMetrics(DynMetrics _metrics){
+		metrics = _metrics;
+	}
+	
+	/**
+	 * Returns the metrics that record the timings of this distributor
+	 * 
+	 * @return null if nothing is measured
+	 */
+	public DynMetrics getMetrics(){
+		return metrics;
+	}
+	
+	/**
+	 * Returns the number of published publications
+	 * @return
+	 */
+	public int getPublicationCount(){
+		return publications.size();
+	}
+	
+	/**
+	 * Returns the number of subscribed subscriptions, connected or not
+	 * @return
+	 */
+	public int getSubscriptionCount(){
+		return subscriptions.size();
+	}
+	
+	/**
+	 * Returns the number of subscribed subscriptions that are still waiting for a publication
+	 * @return
+	 */
+	public int getPendingCount(){
+		int count = 0;
+		Iterator<Set<DynSubscription<ObjectType, CallbackType>>> i = pendingSubscriptions.values().iterator();
+		while(i.hasNext())
+			count += i.next().size();
+		return count;
+	}
+	
+	/**
+	 * Sets the reference mode of the publications and subscriptions created from now on. 
+	 * If set to weak, the publishers, subscribers, published objects and callback objects are 
+	 * only weakly referenced by this distributor. Once one of them is garbage collected, its
+	 * publication is recalled or its subscription unsubscribed and the peers are notified by 
+	 * the usual disconnect callbacks.
+	 * 
+	 * Careful: the published objects and the callback objects must stay referenced elsewhere, 
+	 * usually by the publisher and the subscriber themselves. Otherwise they get collected 
+	 * and the publication or subscription is removed right away.
+	 * 
+	 * @param weak true to hold weak references, false to hold strong references
+	 */
+	public void setWeakReferences(boolean weak){
+		weakReferences = weak;
+	}
+	
+	/**
+	 * Returns true if the publications and subscriptions created from now on only hold 
+	 * weak references
+	 * @return
+	 */
+	public boolean isWeakReferences(){
+		return weakReferences;
+	}
+	
+	/**
+	 * Removes the publications and subscriptions whose publisher, subscriber or objects have 
+	 * been garbage collected. The dead publications are recalled and the dead subscriptions are 
+	 * unsubscribed, the remaining peers get the usual disconnect callbacks.
+	 * 
+	 * This method is called each time a new publication or subscription is created, it only
+	 * needs to be called explicitly to clean up in between.
+	 * 
+	 * @return the number of collected references
+	 */
+	public int reclaim(){
+		int count = 0;
+		Reference<?> reference;
+		while((reference = referenceQueue.poll()) != null){
+			Object owner = ((DynReference<?>)reference).owner;
+			if(owner instanceof DynPublication)
+				((DynPublication<?, ?>)owner).recall();
+			else if(owner instanceof DynSubscription)
+				((DynSubscription<?, ?>)owner).unsubscribe();
+			else if(owner instanceof DynPatternSubscription)
+				((DynPatternSubscription<?, ?>)owner).unsubscribe();
+			count++;
+		}
+		return count;
+	}
+	
 	/**
 	 * Calling this method returns a new Subscription
 	 * 
@@ -89,39 +400,152 @@ public class DynDistributor<ObjectType, CallbackType> {
 	 * @param callback is a helper object to allow the publisher to callback the subscriber 
 	 * @return new Subscription
 	 */
-	public DynSubscription create(DynSubscriber subscriber, String objectname, CallbackType callback){
-		DynSubscription<ObjectType, CallbackType> newConn = new DynSubscription<ObjectType, CallbackType>(this, subscriber, objectname, callback);
-		return newConn;
+	public DynSubscription<ObjectType, CallbackType> create(DynSubscriber<ObjectType, CallbackType> subscriber, String objectname, CallbackType callback){
+		reclaim();
+		return newSubscription(subscriber, objectname, callback);
+	}
+	
+	/**
+	 * Returns a new Subscription without reclaiming the garbage collected ones first
+	 */
+	protected DynSubscription<ObjectType, CallbackType> newSubscription(DynSubscriber<ObjectType, CallbackType> subscriber, String objectname, CallbackType callback){
+		return new DynSubscription<ObjectType, CallbackType>(this, subscriber, objectname, callback, (weakReferences)? referenceQueue: null);
 	}
 	
 	/**
-	 * Unsubscribe all subscriptions subscribed by the provided subscriber
+	 * Calling this method returns a new Pattern Subscription, that subscribes to all 
+	 * publications whose identifier starts with the prefix of the pattern.
+	 * 
+	 * Attention: it needs to be subscribed!
+	 * In order to enable it, one must call its subscribe() method
+	 * 
 	 * @param subscriber
+	 * @param pattern is the prefix of the subscribed identifiers followed by a '*', i.e. "scene/layer*"
+	 * @param callback is a helper object to allow the publishers to callback the subscriber 
+	 * @return new Pattern Subscription
+	 * @throws IllegalArgumentException if the pattern does not end with a '*'
+	 */
+	public DynPatternSubscription<ObjectType, CallbackType> createPattern(DynSubscriber<ObjectType, CallbackType> subscriber, String pattern, CallbackType callback){
+		reclaim();
+		return new DynPatternSubscription<ObjectType, CallbackType>(this, subscriber, pattern, callback, (weakReferences)? referenceQueue: null);
+	}
+	
+	/**
+	 * Subscribe the provided Pattern Subscription and connect it to all the matching 
+	 * publications. Publications published later on are connected when they are published.
+	 * 
+	 * VERY Careful: For every publication that is already published, this method calls 
+	 * directly the Subscribers publicationConnected() method and returns once all of them 
+	 * have returned. This is not the case if this distributor dispatches its callbacks 
+	 * asynchronously.
+	 * 
+	 * @param subscription
 	 */
-	public void unsubscribe(DynSubscriber subscriber){
-		Iterator<DynSubscription> i = subscriptions.iterator();
+	public void subscribe(DynPatternSubscription<ObjectType, CallbackType> subscription){
+		if(!subscription.setSubscribed(true))
+			return;
+		synchronized(patterns){
+			patterns.put(subscription.prefix, subscription);
+			patternCount = patterns.size();
+		}
+		Iterator<String> i = publications.keySet().iterator();
+		ArrayList<String> matches = new ArrayList<String>();
 		while(i.hasNext()){
-			DynSubscription subscription = i.next();
-			if(subscription.subscriber == subscriber){
-				subscription.publication.removeSubscription(subscription);
-				subscription.publication.publisher.subscriptionDisconnected(name, subscription);
-				subscription.set(null);
-				i.remove();
+			String identifier = i.next();
+			if(subscription.matches(identifier))
+				matches.add(identifier);
+		}
+		for(int j = 0; j < matches.size(); j++)
+			subscription.attach(matches.get(j));
+	}
+	
+	/**
+	 * Unsubscribe the provided Pattern Subscription and all the subscriptions it created
+	 * @param subscription
+	 */
+	public void unsubscribe(DynPatternSubscription<ObjectType, CallbackType> subscription){
+		if(!subscription.setSubscribed(false))
+			return;
+		synchronized(patterns){
+			patterns.remove(subscription.prefix, subscription);
+			patternCount = patterns.size();
+		}
+		List<DynSubscription<ObjectType, CallbackType>> created = subscription.detachAll();
+		for(int i = 0; i < created.size(); i++)
+			unsubscribe(created.get(i));
+	}
+	
+	/**
+	 * Connects the pattern subscriptions matching the provided identifier
+	 * @param identifier of a new publication
+	 */
+	private void connectPatterns(String identifier){
+		if(patternCount == 0)
+			return;
+		ArrayList<DynPatternSubscription<ObjectType, CallbackType>> matches = new ArrayList<DynPatternSubscription<ObjectType, CallbackType>>();
+		synchronized(patterns){
+			patterns.collectPrefixesOf(identifier, matches);
+		}
+		for(int i = 0; i < matches.size(); i++)
+			matches.get(i).attach(identifier);
+	}
+	
+	/**
+	 * Unsubscribe all subscriptions and pattern subscriptions subscribed by the provided subscriber
+	 * @param subscriber
+	 */
+	public void unsubscribe(DynSubscriber<ObjectType, CallbackType> subscriber){
+		if(patternCount > 0){
+			ArrayList<DynPatternSubscription<ObjectType, CallbackType>> subscribed = new ArrayList<DynPatternSubscription<ObjectType, CallbackType>>();
+			synchronized(patterns){
+				patterns.collectAll(subscribed);
 			}
+			for(int j = 0; j < subscribed.size(); j++)
+				if(subscribed.get(j).getSubscriber() == subscriber)
+					unsubscribe(subscribed.get(j));
 		}
+		ArrayList<DynSubscription<ObjectType, CallbackType>> subscribed = new ArrayList<DynSubscription<ObjectType, CallbackType>>();
+		Iterator<DynSubscription<ObjectType, CallbackType>> i = subscriptions.iterator();
+		while(i.hasNext()){
+			DynSubscription<ObjectType, CallbackType> subscription = i.next();
+			if(subscription.getSubscriber() == subscriber)
+				subscribed.add(subscription);
+		}
+		for(int j = 0; j < subscribed.size(); j++)
+			unsubscribe(subscribed.get(j));
 	}
 	
 	/**
 	 * Unsubscribe the provided Subscription 
 	 * @param subscription
 	 */
-	public void unsubscribe(DynSubscription subscription){
-		if(subscription.isConnected()){
-			subscription.publication.removeSubscription(subscription);
-			subscription.publication.publisher.subscriptionDisconnected(name, subscription);
+	public void unsubscribe(DynSubscription<ObjectType, CallbackType> subscription){
+		begin(subscription.identifier);
+		try{
+			if(subscriptions.remove(subscription))
+				disconnect(subscription);
+			// so the pattern creates a new one if the identifier is published again
+			if(subscription.pattern != null)
+				subscription.pattern.detach(subscription);
+		} finally {
+			end(subscription.identifier);
+		}
+	}
+	
+	/**
+	 * Disconnects a subscription that is about to leave the system, either from
+	 * its publication or from the pending subscriptions.
+	 * @param subscription
+	 */
+	private void disconnect(DynSubscription<ObjectType, CallbackType> subscription){
+		DynPublication<ObjectType, CallbackType> publication = subscription.publication;
+		if(publication != null){
+			publication.removeSubscription(subscription);
+			fireSubscriptionDisconnected(publication, subscription);
 			subscription.set(null);
+		} else {
+			removePending(subscription);
 		}
-		subscriptions.remove(subscription);
 	}
 	
 	/**
@@ -132,42 +556,36 @@ public class DynDistributor<ObjectType, CallbackType> {
 	 * is a matching publication.
 	 * 
 	 * VERY Careful: If a valid connection can be established this method calls directly the 
-	 * Subscribers publicationConnected() method and returns once that method returns.
+	 * Subscribers publicationConnected() method and returns once that method returns. This
+	 * is not the case if this distributor dispatches its callbacks asynchronously.
 	 * 
 	 * @param subscription
 	 * @return true if a successful connection to a publication could be established
 	 */
-	public boolean subscribe(DynSubscription subscription){
-		if(!subscriptions.contains(subscription)){
-			subscriptions.add(subscription);
-			if(!subscription.isConnected()){
-				Iterator<DynPublication> i = publications.iterator();
-				while(i.hasNext()){
-					DynPublication publication = i.next();
-					if(subscription.equalsIdentifier(publication)){
-						subscription.set(publication);
-						publication.addSubscription(subscription);
-						subscription.subscriber.publicationConnected(name, subscription);
-						publication.publisher.subscriptionConnected(name, subscription);
-						return true;
-					}
+	public boolean subscribe(DynSubscription<ObjectType, CallbackType> subscription){
+		DynMetrics _metrics = metrics;
+		long start = (_metrics != null)? System.nanoTime(): 0;
+		begin(subscription.identifier);
+		try{
+			if(subscriptions.add(subscription)){
+				DynPublication<ObjectType, CallbackType> publication = publications.get(subscription.identifier);
+				if(publication != null){
+					subscription.set(publication);
+					publication.addSubscription(subscription);
+					firePublicationConnected(subscription);
+					fireSubscriptionConnected(publication, subscription);
+					return true;
 				}
+				addPending(subscription);
 			}
+			return false;
+		} finally {
+			end(subscription.identifier);
+			if(_metrics != null)
+				_metrics.getSubscribeLatency().record(System.nanoTime() - start);
 		}
-		return false;
 	}
 	
-	private void checkForIteration(){
-		StackTraceElement[] trace = Thread.currentThread().getStackTrace();
-		
-		for(int i = 0; i < trace.length; i++){
-			StackTraceElement element = trace[i];
-			if(element.getClassName().equals(this.getClass())){
-				;
-			}
-		}
-	}
-
 	/**
 	 * Publish the provided Publication
 	 * 
@@ -176,32 +594,109 @@ public class DynDistributor<ObjectType, CallbackType> {
 	 * is a matching subscription.
 	 * 
 	 * VERY Careful: If a valid connection can be established this method calls directly the 
-	 * Publishers subscriptionConnected() method and returns once that method returns.
+	 * Publishers subscriptionConnected() method and returns once that method returns. This
+	 * is not the case if this distributor dispatches its callbacks asynchronously.
 	 * 
 	 * @param publication
 	 * @throws DynException  if the Publications identifier has already been taken
 	 */
-	public void publish(DynPublication publication) throws DynException{
+	public void publish(DynPublication<ObjectType, CallbackType> publication) throws DynException{
 //		Debugger.debug(getClass(), "try to publish publication: " + publication.getIdentifier());
-		//First check if this pointers name has been already taken
-		Iterator<DynPublication> p = publications.iterator();
-		while(p.hasNext()){
-			if(p.next().identifier.equals(publication.identifier))
+		DynMetrics _metrics = metrics;
+		long start = (_metrics != null)? System.nanoTime(): 0;
+		begin(publication.identifier);
+		try{
+			//First check if this pointers name has been already taken
+			if(!register(publication))
 				throw new DynException("Publication name already taken: " + publication.identifier);
+			connectPending(publication);
+		} finally {
+			end(publication.identifier);
+			if(_metrics != null)
+				_metrics.getPublishLatency().record(System.nanoTime() - start);
 		}
+	}
 
-		publications.add(publication);
-
-		Iterator<DynSubscription> i = subscriptions.iterator();
-		while(i.hasNext()){
-			DynSubscription subscription = i.next();
-			if(!subscription.isConnected() && subscription.equalsIdentifier(publication)){
-				publication.addSubscription(subscription);
-				subscription.set(publication);
-				publication.publisher.subscriptionConnected(name, subscription);
-				subscription.subscriber.publicationConnected(name, subscription);
+	/**
+	 * Publish all the provided Publications at once. 
+	 * 
+	 * All publications are registered first, before the pending subscriptions are connected
+	 * and the callbacks are called. The callbacks thus see the whole batch published.
+	 * 
+	 * If some identifiers have already been taken, the other publications are published 
+	 * nonetheless and all the collisions are reported together at the end.
+	 * 
+	 * @param _publications
+	 * @throws DynCollisionException if one or more Publications identifiers have already been taken
+	 */
+	public void publishAll(Collection<? extends DynPublication<ObjectType, CallbackType>> _publications) throws DynCollisionException{
+		ArrayList<DynPublication<ObjectType, CallbackType>> registered = new ArrayList<DynPublication<ObjectType, CallbackType>>(_publications.size());
+		ArrayList<String> collisions = null;
+		for(DynPublication<ObjectType, CallbackType> publication: _publications){
+			begin(publication.identifier);
+			try{
+				if(register(publication)){
+					registered.add(publication);
+				} else {
+					if(collisions == null)
+						collisions = new ArrayList<String>();
+					collisions.add(publication.identifier);
+				}
+			} finally {
+				end(publication.identifier);
+			}
+		}
+		for(int i = 0; i < registered.size(); i++){
+			DynPublication<ObjectType, CallbackType> publication = registered.get(i);
+			begin(publication.identifier);
+			try{
+				connectPending(publication);
+			} finally {
+				end(publication.identifier);
 			}
 		}
+		if(collisions != null)
+			throw new DynCollisionException(collisions);
+	}
+	
+	/**
+	 * Registers the publication if its identifier is not already taken
+	 * @param publication
+	 * @return true if it was registered
+	 */
+	private boolean register(DynPublication<ObjectType, CallbackType> publication){
+		if(publications.containsKey(publication.identifier))
+			return false;
+		publications.put(publication.identifier, publication);
+		version.incrementAndGet();
+		return true;
+	}
+	
+	/**
+	 * Connects the pending subscriptions with the identifier of the provided publication
+	 * @param publication
+	 */
+	private void connectPending(DynPublication<ObjectType, CallbackType> publication){
+		Set<DynSubscription<ObjectType, CallbackType>> pending = pendingSubscriptions.get(publication.identifier);
+		if(pending == null){
+			connectPatterns(publication.identifier);
+			return;
+		}
+		// the callbacks might (un)subscribe or even recall this publication, so 
+		// take one pending subscription at the time and stop once it is gone.
+		while(!pending.isEmpty() && publications.get(publication.identifier) == publication){
+			Iterator<DynSubscription<ObjectType, CallbackType>> i = pending.iterator();
+			DynSubscription<ObjectType, CallbackType> subscription = i.next();
+			i.remove();
+			publication.addSubscription(subscription);
+			subscription.set(publication);
+			fireSubscriptionConnected(publication, subscription);
+			firePublicationConnected(subscription);
+		}
+		if(pending.isEmpty() && pendingSubscriptions.get(publication.identifier) == pending)
+			pendingSubscriptions.remove(publication.identifier);
+		if(publications.get(publication.identifier) == publication)
+			connectPatterns(publication.identifier);
 	}
 
 	/**
@@ -215,8 +710,9 @@ public class DynDistributor<ObjectType, CallbackType> {
 	 * @param object the published instance of the object
 	 * @return new Publication
 	 */
-	public DynPublication create(DynPublisher publisher, String objectname, ObjectType object){
-		DynPublication<ObjectType> newPublication = new DynPublication<ObjectType>(this, publisher, objectname, object);
+	public DynPublication<ObjectType, CallbackType> create(DynPublisher<ObjectType, CallbackType> publisher, String objectname, ObjectType object){
+		reclaim();
+		DynPublication<ObjectType, CallbackType> newPublication = new DynPublication<ObjectType, CallbackType>(this, publisher, objectname, object, (weakReferences)? referenceQueue: null);
 		return newPublication;
 	}
 	
@@ -224,61 +720,295 @@ public class DynDistributor<ObjectType, CallbackType> {
 	 * Recall and remove the provided Publication from the System
 	 * @param publication
 	 */
-	public void recall(DynPublication publication){
+	public void recall(DynPublication<ObjectType, CallbackType> publication){
 		//Debugger.debug(getClass(), "try to recall publication. has Subscriptions: " + publication.hasSubscriptions());
-		while(publication.hasSubscriptions()){
-			//Debugger.debug(getClass(), "Disconnect subscription...");
-			DynSubscription subscription = publication.removeNextSubscription();
-			subscription.subscriber.publicationDisonnected(name, subscription);
-			subscription.set(null);
+		begin(publication.identifier);
+		try{
+			if(publications.get(publication.identifier) == publication){
+				publications.remove(publication.identifier);
+				version.incrementAndGet();
+			}
+			disconnectSubscriptions(publication);
+		} finally {
+			end(publication.identifier);
 		}
-		publications.remove(publication);
 	}
 	
+	/**
+	 * Recall and remove all the provided Publications from the System at once.
+	 * 
+	 * All publications are removed first, before their subscriptions are disconnected
+	 * and the callbacks are called. The callbacks thus see the whole batch recalled.
+	 * 
+	 * @param _publications
+	 */
+	public void recallAll(Collection<? extends DynPublication<ObjectType, CallbackType>> _publications){
+		for(DynPublication<ObjectType, CallbackType> publication: _publications){
+			begin(publication.identifier);
+			try{
+				if(publications.get(publication.identifier) == publication){
+					publications.remove(publication.identifier);
+					version.incrementAndGet();
+				}
+			} finally {
+				end(publication.identifier);
+			}
+		}
+		for(DynPublication<ObjectType, CallbackType> publication: _publications){
+			begin(publication.identifier);
+			try{
+				disconnectSubscriptions(publication);
+			} finally {
+				end(publication.identifier);
+			}
+		}
+	}
+
 	/**
 	 * Recall and remove the Publication with the provided identifier from the System 
 	 * @param publicationname
 	 */
 	public void recall(String publicationname){
-		Iterator<DynPublication> i = publications.iterator();
-		while(i.hasNext()){
-			DynPublication publication = i.next();
-			if(publication.identifier.equals(publicationname)){
-				while(publication.hasSubscriptions()){
-					DynSubscription subscription = publication.removeNextSubscription();
-					subscription.subscriber.publicationDisonnected(name, subscription);
-					subscription.set(null);
-				}
-				i.remove();
+		begin(publicationname);
+		try{
+			DynPublication<ObjectType, CallbackType> publication = publications.remove(publicationname);
+			if(publication != null){
+				version.incrementAndGet();
+				disconnectSubscriptions(publication);
 			}
+		} finally {
+			end(publicationname);
 		}
 	}	
 	
+	/**
+	 * Disconnects all the subscriptions of a recalled publication. They stay
+	 * subscribed and will connect again once a publication with the same 
+	 * identifier is published, except for the subscriptions created by a pattern. 
+	 * Those are released, since the pattern creates them anew on the next publish.
+	 * @param publication
+	 */
+	private void disconnectSubscriptions(DynPublication<ObjectType, CallbackType> publication){
+		while(publication.hasSubscriptions()){
+			//Debugger.debug(getClass(), "Disconnect subscription...");
+			DynSubscription<ObjectType, CallbackType> subscription = publication.removeNextSubscription();
+			firePublicationDisconnected(subscription);
+			subscription.set(null);
+			if(subscription.pattern != null && subscription.pattern.detach(subscription))
+				subscriptions.remove(subscription);
+			else if(subscriptions.contains(subscription))
+				addPending(subscription);
+		}
+	}
+	
+	private void firePublicationConnected(final DynSubscription<ObjectType, CallbackType> subscription){
+		Runnable callback = new Runnable(){
+			public void run(){
+				callPublicationConnected(subscription);
+			}
+		};
+		DynDispatcher _dispatcher = dispatcher;
+		if(_dispatcher == null)
+			call(callback);
+		else
+			_dispatcher.dispatch(subscription.identifier, callback);
+	}
+	
+	private void callPublicationConnected(DynSubscription<ObjectType, CallbackType> subscription){
+		DynSubscriber<ObjectType, CallbackType> subscriber = subscription.getSubscriber();
+		if(subscriber == null)
+			return;
+		DynMetrics _metrics = metrics;
+		if(_metrics == null){
+			subscriber.publicationConnected(name, subscription);
+		} else {
+			long start = System.nanoTime();
+			try{
+				subscriber.publicationConnected(name, subscription);
+			} finally {
+				_metrics.getPublicationConnectedTiming().record(System.nanoTime() - start);
+			}
+		}
+	}
+	
+	private void firePublicationDisconnected(final DynSubscription<ObjectType, CallbackType> subscription){
+		Runnable callback = new Runnable(){
+			public void run(){
+				DynSubscriber<ObjectType, CallbackType> subscriber = subscription.getSubscriber();
+				if(subscriber != null)
+					subscriber.publicationDisonnected(name, subscription);
+			}
+		};
+		DynDispatcher _dispatcher = dispatcher;
+		if(_dispatcher == null)
+			call(callback);
+		else
+			_dispatcher.dispatch(subscription.identifier, callback);
+	}
+
+	private void fireSubscriptionConnected(final DynPublication<ObjectType, CallbackType> publication, final DynSubscription<ObjectType, CallbackType> subscription){
+		Runnable callback = new Runnable(){
+			public void run(){
+				callSubscriptionConnected(publication, subscription);
+			}
+		};
+		DynDispatcher _dispatcher = dispatcher;
+		if(_dispatcher == null)
+			call(callback);
+		else
+			_dispatcher.dispatch(publication.identifier, callback);
+	}
+	
+	private void callSubscriptionConnected(DynPublication<ObjectType, CallbackType> publication, DynSubscription<ObjectType, CallbackType> subscription){
+		DynPublisher<ObjectType, CallbackType> publisher = publication.getPublisher();
+		if(publisher == null)
+			return;
+		DynMetrics _metrics = metrics;
+		if(_metrics == null){
+			publisher.subscriptionConnected(name, subscription);
+		} else {
+			long start = System.nanoTime();
+			try{
+				publisher.subscriptionConnected(name, subscription);
+			} finally {
+				_metrics.getSubscriptionConnectedTiming().record(System.nanoTime() - start);
+			}
+		}
+	}
+
+	private void fireSubscriptionDisconnected(final DynPublication<ObjectType, CallbackType> publication, final DynSubscription<ObjectType, CallbackType> subscription){
+		Runnable callback = new Runnable(){
+			public void run(){
+				DynPublisher<ObjectType, CallbackType> publisher = publication.getPublisher();
+				if(publisher != null)
+					publisher.subscriptionDisconnected(name, subscription);
+			}
+		};
+		DynDispatcher _dispatcher = dispatcher;
+		if(_dispatcher == null)
+			call(callback);
+		else
+			_dispatcher.dispatch(publication.identifier, callback);
+	}
+
+	private void addPending(DynSubscription<ObjectType, CallbackType> subscription){
+		Set<DynSubscription<ObjectType, CallbackType>> pending = pendingSubscriptions.get(subscription.identifier);
+		if(pending == null){
+			pending = new LinkedHashSet<DynSubscription<ObjectType, CallbackType>>();
+			pendingSubscriptions.put(subscription.identifier, pending);
+		}
+		pending.add(subscription);
+	}
+
+	private void removePending(DynSubscription<ObjectType, CallbackType> subscription){
+		Set<DynSubscription<ObjectType, CallbackType>> pending = pendingSubscriptions.get(subscription.identifier);
+		if(pending != null){
+			pending.remove(subscription);
+			if(pending.isEmpty())
+				pendingSubscriptions.remove(subscription.identifier);
+		}
+	}
+	
 	/**
 	 * Checks if a Publication with the provided identifier has already been published
 	 * @param publicationname
 	 */
 	public boolean isPublished(String publicationname){
-		Iterator<DynPublication> i = publications.iterator();
-		while(i.hasNext()){
-			DynPublication publication = i.next();
-			if(publication.identifier.equals(publicationname)){
-				return true;
-			}
-		}
-		return false;
+		return publications.containsKey(publicationname);
 	}	
 	
 	/**
-	 * Returns all the published publication names
-	 * @return String Array of all publication names
+	 * Returns all the published publication names. 
+	 * 
+	 * The names are only collected anew if publications were published or recalled since 
+	 * the last call, otherwise a copy of the previously collected names is returned. Use
+	 * getPublicationNameList() to read them without the copy.
+	 * 
+	 * @return new String Array of all publication names
 	 */
 	public String[] getPublicationNames(){
-		String[] ret = new String[publications.size()];
-		for(int i = 0; i < publications.size(); i++){
-			DynPublication publication = publications.get(i);
-			ret[i] = publication.getIdentifier();
-		}
-		return ret;
+		return snapshot().names.clone();
 	}	
+	
+	/**
+	 * Returns all the published publication names. 
+	 * 
+	 * The list is only created anew if publications were published or recalled since 
+	 * the last call, otherwise the same list is returned again. It is shared with all
+	 * the other callers and can therefore not be modified.
+	 * 
+	 * @return unmodifiable List of all publication names
+	 */
+	public List<String> getPublicationNameList(){
+		return snapshot().list;
+	}
+	
+	/**
+	 * Returns the publication names of the current version
+	 */
+	private NameSnapshot snapshot(){
+		int _version = version.get();
+		NameSnapshot snapshot = publicationNames;
+		if(snapshot == null || snapshot.version != _version){
+			snapshot = new NameSnapshot(_version, publications.keySet().toArray(new String[publications.size()]));
+			publicationNames = snapshot;
+		}
+		return snapshot;
+	}
+	
+	/**
+	 * Returns a number that changes each time a publication is published or recalled
+	 * @return
+	 */
+	int getVersion(){
+		return version.get();
+	}
+	
+	/**
+	 * The callbacks collected by one thread while it holds locks
+	 */
+	private static class Deferred {
+		/**
+		 * the number of locks the thread holds
+		 */
+		int depth;
+		ArrayList<Runnable> callbacks = new ArrayList<Runnable>();
+		
+		/**
+		 * Calls the collected callbacks in the order they occured. The callbacks 
+		 * collected meanwhile by a nested publish or subscribe are called by that 
+		 * call itself. If a callback fails, the others are called nonetheless and 
+		 * the first failure is thrown at the end.
+		 */
+		void run(){
+			ArrayList<Runnable> _callbacks = callbacks;
+			callbacks = new ArrayList<Runnable>();
+			RuntimeException failure = null;
+			for(int i = 0; i < _callbacks.size(); i++){
+				try{
+					_callbacks.get(i).run();
+				} catch (RuntimeException e){
+					if(failure == null)
+						failure = e;
+				}
+			}
+			if(failure != null)
+				throw failure;
+		}
+	}
+	
+	/**
+	 * The publication names at the time of a version
+	 */
+	private static class NameSnapshot {
+		final int version;
+		final String[] names;
+		final List<String> list;
+		
+		NameSnapshot(int _version, String[] _names){
+			version = _version;
+			names = _names;
+			list = Collections.unmodifiableList(Arrays.asList(_names));
+		}
+	}
 }
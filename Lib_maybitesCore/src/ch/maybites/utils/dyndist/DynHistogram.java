@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2013 maybites.ch
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal 
+ *  in the Software without restriction, including without limitation the rights 
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ *  copies of the Software, and to permit persons to whom the Software is furnished
+ *  to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ *  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ch.maybites.utils.dyndist;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread safe latency histogram with logarithmic buckets. Bucket i counts the 
+ * durations between 2^(i-1) and 2^i - 1 nanoseconds, bucket 0 the durations of 0 ns.
+ * 
+ * Recording a duration does not allocate anything and never blocks.
+ * 
+ * @author maybites
+ *
+ */
+public class DynHistogram {
+
+	/**
+	 * the number of buckets, enough for any positive long
+	 */
+	public static final int BUCKETS = 64;
+	
+	private AtomicLongArray buckets;
+	private AtomicLong count;
+	private AtomicLong total;
+	private AtomicLong max;
+	
+	public DynHistogram(){
+		buckets = new AtomicLongArray(BUCKETS);
+		count = new AtomicLong();
+		total = new AtomicLong();
+		max = new AtomicLong();
+	}
+	
+	/**
+	 * Records a duration 
+	 * @param nanos duration in nanoseconds, negative values are recorded as 0
+	 */
+	public void record(long nanos){
+		if(nanos < 0)
+			nanos = 0;
+		buckets.incrementAndGet(bucketOf(nanos));
+		count.incrementAndGet();
+		total.addAndGet(nanos);
+		long m = max.get();
+		while(nanos > m && !max.compareAndSet(m, nanos))
+			m = max.get();
+	}
+
+	/**
+	 * Returns the index of the bucket the provided duration falls into
+	 * @param nanos duration in nanoseconds
+	 * @return index between 0 and BUCKETS - 1
+	 */
+	public static int bucketOf(long nanos){
+		return 64 - Long.numberOfLeadingZeros(nanos);
+	}
+	
+	/**
+	 * Returns the number of recorded durations
+	 * @return
+	 */
+	public long getCount(){
+		return count.get();
+	}
+
+	/**
+	 * Returns the sum of all recorded durations in nanoseconds
+	 * @return
+	 */
+	public long getTotal(){
+		return total.get();
+	}
+	
+	/**
+	 * Returns the longest recorded duration in nanoseconds
+	 * @return
+	 */
+	public long getMax(){
+		return max.get();
+	}
+	
+	/**
+	 * Returns the mean of the recorded durations in nanoseconds
+	 * @return 0 if nothing was recorded
+	 */
+	public double getMean(){
+		long c = count.get();
+		return (c > 0)? (double)total.get() / c: 0;
+	}
+	
+	/**
+	 * Returns the number of recorded durations in the provided bucket
+	 * @param bucket index between 0 and BUCKETS - 1
+	 * @return
+	 */
+	public long getBucket(int bucket){
+		return buckets.get(bucket);
+	}
+	
+	/**
+	 * Returns an upper bound of the provided percentile, which is the upper limit of the 
+	 * bucket the percentile falls into. 
+	 * 
+	 * @param percentile between 0 and 100
+	 * @return the duration in nanoseconds, 0 if nothing was recorded
+	 */
+	public long getPercentile(double percentile){
+		long c = 0;
+		long[] copy = new long[BUCKETS];
+		for(int i = 0; i < BUCKETS; i++){
+			copy[i] = buckets.get(i);
+			c += copy[i];
+		}
+		long threshold = (long)Math.ceil(c * percentile / 100.);
+		long sum = 0;
+		for(int i = 0; i < BUCKETS; i++){
+			sum += copy[i];
+			if(sum >= threshold && sum > 0)
+				return (i == 0)? 0: (i == 63)? Long.MAX_VALUE: (1L << i) - 1;
+		}
+		return 0;
+	}
+	
+	/**
+	 * Clears all the recorded durations.
+	 * 
+	 * Careful: durations recorded concurrently might be partially cleared.
+	 */
+	public void reset(){
+		for(int i = 0; i < BUCKETS; i++)
+			buckets.set(i, 0);
+		count.set(0);
+		total.set(0);
+		max.set(0);
+	}
+
+	public String toString(){
+		return "count=" + getCount() + " mean=" + (long)getMean() + "ns p50<=" + getPercentile(50) + 
+				"ns p99<=" + getPercentile(99) + "ns max=" + getMax() + "ns";
+	}
+}
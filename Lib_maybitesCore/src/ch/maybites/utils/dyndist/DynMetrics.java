@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2013 maybites.ch
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal 
+ *  in the Software without restriction, including without limitation the rights 
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ *  copies of the Software, and to permit persons to whom the Software is furnished
+ *  to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ *  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ch.maybites.utils.dyndist;
+
+/**
+ * Collects the timings of a Dynamic Distributor. Set an instance with the distributors 
+ * setMetrics() method to start collecting, the distributor does not measure anything
+ * as long as no metrics are set.
+ * 
+ * The same instance can be shared by several distributors to collect their timings together.
+ * 
+ * @author maybites
+ *
+ */
+public class DynMetrics {
+
+	private DynHistogram publish;
+	private DynHistogram subscribe;
+	private DynHistogram publicationConnected;
+	private DynHistogram subscriptionConnected;
+	
+	public DynMetrics(){
+		publish = new DynHistogram();
+		subscribe = new DynHistogram();
+		publicationConnected = new DynHistogram();
+		subscriptionConnected = new DynHistogram();
+	}
+
+	/**
+	 * Returns the durations of the publish() calls, including the directly called callbacks
+	 * @return
+	 */
+	public DynHistogram getPublishLatency(){
+		return publish;
+	}
+	
+	/**
+	 * Returns the durations of the subscribe() calls, including the directly called callbacks
+	 * @return
+	 */
+	public DynHistogram getSubscribeLatency(){
+		return subscribe;
+	}
+	
+	/**
+	 * Returns the durations of the subscribers publicationConnected() callbacks
+	 * @return
+	 */
+	public DynHistogram getPublicationConnectedTiming(){
+		return publicationConnected;
+	}
+
+	/**
+	 * Returns the durations of the publishers subscriptionConnected() callbacks
+	 * @return
+	 */
+	public DynHistogram getSubscriptionConnectedTiming(){
+		return subscriptionConnected;
+	}
+	
+	/**
+	 * Clears all the collected timings
+	 */
+	public void reset(){
+		publish.reset();
+		subscribe.reset();
+		publicationConnected.reset();
+		subscriptionConnected.reset();
+	}
+	
+	public String toString(){
+		return "publish: " + publish + "\nsubscribe: " + subscribe + 
+				"\npublicationConnected: " + publicationConnected + 
+				"\nsubscriptionConnected: " + subscriptionConnected;
+	}
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2013 maybites.ch
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal 
+ *  in the Software without restriction, including without limitation the rights 
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ *  copies of the Software, and to permit persons to whom the Software is furnished
+ *  to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ *  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ch.maybites.utils.dyndist;
+
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * A Dynamic Subscription to all the publications whose identifier starts with a prefix. 
+ * The pattern is the prefix followed by a '*', i.e. "scene/layer*".
+ * 
+ * For each matching publication the pattern subscription creates an ordinary subscription
+ * with the publications identifier. The subscribers publicationConnected() and 
+ * publicationDisonnected() methods are called with these subscriptions, exactly as if 
+ * they had been subscribed one by one. A created subscription is released again once its 
+ * publication is recalled, and a new one is created if the identifier is published again.
+ * All of them are released when the pattern subscription is unsubscribed.
+ * 
+ * @author maybites
+ *
+ * @param <ObjectType>
+ * @param <CallbackType>
+ */
+public class DynPatternSubscription<ObjectType, CallbackType>{
+
+	/**
+	 * the character that marks the end of a prefix pattern
+	 */
+	public static final char WILDCARD = '*';
+
+	protected DynSubscriber<ObjectType, CallbackType> subscriber;
+	protected String pattern;
+	protected String prefix;
+	protected CallbackType callback;
+	/**
+	 * used instead of subscriber and callback if the distributor only holds weak references
+	 */
+	private DynReference<DynSubscriber<ObjectType, CallbackType>> weakSubscriber;
+	private DynReference<CallbackType> weakCallback;
+	protected DynDistributor<ObjectType, CallbackType> factory;
+
+	/**
+	 * the created subscriptions by identifier. guarded by this instance.
+	 */
+	private LinkedHashMap<String, DynSubscription<ObjectType, CallbackType>> subscriptions;
+	
+	private boolean subscribed = false;
+
+	protected DynPatternSubscription(DynDistributor<ObjectType, CallbackType> _factory, DynSubscriber<ObjectType, CallbackType> _subscriber, String _pattern, CallbackType _callback){
+		this(_factory, _subscriber, _pattern, _callback, null);
+	}
+
+	/**
+	 * @param _queue if not null, the subscriber and the callback are only weakly referenced
+	 * 		and their references are enqueued here once they are garbage collected
+	 */
+	protected DynPatternSubscription(DynDistributor<ObjectType, CallbackType> _factory, DynSubscriber<ObjectType, CallbackType> _subscriber, String _pattern, CallbackType _callback, ReferenceQueue<Object> _queue){
+		if(_pattern.length() == 0 || _pattern.indexOf(WILDCARD) != _pattern.length() - 1)
+			throw new IllegalArgumentException("Pattern must end with a single '" + WILDCARD + "': " + _pattern);
+		factory = _factory;
+		pattern = _pattern;
+		prefix = _pattern.substring(0, _pattern.length() - 1);
+		if(_queue != null){
+			weakSubscriber = new DynReference<DynSubscriber<ObjectType, CallbackType>>(_subscriber, this, _queue);
+			if(_callback != null)
+				weakCallback = new DynReference<CallbackType>(_callback, this, _queue);
+		} else {
+			subscriber = _subscriber;
+			callback = _callback;
+		}
+		subscriptions = new LinkedHashMap<String, DynSubscription<ObjectType, CallbackType>>();
+	}
+	
+	/**
+	 * Subscribe this pattern and connect to all the matching publications. 
+	 * 
+	 * VERY Careful: For every publication that is already published, this method calls 
+	 * directly the Subscribers publicationConnected() method and returns once all of them 
+	 * have returned. This is not the case if the distributor dispatches its callbacks 
+	 * asynchronously.
+	 * 
+	 * @return this instance
+	 */
+	public DynPatternSubscription<ObjectType, CallbackType> subscribe(){
+		factory.subscribe(this);
+		return this;
+	}
+
+	/**
+	 * This method disables and removes this pattern and all the subscriptions it created
+	 * from the system
+	 */
+	public void unsubscribe(){
+		factory.unsubscribe(this);
+	}
+	
+	/**
+	 * Returns the pattern of this subscription, i.e. "scene/layer*"
+	 * @return
+	 */
+	public String getPattern(){
+		return pattern;
+	}
+
+	/**
+	 * Checks if the provided identifier matches this pattern
+	 * @param identifier
+	 * @return true if it matches
+	 */
+	public boolean matches(String identifier){
+		return identifier.startsWith(prefix);
+	}
+	
+	/**
+	 * Gets the Callback Object
+	 * 
+	 * @return null if no callback object was set
+	 */
+	public CallbackType getCallbackObject(){
+		return (weakCallback != null)? weakCallback.get(): callback;
+	}
+
+	/**
+	 * returns the subscriber
+	 * @return null if the subscriber has been garbage collected
+	 */
+	protected DynSubscriber<ObjectType, CallbackType> getSubscriber(){
+		return (weakSubscriber != null)? weakSubscriber.get(): subscriber;
+	}
+	
+	/**
+	 * Returns the subscriptions this pattern has created so far, connected or not.
+	 * 
+	 * @return new list of subscriptions
+	 */
+	public synchronized List<DynSubscription<ObjectType, CallbackType>> getSubscriptions(){
+		return new ArrayList<DynSubscription<ObjectType, CallbackType>>(subscriptions.values());
+	}
+	
+	protected synchronized boolean setSubscribed(boolean _subscribed){
+		boolean changed = subscribed != _subscribed;
+		subscribed = _subscribed;
+		return changed;
+	}
+
+	/**
+	 * Creates and subscribes the subscription for the provided identifier, unless 
+	 * it already exists.
+	 * @param identifier of a matching publication
+	 */
+	protected void attach(String identifier){
+		DynSubscription<ObjectType, CallbackType> subscription;
+		DynSubscriber<ObjectType, CallbackType> _subscriber = getSubscriber();
+		if(_subscriber == null)
+			return;
+		synchronized(this){
+			if(!subscribed || subscriptions.containsKey(identifier))
+				return;
+			subscription = factory.newSubscription(_subscriber, identifier, getCallbackObject());
+			subscription.pattern = this;
+			subscriptions.put(identifier, subscription);
+		}
+		factory.subscribe(subscription);
+		// the pattern might have been unsubscribed in the meantime, its unsubscribe() 
+		// then missed this subscription since it was not yet subscribed.
+		boolean detached;
+		synchronized(this){
+			detached = !subscribed || subscriptions.get(identifier) != subscription;
+		}
+		if(detached)
+			factory.unsubscribe(subscription);
+	}
+	
+	/**
+	 * Removes the provided subscription from this pattern
+	 * @param subscription created by this pattern
+	 * @return true if it was removed, false if it has already been removed
+	 */
+	protected synchronized boolean detach(DynSubscription<ObjectType, CallbackType> subscription){
+		if(subscriptions.get(subscription.identifier) != subscription)
+			return false;
+		subscriptions.remove(subscription.identifier);
+		return true;
+	}
+	
+	/**
+	 * Removes all the created subscriptions from this pattern
+	 * @return the removed subscriptions
+	 */
+	protected synchronized List<DynSubscription<ObjectType, CallbackType>> detachAll(){
+		ArrayList<DynSubscription<ObjectType, CallbackType>> ret = new ArrayList<DynSubscription<ObjectType, CallbackType>>(subscriptions.values());
+		subscriptions.clear();
+		return ret;
+	}
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2013 maybites.ch
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal 
+ *  in the Software without restriction, including without limitation the rights 
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ *  copies of the Software, and to permit persons to whom the Software is furnished
+ *  to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ *  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ch.maybites.utils.dyndist;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * A character trie that maps prefixes to values. It allows to find all the values whose
+ * prefix is a prefix of a given key by walking the key once, independent of the number
+ * of stored prefixes.
+ * 
+ * This class is not thread safe.
+ * 
+ * @author maybites
+ *
+ * @param <V> the type of the stored values
+ */
+class DynPrefixTrie<V> {
+	
+	private Node<V> root;
+	
+	private int size;
+	
+	DynPrefixTrie(){
+		root = new Node<V>();
+	}
+
+	/**
+	 * Stores the value under the provided prefix
+	 * @param prefix
+	 * @param value
+	 */
+	void put(String prefix, V value){
+		Node<V> node = root;
+		for(int i = 0; i < prefix.length(); i++){
+			Character c = Character.valueOf(prefix.charAt(i));
+			if(node.children == null)
+				node.children = new HashMap<Character, Node<V>>();
+			Node<V> child = node.children.get(c);
+			if(child == null){
+				child = new Node<V>();
+				node.children.put(c, child);
+			}
+			node = child;
+		}
+		if(node.values == null)
+			node.values = new ArrayList<V>(1);
+		node.values.add(value);
+		size++;
+	}
+	
+	/**
+	 * Removes the value stored under the provided prefix and prunes the nodes that
+	 * are not needed anymore
+	 * @param prefix
+	 * @param value
+	 * @return true if the value was found
+	 */
+	boolean remove(String prefix, V value){
+		ArrayList<Node<V>> path = new ArrayList<Node<V>>(prefix.length() + 1);
+		Node<V> node = root;
+		path.add(node);
+		for(int i = 0; i < prefix.length(); i++){
+			node = (node.children != null)? node.children.get(Character.valueOf(prefix.charAt(i))): null;
+			if(node == null)
+				return false;
+			path.add(node);
+		}
+		if(node.values == null || !node.values.remove(value))
+			return false;
+		size--;
+		if(node.values.isEmpty())
+			node.values = null;
+		for(int i = prefix.length(); i > 0; i--){
+			Node<V> child = path.get(i);
+			if(child.values != null || (child.children != null && !child.children.isEmpty()))
+				break;
+			Node<V> parent = path.get(i - 1);
+			parent.children.remove(Character.valueOf(prefix.charAt(i - 1)));
+			if(parent.children.isEmpty())
+				parent.children = null;
+		}
+		return true;
+	}
+	
+	/**
+	 * Adds all the values whose prefix is a prefix of (or equal to) the provided key
+	 * @param key
+	 * @param result
+	 */
+	void collectPrefixesOf(String key, Collection<? super V> result){
+		Node<V> node = root;
+		for(int i = 0; node != null; i++){
+			if(node.values != null)
+				result.addAll(node.values);
+			if(i == key.length() || node.children == null)
+				break;
+			node = node.children.get(Character.valueOf(key.charAt(i)));
+		}
+	}
+	
+	/**
+	 * Adds all the stored values
+	 * @param result
+	 */
+	void collectAll(Collection<? super V> result){
+		collect(root, result);
+	}
+	
+	private void collect(Node<V> node, Collection<? super V> result){
+		if(node.values != null)
+			result.addAll(node.values);
+		if(node.children != null){
+			Iterator<Node<V>> i = node.children.values().iterator();
+			while(i.hasNext())
+				collect(i.next(), result);
+		}
+	}
+	
+	/**
+	 * Returns the number of stored values
+	 * @return
+	 */
+	int size(){
+		return size;
+	}
+	
+	private static class Node<V>{
+		HashMap<Character, Node<V>> children;
+		ArrayList<V> values;
+	}
+}
@@ -21,48 +21,100 @@
 
 package ch.maybites.utils.dyndist;
 
+import java.lang.ref.ReferenceQueue;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import ch.maybites.tools.Debugger;
 
 /**
  * The Dynamic Server for an object
  * @author maybites
  *
  * @param <ObjectType>
+ * @param <CallbackType>
  */
-public class DynPublication<ObjectType> {
+public class DynPublication<ObjectType, CallbackType> {
 	
-	protected DynPublisher publisher;
+	protected DynPublisher<ObjectType, CallbackType> publisher;
 	protected String identifier;
 	protected ObjectType object;
-	private DynDistributor distributor;
+	/**
+	 * used instead of publisher and object if the distributor only holds weak references
+	 */
+	private DynReference<DynPublisher<ObjectType, CallbackType>> weakPublisher;
+	private DynReference<ObjectType> weakObject;
+	private DynDistributor<ObjectType, CallbackType> distributor;
+
+	private LinkedHashSet<DynSubscription<ObjectType, CallbackType>> subscribers;
+	
+	/**
+	 * the coalescing window in nanoseconds, 0 if the callbacks are passed on directly. 
+	 * the coalescing and rate limiting fields are guarded by the callbackLock.
+	 */
+	private long coalescingWindow = 0;
+	/**
+	 * the subscriptions that called back within the current window
+	 */
+	private LinkedHashSet<DynSubscription<ObjectType, CallbackType>> coalesced;
+	private Runnable deliverCoalesced;
+	
+	/**
+	 * the allowed callbacks per second, 0 if unlimited
+	 */
+	private double rateLimit = 0;
+	private double burst;
+	private double tokens;
+	private long lastRefill;
+
+	private final Object callbackLock = new Object();
 
-	private ArrayList<DynSubscription> subscribers;
+	protected DynPublication(DynDistributor<ObjectType, CallbackType> _distributor, DynPublisher<ObjectType, CallbackType> _publisher, String _identifier, ObjectType _object){
+		this(_distributor, _publisher, _identifier, _object, null);
+	}
 
-	protected DynPublication(DynDistributor _distributor, DynPublisher _publisher, String _identifier, ObjectType _object){
+	/**
+	 * @param _queue if not null, the publisher and the object are only weakly referenced
+	 * 		and their references are enqueued here once they are garbage collected
+	 */
+	protected DynPublication(DynDistributor<ObjectType, CallbackType> _distributor, DynPublisher<ObjectType, CallbackType> _publisher, String _identifier, ObjectType _object, ReferenceQueue<Object> _queue){
 		distributor = _distributor;
-		publisher = _publisher;
 		identifier = _identifier;
-		object = _object;
-		subscribers = new ArrayList<DynSubscription>();
+		if(_queue != null){
+			weakPublisher = new DynReference<DynPublisher<ObjectType, CallbackType>>(_publisher, this, _queue);
+			if(_object != null)
+				weakObject = new DynReference<ObjectType>(_object, this, _queue);
+		} else {
+			publisher = _publisher;
+			object = _object;
+		}
+		subscribers = new LinkedHashSet<DynSubscription<ObjectType, CallbackType>>();
 	}
 	
-	protected void addSubscription(DynSubscription subscription){
-		if(!subscribers.contains(subscription)){
-			subscribers.add(subscription);
-		}
+	protected void addSubscription(DynSubscription<ObjectType, CallbackType> subscription){
+		subscribers.add(subscription);
 	}
 	
 	protected boolean hasSubscriptions(){
 		return (subscribers.size() > 0)? true: false;
 	}
 	
-	protected DynSubscription removeNextSubscription(){
-		if(subscribers.size() > 0)
-			return subscribers.remove(0);
+	protected DynSubscription<ObjectType, CallbackType> removeNextSubscription(){
+		Iterator<DynSubscription<ObjectType, CallbackType>> i = subscribers.iterator();
+		if(i.hasNext()){
+			DynSubscription<ObjectType, CallbackType> subscription = i.next();
+			i.remove();
+			return subscription;
+		}
 		return null;
 	}
 	
-	protected void removeSubscription(DynSubscription link){
+	protected void removeSubscription(DynSubscription<ObjectType, CallbackType> link){
 		subscribers.remove(link);
 	}
 		
@@ -71,15 +123,136 @@ public class DynPublication<ObjectType> {
 	 * @return
 	 */
 	protected ObjectType getObject(){
-		return object;
+		return (weakObject != null)? weakObject.get(): object;
+	}
+
+	/**
+	 * returns the publisher
+	 * @return null if the publisher has been garbage collected
+	 */
+	protected DynPublisher<ObjectType, CallbackType> getPublisher(){
+		return (weakPublisher != null)? weakPublisher.get(): publisher;
 	}
 
 	protected String getIdentifier(){
 		return identifier;
 	}
 	
-	protected boolean subscriptionCallback(DynSubscription subscription){
-		return publisher.subscriptionCallback(distributor.getIdentifier(), subscription);
+	protected boolean subscriptionCallback(DynSubscription<ObjectType, CallbackType> subscription){
+		boolean schedule = false;
+		long window;
+		synchronized(callbackLock){
+			if(rateLimit > 0 && !acquireToken())
+				return false;
+			window = coalescingWindow;
+			if(window > 0){
+				if(coalesced.isEmpty())
+					schedule = true;
+				coalesced.add(subscription);
+			}
+		}
+		if(window > 0){
+			if(schedule)
+				Coalescer.scheduler.schedule(deliverCoalesced, window, TimeUnit.NANOSECONDS);
+			return true;
+		}
+		DynPublisher<ObjectType, CallbackType> _publisher = getPublisher();
+		if(_publisher != null)
+			return _publisher.subscriptionCallback(distributor.getIdentifier(), subscription);
+		return false;
+	}
+	
+	/**
+	 * Takes a token from the bucket of the rate limit. Must be called while holding the callbackLock.
+	 * @return false if there is no token left
+	 */
+	private boolean acquireToken(){
+		long now = System.nanoTime();
+		tokens = Math.min(burst, tokens + (now - lastRefill) * rateLimit / 1000000000.);
+		lastRefill = now;
+		if(tokens < 1)
+			return false;
+		tokens -= 1;
+		return true;
+	}
+	
+	/**
+	 * Sets the coalescing window of the subscriptions callbacks. If set, the subscriptions 
+	 * callback() method returns immediately and the publisher is called once the window 
+	 * elapsed, with each subscription that called back within the window only once. If the 
+	 * publisher implements DynBatchPublisher, it gets all of them in one subscriptionCallbacks() 
+	 * call, otherwise subscriptionCallback() is called for each of them. 
+	 * 
+	 * Careful: the coalesced callbacks are delivered by a daemon thread shared by all the 
+	 * publications and their return values are ignored. Subscriptions that got disconnected 
+	 * in the meantime are skipped.
+	 * 
+	 * @param window the duration of the window, 0 to pass on the callbacks directly
+	 * @param unit the unit of the window
+	 */
+	public void setCoalescing(long window, TimeUnit unit){
+		synchronized(callbackLock){
+			if(coalesced == null){
+				coalesced = new LinkedHashSet<DynSubscription<ObjectType, CallbackType>>();
+				deliverCoalesced = new Runnable(){
+					public void run(){
+						deliverCoalesced();
+					}
+				};
+			}
+			coalescingWindow = (window > 0)? unit.toNanos(window): 0;
+		}
+		if(window <= 0)
+			deliverCoalesced();
+	}
+	
+	/**
+	 * Limits the rate of the subscriptions callbacks reaching the publisher. The limit is 
+	 * applied to the calls of the subscriptions callback() method, before they are coalesced. 
+	 * Calls exceeding the limit are dropped and return false.
+	 * 
+	 * @param callbacksPerSecond the allowed average rate, 0 to remove the limit
+	 * @param _burst the number of callbacks allowed in a row, at least 1
+	 */
+	public void setRateLimit(double callbacksPerSecond, int _burst){
+		synchronized(callbackLock){
+			rateLimit = (callbacksPerSecond > 0)? callbacksPerSecond: 0;
+			burst = (_burst > 1)? _burst: 1;
+			tokens = burst;
+			lastRefill = System.nanoTime();
+		}
+	}
+	
+	/**
+	 * Calls the publisher with the coalesced callbacks
+	 */
+	private void deliverCoalesced(){
+		ArrayList<DynSubscription<ObjectType, CallbackType>> list;
+		synchronized(callbackLock){
+			if(coalesced == null || coalesced.isEmpty())
+				return;
+			list = new ArrayList<DynSubscription<ObjectType, CallbackType>>(coalesced.size());
+			Iterator<DynSubscription<ObjectType, CallbackType>> i = coalesced.iterator();
+			while(i.hasNext()){
+				DynSubscription<ObjectType, CallbackType> subscription = i.next();
+				if(subscription.publication == this)
+					list.add(subscription);
+			}
+			coalesced.clear();
+		}
+		DynPublisher<ObjectType, CallbackType> _publisher = getPublisher();
+		if(_publisher == null || list.isEmpty())
+			return;
+		try{
+			if(_publisher instanceof DynBatchPublisher){
+				((DynBatchPublisher<ObjectType, CallbackType>)_publisher).subscriptionCallbacks(distributor.getIdentifier(), list);
+			} else {
+				for(int i = 0; i < list.size(); i++)
+					_publisher.subscriptionCallback(distributor.getIdentifier(), list.get(i));
+			}
+		} catch (RuntimeException e){
+			Debugger.error(getClass(), "coalesced callback for " + identifier + " failed: " + e);
+		}
 	}
 	
 	/**
@@ -87,7 +260,7 @@ public class DynPublication<ObjectType> {
 	 * @return this instance
 	 * @throws DynException if the publications identifier has already been taken
 	 */
-	public DynPublication publish() throws DynException{
+	public DynPublication<ObjectType, CallbackType> publish() throws DynException{
 		distributor.publish(this);
 		return this;
 	}
@@ -98,6 +271,27 @@ public class DynPublication<ObjectType> {
 	public void recall(){
 		distributor.recall(this);
 	}
+	
+	/**
+	 * Holds the thread that delivers the coalesced callbacks. It is only created once the 
+	 * first callback is coalesced.
+	 */
+	private static class Coalescer {
+		static final ScheduledExecutorService scheduler;
+		
+		static {
+			ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory(){
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "DynPublication coalescing");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			executor.setKeepAliveTime(1, TimeUnit.SECONDS);
+			executor.allowCoreThreadTimeOut(true);
+			scheduler = executor;
+		}
+	}
 
 	
 }
@@ -26,8 +26,10 @@ package ch.maybites.utils.dyndist;
  * 
  * @author maybites
  *
+ * @param <ObjectType> The Type of the published Object
+ * @param <CallbackType> The Type of the subscriptions Callback Object
  */
-public interface DynPublisher {
+public interface DynPublisher<ObjectType, CallbackType> {
 
 	/**
 	 * This method is called when a subscription is connected to a published publication
@@ -35,7 +37,7 @@ public interface DynPublisher {
 	 * @param distributor identifies the distributor
 	 * @param subscription
 	 */
-	public void subscriptionConnected(String distributor, DynSubscription subscription);
+	public void subscriptionConnected(String distributor, DynSubscription<ObjectType, CallbackType> subscription);
 	
 	/**
 	 * This method is called when a subscription is disconnected from a published publication
@@ -43,7 +45,7 @@ public interface DynPublisher {
 	 * @param distributor identifies the distributor
 	 * @param c
 	 */
-	public void subscriptionDisconnected(String distributor, DynSubscription c);
+	public void subscriptionDisconnected(String distributor, DynSubscription<ObjectType, CallbackType> c);
 	
 	/**
 	 * This method is called if a connected subscribtion's callback() method is called
@@ -52,6 +54,6 @@ public interface DynPublisher {
 	 * @param subscription
 	 * @return
 	 */
-	public boolean subscriptionCallback(String distributor, DynSubscription subscription);
+	public boolean subscriptionCallback(String distributor, DynSubscription<ObjectType, CallbackType> subscription);
 	
 }
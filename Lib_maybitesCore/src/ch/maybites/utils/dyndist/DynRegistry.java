@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2013 maybites.ch
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal 
+ *  in the Software without restriction, including without limitation the rights 
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ *  copies of the Software, and to permit persons to whom the Software is furnished
+ *  to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ *  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ch.maybites.utils.dyndist;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process wide registry of Dynamic Distributors. It allows different objects to find the 
+ * same distributor by its name, without handing references around through static fields.
+ * 
+ * The distributors created by the registry are DynConcurrentDistributors, since the 
+ * registry is shared by all the threads of the process.
+ * 
+ * @author maybites
+ *
+ */
+public class DynRegistry {
+
+	private static final ConcurrentHashMap<String, DynDistributor<?, ?>> distributors = new ConcurrentHashMap<String, DynDistributor<?, ?>>();
+	
+	/**
+	 * incremented each time a distributor is added or removed
+	 */
+	private static final AtomicInteger version = new AtomicInteger();
+	
+	private static volatile NameSnapshot publicationNames;
+	
+	private DynRegistry(){
+		;
+	}
+	
+	/**
+	 * Returns the distributor with the provided name. If there is none, a new 
+	 * DynConcurrentDistributor is created and registered. 
+	 * 
+	 * Careful: the type arguments are not checked. All the callers asking for the same
+	 * name must use the same types.
+	 * 
+	 * @param name of the distributor
+	 * @return the registered distributor
+	 */
+	@SuppressWarnings("unchecked")
+	public static <ObjectType, CallbackType> DynDistributor<ObjectType, CallbackType> get(String name){
+		DynDistributor<?, ?> distributor = distributors.get(name);
+		if(distributor == null){
+			distributor = new DynConcurrentDistributor<ObjectType, CallbackType>(name);
+			DynDistributor<?, ?> previous = distributors.putIfAbsent(name, distributor);
+			if(previous != null)
+				distributor = previous;
+			else
+				version.incrementAndGet();
+		}
+		return (DynDistributor<ObjectType, CallbackType>)distributor;
+	}
+	
+	/**
+	 * Returns the distributor with the provided name without creating it.
+	 * 
+	 * @param name of the distributor
+	 * @return null if there is no such distributor
+	 */
+	public static DynDistributor<?, ?> lookup(String name){
+		return distributors.get(name);
+	}
+	
+	/**
+	 * Registers the provided distributor under its identifier, unless there is already
+	 * a distributor with the same name.
+	 * 
+	 * @param distributor
+	 * @return true if it was registered
+	 */
+	public static boolean register(DynDistributor<?, ?> distributor){
+		if(distributors.putIfAbsent(distributor.getIdentifier(), distributor) != null)
+			return false;
+		version.incrementAndGet();
+		return true;
+	}
+	
+	/**
+	 * Removes the distributor with the provided name from the registry. Its publications
+	 * and subscriptions are not touched.
+	 * 
+	 * @param name of the distributor
+	 * @return the removed distributor or null if there was none
+	 */
+	public static DynDistributor<?, ?> remove(String name){
+		DynDistributor<?, ?> distributor = distributors.remove(name);
+		if(distributor != null)
+			version.incrementAndGet();
+		return distributor;
+	}
+	
+	/**
+	 * Returns the names of all registered distributors
+	 * @return new String Array
+	 */
+	public static String[] getDistributorNames(){
+		return distributors.keySet().toArray(new String[0]);
+	}
+	
+	/**
+	 * Returns the publication names of all the registered distributors, keyed by the 
+	 * distributors names. 
+	 * 
+	 * The map is only created anew if a distributor was added or removed, or if one of 
+	 * the distributors published or recalled a publication since the last call.
+	 * 
+	 * The returned map and its lists are shared with all the other callers and can 
+	 * therefore not be modified.
+	 * 
+	 * @return unmodifiable map of the unmodifiable publication name lists by distributor name
+	 */
+	public static Map<String, List<String>> getPublicationNames(){
+		NameSnapshot snapshot = publicationNames;
+		if(snapshot == null || !snapshot.isValid()){
+			snapshot = new NameSnapshot();
+			publicationNames = snapshot;
+		}
+		return snapshot.names;
+	}
+	
+	/**
+	 * The publication names of all the distributors at the time of their versions
+	 */
+	private static class NameSnapshot {
+		final int version;
+		final DynDistributor<?, ?>[] distributors;
+		final int[] versions;
+		final Map<String, List<String>> names;
+		
+		NameSnapshot(){
+			version = DynRegistry.version.get();
+			distributors = DynRegistry.distributors.values().toArray(new DynDistributor<?, ?>[0]);
+			versions = new int[distributors.length];
+			LinkedHashMap<String, List<String>> _names = new LinkedHashMap<String, List<String>>();
+			for(int i = 0; i < distributors.length; i++){
+				// take the version first, so a concurrent change makes the snapshot invalid
+				versions[i] = distributors[i].getVersion();
+				_names.put(distributors[i].getIdentifier(), distributors[i].getPublicationNameList());
+			}
+			names = Collections.unmodifiableMap(_names);
+		}
+		
+		boolean isValid(){
+			if(version != DynRegistry.version.get())
+				return false;
+			for(int i = 0; i < distributors.length; i++)
+				if(versions[i] != distributors[i].getVersion())
+					return false;
+			return true;
+		}
+	}
+}
@@ -26,21 +26,23 @@ package ch.maybites.utils.dyndist;
  * 
  * @author maybites
  *
+ * @param <ObjectType> The Type of the subscribed Object
+ * @param <CallbackType> The Type of the subscriptions Callback Object
  */
-public interface DynSubscriber {
+public interface DynSubscriber<ObjectType, CallbackType> {
 
 	/**
 	 * This Method is called if the provided subscription is connected to a publication
 	 * @param distributor
 	 * @param subscription
 	 */
-	public void publicationConnected(String distributor, DynSubscription subscription);
+	public void publicationConnected(String distributor, DynSubscription<ObjectType, CallbackType> subscription);
 	
 	/**
 	 * This Method is called if the provided subscription was disconnected from its publication
 	 * @param distributor
 	 * @param subscription
 	 */
-	public void publicationDisonnected(String distributor, DynSubscription subscription);
+	public void publicationDisonnected(String distributor, DynSubscription<ObjectType, CallbackType> subscription);
 
 }
@@ -21,6 +21,8 @@
 
 package ch.maybites.utils.dyndist;
 
+import java.lang.ref.ReferenceQueue;
+
 /**
  * The Dynamic Subscription connection to a Dynamic Publisher of an object
  * @author maybites
@@ -30,17 +32,44 @@ package ch.maybites.utils.dyndist;
  */
 public class DynSubscription<ObjectType, CallbackType>{
 
-	protected DynPublication publication;
-	protected DynSubscriber subscriber;
+	/**
+	 * the connected publication. it is volatile so the connection can be read 
+	 * from any thread without locking.
+	 */
+	protected volatile DynPublication<ObjectType, CallbackType> publication;
+	protected DynSubscriber<ObjectType, CallbackType> subscriber;
 	protected String identifier;
 	protected CallbackType callback;
-	protected DynDistributor factory;
+	/**
+	 * used instead of subscriber and callback if the distributor only holds weak references
+	 */
+	private DynReference<DynSubscriber<ObjectType, CallbackType>> weakSubscriber;
+	private DynReference<CallbackType> weakCallback;
+	protected DynDistributor<ObjectType, CallbackType> factory;
+	/**
+	 * the pattern subscription that created this subscription, null if it was created directly
+	 */
+	protected DynPatternSubscription<ObjectType, CallbackType> pattern;
 	
-	protected DynSubscription(DynDistributor _factory, DynSubscriber _subscriber, String _identifier, CallbackType _callback){
+	protected DynSubscription(DynDistributor<ObjectType, CallbackType> _factory, DynSubscriber<ObjectType, CallbackType> _subscriber, String _identifier, CallbackType _callback){
+		this(_factory, _subscriber, _identifier, _callback, null);
+	}
+
+	/**
+	 * @param _queue if not null, the subscriber and the callback are only weakly referenced
+	 * 		and their references are enqueued here once they are garbage collected
+	 */
+	protected DynSubscription(DynDistributor<ObjectType, CallbackType> _factory, DynSubscriber<ObjectType, CallbackType> _subscriber, String _identifier, CallbackType _callback, ReferenceQueue<Object> _queue){
 		factory = _factory;
-		subscriber = _subscriber;
 		identifier = _identifier;
-		callback = _callback;
+		if(_queue != null){
+			weakSubscriber = new DynReference<DynSubscriber<ObjectType, CallbackType>>(_subscriber, this, _queue);
+			if(_callback != null)
+				weakCallback = new DynReference<CallbackType>(_callback, this, _queue);
+		} else {
+			subscriber = _subscriber;
+			callback = _callback;
+		}
 	}
 
 	/**
@@ -55,7 +84,7 @@ public class DynSubscription<ObjectType, CallbackType>{
 	 * 
 	 * @return this instance if a successful connection to a publication could be established, otherwise null.
 	 */
-	public DynSubscription subscribe(){
+	public DynSubscription<ObjectType, CallbackType> subscribe(){
 		return (factory.subscribe(this))? this: null;
 	}
 	
@@ -66,11 +95,19 @@ public class DynSubscription<ObjectType, CallbackType>{
 		factory.unsubscribe(this);
 	}
 	
-	protected boolean equalsIdentifier(DynPublication _publication){
+	/**
+	 * Returns the identifier of the subscribed publication
+	 * @return
+	 */
+	public String getIdentifier(){
+		return identifier;
+	}
+	
+	protected boolean equalsIdentifier(DynPublication<ObjectType, CallbackType> _publication){
 		return (identifier.equals(_publication.getIdentifier()))? true: false;
 	}
 
-	protected void set(DynPublication _publication){
+	protected void set(DynPublication<ObjectType, CallbackType> _publication){
 		publication = _publication;
 	}
 	
@@ -79,7 +116,7 @@ public class DynSubscription<ObjectType, CallbackType>{
 	 * 
 	 * @return false if there is no connection
 	 */
-	public boolean isConnected(){
+	public final boolean isConnected(){
 		return(publication != null)? true: false;
 	}
 	
@@ -92,9 +129,10 @@ public class DynSubscription<ObjectType, CallbackType>{
 	 * 
 	 * @return null if no publication was set or if there is no connection
 	 */
-	public ObjectType getPublishedObject(){
-		if(isConnected())
-			return (ObjectType)publication.getObject();
+	public final ObjectType getPublishedObject(){
+		DynPublication<ObjectType, CallbackType> _publication = publication;
+		if(_publication != null)
+			return _publication.getObject();
 		return null;
 	}
 
@@ -103,8 +141,16 @@ public class DynSubscription<ObjectType, CallbackType>{
 	 * 
 	 * @return null if no callback object was set
 	 */
-	public CallbackType getCallbackObject(){
-		return callback;
+	public final CallbackType getCallbackObject(){
+		return (weakCallback != null)? weakCallback.get(): callback;
+	}
+
+	/**
+	 * returns the subscriber
+	 * @return null if the subscriber has been garbage collected
+	 */
+	protected DynSubscriber<ObjectType, CallbackType> getSubscriber(){
+		return (weakSubscriber != null)? weakSubscriber.get(): subscriber;
 	}
 	
 	/**
@@ -113,13 +159,18 @@ public class DynSubscription<ObjectType, CallbackType>{
 	 * 
 	 * ATTENTION: This method should under no circumstances be called by the Publisher!!!
 	 * 
+	 * If the publication coalesces the callbacks, this method returns immediately and 
+	 * the publisher is called later on. See DynPublication.setCoalescing().
+	 * 
 	 * @param _s the subscribers instance (to safeguard maluse)
-	 * @return true if refresh was successful;
+	 * @return true if refresh was successful or the callback was coalesced, false if it 
+	 * 		was dropped by the publications rate limit;
 	 */
-	public boolean callback(DynSubscriber _s){
-		if(_s == subscriber)
-			if(isConnected())
-				return publication.subscriptionCallback(this);
+	public boolean callback(DynSubscriber<ObjectType, CallbackType> _s){
+		DynPublication<ObjectType, CallbackType> _publication = publication;
+		if(_s != null && _s == getSubscriber())
+			if(_publication != null)
+				return _publication.subscriptionCallback(this);
 		return false;
 	}
 
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2013 maybites.ch
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal 
+ *  in the Software without restriction, including without limitation the rights 
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ *  copies of the Software, and to permit persons to whom the Software is furnished
+ *  to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ *  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ch.maybites.utils.dyndist;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Regression test of the DynConcurrentDistributor: two threads publish an identifier 
+ * each, and the subscribers of each identifier subscribe the other one from within 
+ * their publicationConnected() callback. Before the callbacks were called after the 
+ * locks had been released, the two threads deadlocked on each others lock.
+ * 
+ * Run it with the classes of the library on the classpath, it exits with 1 if it fails.
+ * 
+ * @author maybites
+ *
+ */
+public class DynConcurrentDistributorTest {
+
+	public static void main(String[] args) throws Exception {
+		final DynConcurrentDistributor<String, Object> distributor = new DynConcurrentDistributor<String, Object>("test");
+		final CyclicBarrier barrier = new CyclicBarrier(2);
+		final DynSubscription<?, ?>[] crossed = new DynSubscription<?, ?>[2];
+		
+		// the subscriber of x subscribes y and the subscriber of y subscribes x, once both are connected
+		distributor.create(new CrossSubscriber(distributor, barrier, "y", crossed, 0), "x", null).subscribe();
+		distributor.create(new CrossSubscriber(distributor, barrier, "x", crossed, 1), "y", null).subscribe();
+		
+		Thread a = new Publisher(distributor, "x");
+		Thread b = new Publisher(distributor, "y");
+		a.start();
+		b.start();
+		a.join(3000);
+		b.join(3000);
+		
+		boolean failed = false;
+		if(ManagementFactory.getThreadMXBean().findDeadlockedThreads() != null){
+			System.err.println("FAILED: the publishing threads are deadlocked");
+			failed = true;
+		} else if(a.isAlive() || b.isAlive()){
+			System.err.println("FAILED: the publishing threads did not finish");
+			failed = true;
+		} else if(crossed[0] == null || crossed[1] == null || !crossed[0].isConnected() || !crossed[1].isConnected()){
+			System.err.println("FAILED: the subscriptions from within the callbacks are not connected");
+			failed = true;
+		}
+		if(failed)
+			System.exit(1);
+		System.out.println("passed");
+	}
+	
+	private static class Publisher extends Thread {
+		private DynDistributor<String, Object> distributor;
+		private String identifier;
+		
+		Publisher(DynDistributor<String, Object> _distributor, String _identifier){
+			super("publish " + _identifier);
+			setDaemon(true);
+			distributor = _distributor;
+			identifier = _identifier;
+		}
+		
+		public void run(){
+			try{
+				distributor.create(new DynPublisher<String, Object>(){
+					public void subscriptionConnected(String d, DynSubscription<String, Object> s) {}
+					public void subscriptionDisconnected(String d, DynSubscription<String, Object> s) {}
+					public boolean subscriptionCallback(String d, DynSubscription<String, Object> s) {return true;}
+				}, identifier, identifier).publish();
+			} catch (DynException e){
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private static class CrossSubscriber implements DynSubscriber<String, Object> {
+		private DynDistributor<String, Object> distributor;
+		private CyclicBarrier barrier;
+		private String other;
+		private DynSubscription<?, ?>[] crossed;
+		private int index;
+		
+		CrossSubscriber(DynDistributor<String, Object> _distributor, CyclicBarrier _barrier, String _other, DynSubscription<?, ?>[] _crossed, int _index){
+			distributor = _distributor;
+			barrier = _barrier;
+			other = _other;
+			crossed = _crossed;
+			index = _index;
+		}
+		
+		public void publicationConnected(String d, DynSubscription<String, Object> s) {
+			try{
+				// make sure both threads are within publish() before either subscribes
+				barrier.await(2, TimeUnit.SECONDS);
+			} catch (Exception e){
+				return;
+			}
+			DynSubscription<String, Object> subscription = distributor.create(new DynSubscriber<String, Object>(){
+				public void publicationConnected(String d, DynSubscription<String, Object> s) {}
+				public void publicationDisonnected(String d, DynSubscription<String, Object> s) {}
+			}, other, null);
+			subscription.subscribe();
+			crossed[index] = subscription;
+		}
+		
+		public void publicationDisonnected(String d, DynSubscription<String, Object> s) {}
+	}
+}